@@ -0,0 +1,69 @@
+package com.sample.chat.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.chat.dto.ChatMessageDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// 수신 메시지 1건을 ChatMessageDto 로 읽는 비용 비교 : ObjectMapper.readValue vs ChatMessageReader
+// messageLength 는 message 필드의 길이(문자 수)이며, split 은 큰 메시지가 세 개의 프레임으로 나뉘어 온 경우이다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InboundParseBenchmark {
+    @Param({"32", "4096"})
+    private int messageLength;
+
+    private ObjectMapper objectMapper;
+    private ChatMessageReader reader;
+    private String payload;
+    private String[] chunks;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper();
+        reader = new ChatMessageReader(objectMapper.getFactory(), 1 << 20);
+        StringBuilder text = new StringBuilder(messageLength);
+        while (text.length() < messageLength) {
+            text.append("안녕하세요 hello ");
+        }
+        payload = objectMapper.writeValueAsString(new ChatMessageDto(ChatMessageDto.MessageType.TALK, "369692560123232256",
+                "tester@example.com", text.substring(0, messageLength)));
+        int third = payload.length() / 3;
+        chunks = new String[]{payload.substring(0, third), payload.substring(third, third * 2), payload.substring(third * 2)};
+    }
+
+    // 이전 방식 : 리플렉션 기반의 범용 역직렬화
+    @Benchmark
+    public ChatMessageDto readValue() throws Exception {
+        return objectMapper.readValue(payload, ChatMessageDto.class);
+    }
+
+    // 현재 방식 : 한 프레임으로 온 메시지를 토큰 단위로 직접 읽기
+    @Benchmark
+    public ChatMessageDto streamingReader() throws Exception {
+        return reader.read(payload, true);
+    }
+
+    // 현재 방식 : 세 프레임으로 나뉜 메시지를 논블로킹 파서로 읽기
+    @Benchmark
+    public ChatMessageDto streamingReaderSplit() throws Exception {
+        reader.read(chunks[0], false);
+        reader.read(chunks[1], false);
+        return reader.read(chunks[2], true);
+    }
+}
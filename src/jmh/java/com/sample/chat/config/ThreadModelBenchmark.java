@@ -0,0 +1,115 @@
+package com.sample.chat.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.PayloadApplicationEvent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// 동시에 접속한 10,000 개의 세션이 각각 메시지를 하나씩 보냈을 때, 모든 메시지를 처리하기까지 걸리는 시간 비교 : 플랫폼 스레드 vs 가상 스레드 (chat.threads.virtual)
+// 메시지 처리는 blockMillis 동안 JDBC 응답을 기다리는 것으로 대신한다. (커넥션 풀의 크기 제한은 두 방식에 같으므로 포함하지 않았다)
+// pinned=true 이면 synchronized 블록 안에서 기다린다. mysql-connector-j 8.0.x 처럼 가상 스레드가 기다리는 동안 캐리어를 붙잡는 경우이며,
+// pinned=false 는 캐리어를 양보하는 드라이버(9.x 등)의 경우이다.
+// requestExecutor : Tomcat 의 요청 처리 스레드 풀(최대 200 개) vs 요청마다 가상 스레드 (ExecutorConfig)
+// roomEventShards : 실제 RoomEventDispatcher 로 1,000 개의 채팅방에 이벤트 발행, 스레드 종류만 비교하도록 두 방식의 샤드 수를 shards 로 같게 둔다.
+// roomEventShards 는 10,000 x blockMillis / 샤드 수 만큼 걸리므로, 응답이 느린 경우는 requestExecutor 만 실행한다. (예 : -p blockMillis=10)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+    private static final int SESSIONS = 10_000;
+    private static final int ROOMS = 1_000;
+    private static final int TOMCAT_MAX_THREADS = 200; // server.tomcat.threads.max 기본값
+    private static final ThreadLocal<Object> LOCK = ThreadLocal.withInitial(Object::new);
+
+    @Param({"false", "true"})
+    private boolean virtual;
+
+    @Param({"1"})
+    private int blockMillis;
+
+    @Param({"true", "false"})
+    private boolean pinned;
+
+    @Param({"16"})
+    private int shards;
+
+    private ExecutorService requestExecutor;
+    private RoomEventDispatcher dispatcher;
+    private volatile CountDownLatch pending;
+
+    @Setup
+    public void setUp() {
+        requestExecutor = virtual
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory())
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        // 리스너 대신 이벤트 발행 시점에 블로킹 처리를 실행
+        dispatcher = new RoomEventDispatcher(event -> {
+            block();
+            pending.countDown();
+        }, new SimpleMeterRegistry(), shards, SESSIONS, 1000, virtual);
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestExecutor.shutdownNow();
+        dispatcher.stop();
+    }
+
+    @Benchmark
+    public void requestExecutor() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            requestExecutor.execute(() -> {
+                block();
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    @Benchmark
+    public void roomEventShards() throws InterruptedException {
+        pending = new CountDownLatch(SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            long roomId = i % ROOMS;
+            dispatcher.dispatch(roomId, new PayloadApplicationEvent<>(this, i));
+        }
+        pending.await();
+    }
+
+    private void block() {
+        if (pinned) {
+            synchronized (LOCK.get()) { // 스레드마다 다른 객체를 잠가서 서로 기다리지 않고 pinning 만 일어나게 한다.
+                sleep();
+            }
+        } else {
+            sleep();
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(blockMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
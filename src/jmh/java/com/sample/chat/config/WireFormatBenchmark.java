@@ -0,0 +1,75 @@
+package com.sample.chat.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.chat.dto.ChatMessageDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// 메시지 1건의 전송 형식 비교 : JSON(chat.json.v1) vs 바이너리(chat.binary.v1)
+// 인코딩(서버가 방송할 때)과 디코딩(서버가 수신할 때) 비용을 측정한다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final long MEMBER_ID = 369692560123232257L;
+
+    @Param({"32", "512"})
+    private int messageLength;
+
+    private ObjectMapper objectMapper;
+    private ChatMessageReader jsonReader;
+    private ChatMessageReader binaryReader;
+    private ChatMessageDto message;
+    private ByteBuffer jsonFrame;
+    private ByteBuffer binaryFrame;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper();
+        jsonReader = new ChatMessageReader(objectMapper.getFactory(), 1 << 20);
+        binaryReader = new ChatMessageReader(objectMapper.getFactory(), 1 << 20, true);
+        StringBuilder text = new StringBuilder(messageLength);
+        while (text.length() < messageLength) {
+            text.append("안녕하세요 hello ");
+        }
+        message = new ChatMessageDto(ChatMessageDto.MessageType.TALK, "369692560123232256",
+                "tester@example.com", text.substring(0, messageLength));
+        jsonFrame = ByteBuffer.wrap(objectMapper.writeValueAsBytes(message));
+        binaryFrame = ByteBuffer.wrap(ChatBinaryCodec.encode(message, MEMBER_ID));
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return ChatBinaryCodec.encode(message, MEMBER_ID);
+    }
+
+    @Benchmark
+    public ChatMessageDto decodeJson() throws Exception {
+        return jsonReader.read(jsonFrame, true);
+    }
+
+    @Benchmark
+    public ChatMessageDto decodeBinary() throws Exception {
+        return binaryReader.read(binaryFrame, true);
+    }
+}
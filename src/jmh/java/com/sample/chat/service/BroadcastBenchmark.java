@@ -0,0 +1,70 @@
+package com.sample.chat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.chat.dto.ChatMessageDto;
+import com.sample.chat.support.StubWebSocketSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.TimeUnit;
+
+// 방 전체 방송 1회의 비용 비교 : 수신자마다 직렬화하던 이전 방식 vs 한 번만 직렬화하는 ChatService.sendMessageToAll
+// ./gradlew jmh 실행 시 gc 프로파일러의 gc.alloc.rate.norm 값이 방송 1회당 할당 바이트 수이다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+    private static final Long ROOM_ID = 1L;
+
+    @Param({"10", "100", "500"})
+    private int recipients;
+
+    private ObjectMapper objectMapper;
+    private ChatRoomRegistry chatRoomRegistry;
+    private ChatService chatService;
+    private ChatMessageDto message;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        InProcessRoomBroadcastBus bus = new InProcessRoomBroadcastBus(new InProcessRoomBroadcastBus.Hub(), broadcast -> { });
+        chatRoomRegistry = new ChatRoomRegistry(bus);
+        for (int i = 0; i < recipients; i++) {
+            chatRoomRegistry.join(ROOM_ID, new StubWebSocketSession("session-" + i));
+        }
+        // 방송 경로는 레지스트리, ObjectMapper, 메시지 버스(다른 노드가 없는 단일 노드)만 사용하므로 나머지 의존성은 비워둔다.
+        chatService = new ChatService(objectMapper, null, null, null, chatRoomRegistry, null, null, null, bus, null, null, null, new SimpleMeterRegistry(), 200);
+        message = new ChatMessageDto(ChatMessageDto.MessageType.TALK, String.valueOf(ROOM_ID),
+                "tester@example.com", "안녕하세요, 방송 성능 측정용 메시지입니다.");
+    }
+
+    // 이전 방식 : 수신자마다 writeValueAsString + new TextMessage
+    @Benchmark
+    public void serializePerRecipient() throws Exception {
+        for (WebSocketSession session : chatRoomRegistry.getSessions(ROOM_ID)) {
+            String messageStr = objectMapper.writeValueAsString(message);
+            session.sendMessage(new TextMessage(messageStr));
+        }
+    }
+
+    // 현재 방식 : 한 번 직렬화한 프레임을 모든 수신자가 공유
+    @Benchmark
+    public void serializeOnce() {
+        chatService.sendMessageToAll(ROOM_ID, message);
+    }
+}
@@ -0,0 +1,60 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.MovieDto;
+import com.sample.chat.entity.Movie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 영화 엔티티 목록 -> DTO 목록 변환 비용 (새 스냅샷을 메모리에 올릴 때 MovieSnapshotCache.refresh 가 한 번 수행)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieMappingBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int movies;
+
+    private List<Movie> entities;
+
+    @Setup
+    public void setUp() {
+        entities = new ArrayList<>(movies);
+        for (int i = 0; i < movies; i++) {
+            Movie movie = new Movie();
+            movie.setId((long) i);
+            movie.setSnapshotId(1L);
+            movie.setMovieRank(String.valueOf(i + 1));
+            movie.setImage("https://img.example.com/movie/" + i + ".jpg");
+            movie.setTitle("영화 제목 " + i);
+            movie.setScore("9.1" + i % 10);
+            movie.setRate("12,345");
+            movie.setReservation("3" + i % 10 + ".5%");
+            movie.setDate("2023.10." + (i % 28 + 1));
+            entities.add(movie);
+        }
+    }
+
+    @Benchmark
+    public List<MovieDto> convertEntityToDto() {
+        List<MovieDto> movieDtos = new ArrayList<>(entities.size());
+        for (Movie movie : entities) {
+            movieDtos.add(MovieSnapshotCache.convertEntityToDto(movie));
+        }
+        return movieDtos;
+    }
+}
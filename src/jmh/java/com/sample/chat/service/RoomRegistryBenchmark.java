@@ -0,0 +1,80 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.RoomBroadcast;
+import com.sample.chat.support.StubWebSocketSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 서로 다른 채팅방의 입장 -> 방송 대상 조회 -> 퇴장이 스레드 수에 따라 늘어나는지 측정
+// shards=1 은 레지스트리 전체를 락 하나로 보호하는 것과 같다. 스레드 수를 바꿔가며 실행한다. (예 : -t 1, -t 4, -t 8)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomRegistryBenchmark {
+    private static final int MEMBERS = 20; // 채팅방마다 미리 입장해 있는 세션 수
+
+    @Param({"1", "64"})
+    private int shards;
+
+    private ChatRoomRegistry registry;
+    private final AtomicLong nextRoomId = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        registry = new ChatRoomRegistry(new NoopBus(), shards);
+    }
+
+    // 스레드마다 자신만의 채팅방과 세션을 사용
+    @State(Scope.Thread)
+    public static class ThreadRoom {
+        private Long roomId;
+        private WebSocketSession session;
+
+        @Setup
+        public void setUp(RoomRegistryBenchmark benchmark) {
+            roomId = benchmark.nextRoomId.incrementAndGet();
+            session = new StubWebSocketSession("joiner-" + roomId);
+            for (int i = 0; i < MEMBERS; i++) {
+                benchmark.registry.join(roomId, new StubWebSocketSession(roomId + "-" + i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void enterBroadcastExit(ThreadRoom room, Blackhole blackhole) {
+        registry.join(room.roomId, room.session);
+        blackhole.consume(registry.members(room.roomId));
+        registry.leave(room.roomId, room.session);
+    }
+
+    private static final class NoopBus implements RoomBroadcastBus {
+        @Override
+        public void publish(RoomBroadcast broadcast) {
+        }
+
+        @Override
+        public void subscribe(Long roomId) {
+        }
+
+        @Override
+        public void unsubscribe(Long roomId) {
+        }
+    }
+}
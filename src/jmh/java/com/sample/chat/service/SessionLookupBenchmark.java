@@ -0,0 +1,58 @@
+package com.sample.chat.service;
+
+import com.sample.chat.support.StubWebSocketSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// 접속 중인 세션 수에 따른 회원 ID -> 세션 조회 비용 (SessionService.findSessionByMemberId)
+// 색인이 Map 이므로 세션 수와 관계없이 일정해야 한다. 세션 수가 늘어 CPU 캐시를 벗어나는 만큼만 느려진다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionLookupBenchmark {
+    private static final int LOOKUPS = 1024; // 미리 섞어 둔 조회 대상 수 (2 의 거듭제곱)
+
+    @Param({"1000", "10000", "100000"})
+    private int sessions;
+
+    private SessionService sessionService;
+    private Long[] memberIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sessionService = new SessionService();
+        for (int i = 0; i < sessions; i++) {
+            WebSocketSession session = new StubWebSocketSession("session-" + i);
+            sessionService.putSession(session);
+            sessionService.bindMember(session, (long) i);
+        }
+        // 같은 회원만 반복해서 조회하지 않도록 무작위 회원 ID 를 미리 만들어 둔다. (절반은 접속하지 않은 회원)
+        Random random = new Random(42);
+        memberIds = new Long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            memberIds[i] = (long) random.nextInt(sessions * 2);
+        }
+    }
+
+    @Benchmark
+    public WebSocketSession findSessionByMemberId() {
+        return sessionService.findSessionByMemberId(memberIds[next++ & (LOOKUPS - 1)]);
+    }
+}
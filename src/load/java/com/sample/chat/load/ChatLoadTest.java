@@ -0,0 +1,350 @@
+package com.sample.chat.load;
+
+import com.sample.chat.ChatApplication;
+import com.sample.chat.utils.ChatToken;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+웹소켓 채팅(/ws/chat)에 대한 부하 테스트 도구이다. (./gradlew loadTest -Pload="--clients=5000 --rooms=100 --rate=2000")
+서버 하나가 지연 시간(p99)이 나빠지기 전까지 동시 연결 몇 개와 초당 메시지 몇 건을 처리할 수 있는지 확인하는 용도이다.
+
+1. 대상 서버를 정하지 않으면(--url) H2 를 사용하는 서버를 같은 JVM 에 띄우고, 부하용 회원(load-N@example.com)과 채팅방(ID 1 ~ rooms)을 만든다.
+   외부 서버를 대상으로 할 때는 같은 회원과 채팅방을 미리 만들어 두고, 서버의 chat.auth.secret 을 --auth-secret 으로 넘긴다.
+   (클라이언트는 그 키로 회원마다 연결 토큰을 직접 만들어 /ws/chat?token=... 으로 연결한다)
+2. 클라이언트 N 개를 초당 connect-rate 개씩 연결하고, 각 클라이언트는 분포(uniform / zipf)에 따라 고른 채팅방에 입장한다.
+3. 예열 후 측정 시간 동안 전체 초당 rate 건의 TALK 메시지를 무작위 클라이언트가 보내고, 초당 churn 개의 클라이언트가 다른 방으로 옮긴다.
+4. 1 초마다 처리량과 전송 -> 수신 지연 시간을 출력하고, 끝나면 전체 분포(HdrHistogram)와 서버 자원 사용량을 출력한다.
+*/
+public class ChatLoadTest {
+    private static final int TICKS_PER_SECOND = 100; // 전송 스레드가 메시지를 보내는 간격 (10 ms)
+
+    private final LoadOptions options;
+    private final String url;
+    private final ServerMetrics serverMetrics; // actuator 주소가 없으면 null
+    private final Recorder latencyRecorder = new Recorder(3); // 전송 -> 수신 지연 시간 (마이크로초)
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final double[] roomCdf; // zipf 분포의 누적 확률 (uniform 이면 null)
+    private final ChatToken chatToken; // 회원별 웹소켓 연결 토큰 발급
+    private final String padding;
+
+    ChatLoadTest(LoadOptions options, String url, String managementUrl) {
+        this.options = options;
+        this.url = url;
+        this.serverMetrics = managementUrl != null ? new ServerMetrics(managementUrl) : null;
+        this.roomCdf = options.distribution.equals("zipf") ? zipfCdf(options.rooms, options.zipfExponent) : null;
+        this.chatToken = new ChatToken(options.authSecret.getBytes(StandardCharsets.UTF_8));
+        StringBuilder text = new StringBuilder(options.messageSize);
+        while (text.length() < options.messageSize) {
+            text.append("가나다라 abcd ");
+        }
+        this.padding = text.substring(0, options.messageSize);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        ConfigurableApplicationContext server = null;
+        String url = options.url;
+        String managementUrl = options.managementUrl;
+        if (options.embedded()) {
+            server = startServer(options);
+            Environment environment = server.getEnvironment();
+            url = "ws://localhost:" + environment.getProperty("local.server.port") + "/ws/chat";
+            managementUrl = "http://localhost:" + environment.getProperty("local.management.port");
+            seed(server.getBean(JdbcTemplate.class), options);
+        }
+        try {
+            new ChatLoadTest(options, url, managementUrl).run();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+        System.exit(0); // 웹소켓 클라이언트의 스레드가 남아 있어도 종료
+    }
+
+    // H2 를 사용하는 서버를 임의의 포트로 띄운다. 로그와 속도 제한이 측정을 방해하지 않도록 끄고, 실행 인자로 받은 설정이 있으면 덮어쓴다.
+    private static ConfigurableApplicationContext startServer(LoadOptions options) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:load;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.properties.hibernate.show_sql", "false");
+        properties.put("logging.level.org.hibernate.type.descriptor.sql", "info");
+        properties.put("logging.level.com.sample.chat", "warn");
+        properties.put("server.port", "0");
+        properties.put("management.server.port", "0");
+        properties.put("chat.rate-limit.session.rate", "0");
+        properties.put("chat.rate-limit.membership.rate", "0");
+        properties.put("chat.rate-limit.activity.rate", "0");
+        properties.put("chat.rate-limit.room.rate", "0");
+        properties.put("chat.auth.secret", options.authSecret);
+        for (String arg : options.serverArgs) {
+            int eq = arg.indexOf('=');
+            properties.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        List<String> args = new ArrayList<>();
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+        return SpringApplication.run(ChatApplication.class, args.toArray(new String[0]));
+    }
+
+    // 부하용 회원(ID 1 ~ clients)과 채팅방(ID 1 ~ rooms)을 만든다.
+    private static void seed(JdbcTemplate jdbcTemplate, LoadOptions options) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> members = new ArrayList<>(options.clients);
+        for (int i = 1; i <= options.clients; i++) {
+            members.add(new Object[]{(long) i, LoadOptions.email(i), "부하" + i, "load", now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO member (member_id, email, name, password, reg_date) VALUES (?, ?, ?, ?, ?)", members);
+        List<Object[]> rooms = new ArrayList<>(options.rooms);
+        for (int i = 1; i <= options.rooms; i++) {
+            rooms.add(new Object[]{(long) i, "부하 테스트 " + i, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO chat_room (room_id, name, reg_date) VALUES (?, ?, ?)", rooms);
+    }
+
+    void run() throws Exception {
+        List<LoadClient> clients = connect();
+        if (clients.isEmpty()) {
+            System.out.println("연결된 클라이언트가 없어 종료합니다.");
+            return;
+        }
+        int[] occupancy = new int[options.rooms + 1];
+        for (LoadClient client : clients) {
+            long roomId = pickRoom();
+            occupancy[(int) roomId]++;
+            client.enter(roomId);
+        }
+        System.out.printf("채팅방 %d 개 (%s), 가장 큰 방의 접속자 %d 명%n",
+                options.rooms, options.distribution, Arrays.stream(occupancy).max().orElse(0));
+
+        ScheduledExecutorService senders = startSenders(clients);
+        Histogram total = new Histogram(3);
+        long sentTotal;
+        double elapsed;
+        try {
+            TimeUnit.SECONDS.sleep(options.warmup);
+            // 예열 중의 값은 버린다.
+            latencyRecorder.getIntervalHistogram();
+            sent.reset();
+            if (serverMetrics != null) {
+                serverMetrics.begin();
+            }
+            Histogram interval = null;
+            long lastSent = 0;
+            long measureStart = System.nanoTime();
+            long lastSnapshotAt = measureStart;
+            for (int second = 1; second <= options.duration; second++) {
+                // 서버 지표 수집에 걸린 시간만큼 측정 간격이 밀리지 않도록 시작 시각 기준으로 기다린다.
+                long wait = measureStart + TimeUnit.SECONDS.toNanos(second) - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                interval = latencyRecorder.getIntervalHistogram(interval);
+                long sentSoFar = sent.sum();
+                lastSnapshotAt = System.nanoTime();
+                total.add(interval);
+                if (serverMetrics != null) {
+                    serverMetrics.sample();
+                }
+                System.out.printf("%3d 초 : 전송 %6d 건, 수신 %7d 건, p50 %7.2f ms, p99 %7.2f ms, 최대 %8.2f ms%n", second,
+                        sentSoFar - lastSent, interval.getTotalCount(),
+                        millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99)), millis(interval.getMaxValue()));
+                lastSent = sentSoFar;
+            }
+            sentTotal = lastSent;
+            elapsed = (lastSnapshotAt - measureStart) / 1e9;
+            if (serverMetrics != null) {
+                serverMetrics.end();
+            }
+        } finally {
+            senders.shutdownNow();
+            senders.awaitTermination(5, TimeUnit.SECONDS);
+            for (LoadClient client : clients) {
+                client.close();
+            }
+        }
+        report(clients.size(), sentTotal, total, elapsed);
+    }
+
+    // 클라이언트를 초당 connect-rate 개씩 연결하고, 연결에 성공한 클라이언트만 반환
+    private List<LoadClient> connect() throws InterruptedException {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(16);
+        executor.setThreadNamePrefix("load-connect-");
+        executor.initialize();
+        StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+        webSocketClient.setTaskExecutor(executor);
+
+        List<LoadClient> pending = new ArrayList<>(options.clients);
+        List<ListenableFuture<WebSocketSession>> handshakes = new ArrayList<>(options.clients);
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < options.clients; i++) {
+            long due = startedAt + TimeUnit.SECONDS.toNanos(i) / options.connectRate;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            int member = i + 1;
+            LoadClient client = new LoadClient(member, latencyRecorder);
+            pending.add(client);
+            handshakes.add(webSocketClient.doHandshake(client, new WebSocketHttpHeaders(),
+                    URI.create(url + "?token=" + chatToken.issue(member, System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))));
+        }
+        List<LoadClient> connected = new ArrayList<>(options.clients);
+        int failed = 0;
+        for (int i = 0; i < handshakes.size(); i++) {
+            try {
+                handshakes.get(i).get(30, TimeUnit.SECONDS);
+                connected.add(pending.get(i));
+            } catch (Exception e) {
+                if (failed++ == 0) {
+                    System.out.println("연결 실패 : " + e);
+                }
+            }
+        }
+        executor.shutdown();
+        System.out.printf("클라이언트 연결 : 성공 %d, 실패 %d (%.1f 초)%n", connected.size(), failed,
+                (System.nanoTime() - startedAt) / 1e9);
+        return connected;
+    }
+
+    // 클라이언트를 전송 스레드 수만큼 나누어, 각 스레드가 자신의 클라이언트로만 10 ms 마다 TALK 를 보내고 채팅방을 옮긴다.
+    private ScheduledExecutorService startSenders(List<LoadClient> clients) {
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(options.senders, runnable -> {
+            Thread thread = new Thread(runnable, "load-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        double talkPerTick = (double) options.rate / options.senders / TICKS_PER_SECOND;
+        double churnPerTick = (double) options.churn / options.senders / TICKS_PER_SECOND;
+        for (int s = 0; s < options.senders; s++) {
+            List<LoadClient> owned = new ArrayList<>();
+            for (int i = s; i < clients.size(); i += options.senders) {
+                owned.add(clients.get(i));
+            }
+            if (owned.isEmpty()) {
+                continue;
+            }
+            double[] budget = new double[2]; // 이번 간격에 보낼 TALK 와 방 이동 수 (소수점 이하는 다음 간격으로 넘긴다)
+            senders.scheduleAtFixedRate(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                budget[0] += talkPerTick;
+                budget[1] += churnPerTick;
+                for (; budget[0] >= 1; budget[0]--) {
+                    LoadClient client = owned.get(random.nextInt(owned.size()));
+                    if (send(client, () -> client.talk(padding))) {
+                        sent.increment();
+                    }
+                }
+                for (; budget[1] >= 1; budget[1]--) {
+                    LoadClient client = owned.get(random.nextInt(owned.size()));
+                    send(client, () -> {
+                        client.leave();
+                        client.enter(pickRoom());
+                    });
+                }
+            }, 0, 1000 / TICKS_PER_SECOND, TimeUnit.MILLISECONDS);
+        }
+        return senders;
+    }
+
+    private boolean send(LoadClient client, IoAction action) {
+        if (!client.isOpen()) {
+            errors.increment();
+            return false;
+        }
+        try {
+            action.run();
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            errors.increment();
+            return false;
+        }
+    }
+
+    private void report(int connected, long sentTotal, Histogram total, double elapsed) throws IOException {
+        long delivered = total.getTotalCount();
+        System.out.printf("%n== 결과 (측정 %.1f 초) ==%n", elapsed);
+        System.out.printf("클라이언트 %d 개, 채팅방 %d 개 (%s), 전송 오류 %d 건 (연결이 끊긴 클라이언트 포함)%n",
+                connected, options.rooms, options.distribution, errors.sum());
+        System.out.printf("전송 : %d 건 (%.1f 건/s), 수신 : %d 건 (%.1f 건/s)%n",
+                sentTotal, sentTotal / elapsed, delivered, delivered / elapsed);
+        System.out.printf("전송 -> 수신 지연 시간 (ms) : p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, 최대 %.2f%n",
+                millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(90)),
+                millis(total.getValueAtPercentile(99)), millis(total.getValueAtPercentile(99.9)), millis(total.getMaxValue()));
+        if (serverMetrics != null) {
+            System.out.println(serverMetrics.report());
+        }
+        if (options.histogramFile != null) {
+            try (PrintStream out = new PrintStream(options.histogramFile)) {
+                total.outputPercentileDistribution(out, 1000.0); // 밀리초 단위
+            }
+            System.out.println("지연 시간 분포 저장 : " + options.histogramFile);
+        }
+    }
+
+    // 클라이언트가 입장할 채팅방 ID (1 ~ rooms)
+    private long pickRoom() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (roomCdf == null) {
+            return random.nextInt(options.rooms) + 1;
+        }
+        int index = Arrays.binarySearch(roomCdf, random.nextDouble());
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    // k 번째 방이 선택될 확률이 1 / k^exponent 에 비례하는 분포의 누적 확률
+    private static double[] zipfCdf(int rooms, double exponent) {
+        double[] cdf = new double[rooms];
+        double sum = 0;
+        for (int k = 1; k <= rooms; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cdf[k - 1] = sum;
+        }
+        for (int i = 0; i < rooms; i++) {
+            cdf[i] /= sum;
+        }
+        cdf[rooms - 1] = 1.0;
+        return cdf;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+}
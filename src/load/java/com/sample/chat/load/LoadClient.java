@@ -0,0 +1,95 @@
+package com.sample.chat.load;
+
+import org.HdrHistogram.Recorder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+
+/*
+부하 테스트의 클라이언트 하나 (웹소켓 연결 하나)이다.
+보내는 TALK 메시지 본문의 앞에 보낸 시각(System.nanoTime)을 넣고, 받은 쪽에서 현재 시각과의 차이를 전송 -> 수신 지연 시간으로 기록한다.
+보내는 쪽과 받는 쪽이 같은 JVM 에 있으므로 시계를 맞출 필요가 없다.
+메시지는 이 클라이언트를 맡은 전송 스레드 하나에서만 보내므로 세션의 전송을 동기화하지 않는다. (ChatLoadTest)
+*/
+class LoadClient extends TextWebSocketHandler {
+    static final String MARKER = "load:"; // 본문의 "load:<보낸 시각>:" 부분
+
+    private final int member;
+    private final Recorder latencyRecorder; // 전체 클라이언트가 공유, 마이크로초 단위
+    private volatile WebSocketSession session;
+    private volatile boolean closed;
+    long roomId; // 현재 입장해 있는 채팅방, 전송 스레드에서만 읽고 쓴다.
+
+    LoadClient(int member, Recorder latencyRecorder) {
+        this.member = member;
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    int getMember() {
+        return member;
+    }
+
+    boolean isOpen() {
+        WebSocketSession current = session;
+        return current != null && current.isOpen() && !closed;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        closed = true;
+    }
+
+    // 받은 메시지 중 부하 테스트의 TALK 메시지만 지연 시간을 기록한다. (입장/퇴장/활동 알림은 무시)
+    // 수신 스레드가 부하의 일부가 되지 않도록 JSON 을 파싱하지 않고 본문의 표시만 찾는다.
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        long now = System.nanoTime();
+        String payload = message.getPayload();
+        int start = payload.indexOf(MARKER);
+        if (start < 0) {
+            return;
+        }
+        int end = payload.indexOf(':', start + MARKER.length());
+        if (end < 0) {
+            return;
+        }
+        long sentAt = Long.parseLong(payload, start + MARKER.length(), end, 10);
+        latencyRecorder.recordValue(Math.max(0, (now - sentAt) / 1000));
+    }
+
+    void enter(long roomId) throws IOException {
+        this.roomId = roomId;
+        send("{\"type\":\"ENTER\",\"roomId\":\"" + roomId + "\"}");
+    }
+
+    void leave() throws IOException {
+        send("{\"type\":\"CLOSE\",\"roomId\":\"" + roomId + "\"}");
+    }
+
+    void talk(String padding) throws IOException {
+        send("{\"type\":\"TALK\",\"roomId\":\"" + roomId + "\",\"message\":\"" + MARKER + System.nanoTime() + ":" + padding + "\"}");
+    }
+
+    void close() {
+        WebSocketSession current = session;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // 종료 중의 오류는 무시
+            }
+        }
+    }
+
+    private void send(String json) throws IOException {
+        session.sendMessage(new TextMessage(json));
+    }
+}
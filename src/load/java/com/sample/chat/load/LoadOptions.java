@@ -0,0 +1,84 @@
+package com.sample.chat.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+부하 테스트 설정이다. 실행 인자는 --이름=값 형식이며, 여기에 없는 인자(예 : --chat.websocket.buffer-size-limit=...)는
+내장 서버를 띄울 때 스프링 설정으로 그대로 전달된다.
+*/
+class LoadOptions {
+    int clients = 1000; // 동시에 연결할 웹소켓 클라이언트 수
+    int rooms = 50; // 채팅방 수 (ID 1 ~ rooms)
+    String distribution = "uniform"; // 클라이언트가 채팅방을 고르는 분포 : uniform | zipf (소수의 방에 접속자가 몰림)
+    double zipfExponent = 1.0; // zipf 분포의 지수, 클수록 첫 번째 방들에 더 몰린다.
+    int rate = 500; // 전체 클라이언트가 보내는 초당 TALK 메시지 수
+    int churn = 0; // 초당 채팅방을 옮기는(CLOSE 후 다른 방에 ENTER) 클라이언트 수
+    int messageSize = 64; // TALK 메시지 본문의 길이 (문자 수)
+    int connectRate = 500; // 초당 새로 연결하는 클라이언트 수
+    int warmup = 5; // 측정 전 예열 시간 (초)
+    int duration = 30; // 측정 시간 (초)
+    int senders = 4; // 메시지를 보내는 스레드 수
+    String url; // 대상 서버의 웹소켓 주소, 없으면 H2 를 사용하는 서버를 같은 JVM 에 띄운다.
+    String managementUrl; // 대상 서버의 actuator 주소 (예 : http://localhost:8112), 없으면 서버 자원 사용량을 수집하지 않는다.
+    String histogramFile; // 지연 시간 분포를 HdrHistogram 형식(.hgrm)으로 저장할 파일
+    String authSecret; // 웹소켓 연결 토큰을 만들 비밀 키 (대상 서버의 chat.auth.secret), 내장 서버는 임의의 값을 설정한다.
+    final List<String> serverArgs = new ArrayList<>();
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("인자는 --이름=값 형식이어야 합니다 : " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        values.forEach((name, value) -> {
+            switch (name) {
+                case "clients": options.clients = Integer.parseInt(value); break;
+                case "rooms": options.rooms = Integer.parseInt(value); break;
+                case "distribution": options.distribution = value; break;
+                case "zipf-exponent": options.zipfExponent = Double.parseDouble(value); break;
+                case "rate": options.rate = Integer.parseInt(value); break;
+                case "churn": options.churn = Integer.parseInt(value); break;
+                case "message-size": options.messageSize = Integer.parseInt(value); break;
+                case "connect-rate": options.connectRate = Integer.parseInt(value); break;
+                case "warmup": options.warmup = Integer.parseInt(value); break;
+                case "duration": options.duration = Integer.parseInt(value); break;
+                case "senders": options.senders = Integer.parseInt(value); break;
+                case "url": options.url = value; break;
+                case "management-url": options.managementUrl = value; break;
+                case "histogram-file": options.histogramFile = value; break;
+                case "auth-secret": options.authSecret = value; break;
+                default: options.serverArgs.add("--" + name + "=" + value); break;
+            }
+        });
+        if (!options.distribution.equals("uniform") && !options.distribution.equals("zipf")) {
+            throw new IllegalArgumentException("distribution 은 uniform 또는 zipf 입니다 : " + options.distribution);
+        }
+        if (options.clients < 1 || options.rooms < 1 || options.senders < 1 || options.connectRate < 1) {
+            throw new IllegalArgumentException("clients, rooms, senders, connect-rate 는 1 이상이어야 합니다.");
+        }
+        if (options.authSecret == null) {
+            if (!options.embedded()) {
+                throw new IllegalArgumentException("외부 서버를 대상으로 할 때는 서버의 chat.auth.secret 값을 --auth-secret 으로 넘겨야 합니다.");
+            }
+            options.authSecret = UUID.randomUUID().toString();
+        }
+        return options;
+    }
+
+    boolean embedded() {
+        return url == null;
+    }
+
+    // 회원 i(ID 도 i) 의 이메일 (내장 서버는 시작할 때 이 회원들을 만들고, 외부 서버는 미리 만들어 두어야 한다)
+    static String email(int member) {
+        return "load-" + member + "@example.com";
+    }
+}
@@ -0,0 +1,111 @@
+package com.sample.chat.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/*
+서버의 자원 사용량을 actuator 의 /actuator/metrics 로 수집하는 클래스이다.
+측정 중에는 1 초마다 CPU 사용률, 힙 사용량, 스레드 수를 읽어 최댓값과 평균을 구하고,
+누적 값(GC 정지 시간, 버려진 메시지 수 등)은 측정 시작과 끝의 차이를 구한다.
+내장 서버는 부하를 만드는 클라이언트와 같은 프로세스이므로, CPU 와 스레드 수에는 클라이언트의 몫도 포함된다.
+*/
+class ServerMetrics {
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+
+    private int samples;
+    private double cpuSum;
+    private double cpuMax;
+    private double heapMax;
+    private double threadsMax;
+    private Counters start;
+    private Counters end;
+
+    ServerMetrics(String managementUrl) {
+        this.baseUrl = managementUrl.endsWith("/") ? managementUrl.substring(0, managementUrl.length() - 1) : managementUrl;
+    }
+
+    // 측정 시작 : 누적 값의 시작점을 저장
+    void begin() {
+        start = counters();
+    }
+
+    // 측정 끝 : 클라이언트의 연결을 끊기 전에 누적 값을 저장 (연결 종료로 버려진 메시지는 세지 않는다)
+    void end() {
+        end = counters();
+    }
+
+    // 측정 중 1 초마다 호출
+    void sample() {
+        double cpu = value("process.cpu.usage", null, "VALUE");
+        double heap = value("jvm.memory.used", "area:heap", "VALUE");
+        double threads = value("jvm.threads.live", null, "VALUE");
+        samples++;
+        cpuSum += cpu;
+        cpuMax = Math.max(cpuMax, cpu);
+        heapMax = Math.max(heapMax, heap);
+        threadsMax = Math.max(threadsMax, threads);
+    }
+
+    String report() {
+        return String.format(
+                "서버 CPU 사용률 : 평균 %.1f%%, 최대 %.1f%% (코어 %d 개)%n" +
+                "힙 사용량 최대 : %.0f MB, 스레드 수 최대 : %.0f%n" +
+                "GC 정지 : %.0f 회, %.0f ms%n" +
+                "전송 버퍼 초과로 버린 메시지 : %.0f, 대기열 초과로 버린 이벤트 : %.0f, 속도 제한으로 버린 메시지 : %.0f",
+                samples > 0 ? cpuSum / samples * 100 : 0, cpuMax * 100, (int) value("system.cpu.count", null, "VALUE"),
+                heapMax / (1024 * 1024), threadsMax,
+                end.gcCount - start.gcCount, (end.gcTime - start.gcTime) * 1000,
+                end.dropped - start.dropped, end.rejected - start.rejected, end.rateLimited - start.rateLimited);
+    }
+
+    private Counters counters() {
+        Counters counters = new Counters();
+        counters.gcCount = value("jvm.gc.pause", null, "COUNT");
+        counters.gcTime = value("jvm.gc.pause", null, "TOTAL_TIME");
+        counters.dropped = value("chat.ws.outbound.dropped", null, "COUNT");
+        counters.rejected = value("chat.events.rejected", null, "COUNT");
+        counters.rateLimited = value("chat.ratelimit.dropped", null, "COUNT");
+        return counters;
+    }
+
+    // 지표 하나의 값, 지표가 아직 없거나(예 : GC 가 한 번도 없었음) 읽지 못하면 0
+    private double value(String name, String tag, String statistic) {
+        String url = baseUrl + "/actuator/metrics/" + name
+                + (tag != null ? "?tag=" + URLEncoder.encode(tag, StandardCharsets.UTF_8) : "");
+        try {
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(2)).build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return 0;
+            }
+            for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+                if (statistic.equals(measurement.path("statistic").asText())) {
+                    return measurement.path("value").asDouble();
+                }
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return 0;
+    }
+
+    private static final class Counters {
+        private double gcCount;
+        private double gcTime;
+        private double dropped;
+        private double rejected;
+        private double rateLimited;
+    }
+}
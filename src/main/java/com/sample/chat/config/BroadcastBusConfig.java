@@ -0,0 +1,44 @@
+package com.sample.chat.config;
+
+import com.sample.chat.dto.RoomBroadcast;
+import com.sample.chat.service.InProcessRoomBroadcastBus;
+import com.sample.chat.service.RemoteBroadcastEvent;
+import com.sample.chat.service.TcpRoomBroadcastBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// 노드 간 메시지 버스(RoomBroadcastBus) 구현을 chat.bus.type 으로 선택하는 클래스 (in-process : 기본값, tcp)
+@Configuration
+public class BroadcastBusConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.bus.type", havingValue = "in-process", matchIfMissing = true)
+    public InProcessRoomBroadcastBus inProcessRoomBroadcastBus(RoomEventDispatcher roomEventDispatcher) {
+        return new InProcessRoomBroadcastBus(new InProcessRoomBroadcastBus.Hub(), receiver(roomEventDispatcher));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.bus.type", havingValue = "tcp")
+    public TcpRoomBroadcastBus tcpRoomBroadcastBus(RoomEventDispatcher roomEventDispatcher, MeterRegistry meterRegistry,
+                                                   @Value("${chat.bus.tcp.bind-address:localhost}") String bindAddress,
+                                                   @Value("${chat.bus.tcp.port:9111}") int port,
+                                                   @Value("${chat.bus.tcp.advertised-address:localhost:${chat.bus.tcp.port:9111}}") String advertisedAddress,
+                                                   @Value("${chat.bus.tcp.peers:}") List<String> peers,
+                                                   @Value("${chat.bus.tcp.secret:}") String secret,
+                                                   @Value("${chat.bus.tcp.max-batch-size:256}") int maxBatchSize,
+                                                   @Value("${chat.bus.tcp.queue-capacity:10000}") int queueCapacity) {
+        return new TcpRoomBroadcastBus(advertisedAddress, bindAddress, port, peers, secret, maxBatchSize, queueCapacity,
+                receiver(roomEventDispatcher), meterRegistry);
+    }
+
+    // 다른 노드에서 온 메시지는 해당 채팅방의 이벤트 처리 스레드에서 처리 (같은 방의 메시지 순서 유지)
+    private static Consumer<RoomBroadcast> receiver(RoomEventDispatcher roomEventDispatcher) {
+        return broadcast -> roomEventDispatcher.dispatch(broadcast.getRoomId(), new RemoteBroadcastEvent(broadcast));
+    }
+}
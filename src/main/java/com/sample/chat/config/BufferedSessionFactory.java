@@ -0,0 +1,74 @@
+package com.sample.chat.config;
+
+import com.sample.chat.service.SessionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.Executor;
+
+// 웹소켓 세션을 BufferedWebSocketSession 으로 감싸는 클래스 (설정값과 전송 스레드 풀, 지표를 한 곳에서 관리)
+@Component
+public class BufferedSessionFactory {
+    private final Executor outboundExecutor;
+    private final SessionService sessionService;
+    private final Counter droppedCounter;
+    private final Timer sendLatencyTimer;
+
+    @Value("${chat.websocket.send-time-limit:10000}")
+    private int sendTimeLimit; // 한 번의 소켓 쓰기에 허용되는 최대 시간 (ms)
+
+    @Value("${chat.websocket.buffer-size-limit:524288}")
+    private int bufferSizeLimit; // 세션별로 쌓아둘 수 있는 최대 바이트 수
+
+    @Value("${chat.websocket.overflow-policy:DROP_OLDEST}")
+    private BufferedWebSocketSession.OverflowPolicy overflowPolicy;
+
+    @Autowired
+    BufferedSessionFactory(@Qualifier("outboundExecutor") Executor outboundExecutor, SessionService sessionService, MeterRegistry meterRegistry) {
+        this.outboundExecutor = outboundExecutor;
+        this.sessionService = sessionService;
+        this.droppedCounter = Counter.builder("chat.ws.outbound.dropped")
+                .description("버퍼 초과나 연결 종료로 전송되지 못한 메시지 수")
+                .register(meterRegistry);
+        this.sendLatencyTimer = Timer.builder("chat.ws.outbound.latency")
+                .description("수신자 한 명에게 메시지가 큐에 들어온 뒤 소켓에 쓰일 때까지 걸린 시간")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queued", this, BufferedSessionFactory::totalQueueDepth)
+                .description("전체 세션의 전송 대기 메시지 수")
+                .register(meterRegistry);
+        Gauge.builder("chat.ws.outbound.queue.depth.max", this, BufferedSessionFactory::maxQueueDepth)
+                .description("전송 대기 메시지가 가장 많은 세션의 큐 길이")
+                .register(meterRegistry);
+    }
+
+    public BufferedWebSocketSession decorate(WebSocketSession session) {
+        return new BufferedWebSocketSession(session, outboundExecutor, sendTimeLimit, bufferSizeLimit, overflowPolicy, droppedCounter, sendLatencyTimer);
+    }
+
+    private double totalQueueDepth() {
+        long total = 0;
+        for (WebSocketSession session : sessionService.getSessions()) {
+            if (session instanceof BufferedWebSocketSession) {
+                total += ((BufferedWebSocketSession) session).getQueueDepth();
+            }
+        }
+        return total;
+    }
+
+    private double maxQueueDepth() {
+        int max = 0;
+        for (WebSocketSession session : sessionService.getSessions()) {
+            if (session instanceof BufferedWebSocketSession) {
+                max = Math.max(max, ((BufferedWebSocketSession) session).getQueueDepth());
+            }
+        }
+        return max;
+    }
+}
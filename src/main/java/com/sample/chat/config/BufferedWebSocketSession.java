@@ -0,0 +1,262 @@
+package com.sample.chat.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/*
+웹소켓 세션으로 나가는 메시지를 세션별 큐에 쌓아두고, 별도의 전송 스레드 풀에서 순서대로 보내는 데코레이터이다.
+스프링의 ConcurrentWebSocketSessionDecorator 와 같은 목적이지만, 메시지를 보내는 쪽(방송하는 스레드)은 큐에 넣기만 하고
+실제 소켓 쓰기는 전송 스레드가 담당하기 때문에, 느린 클라이언트 한 명이 방 전체의 전송을 막지 않는다.
+한 세션에 대해서는 한 번에 하나의 전송 작업만 실행되므로, 원본 WebSocketSession 에 동시에 쓰는 문제도 발생하지 않는다.
+병합 키가 있는 메시지(입력 중 표시, 접속 상태처럼 최신 값만 의미 있는 메시지)는 별도의 큐에 쌓여, 일반 메시지(채팅)가 모두 전송된 뒤에 전송된다.
+*/
+@Slf4j
+public class BufferedWebSocketSession extends WebSocketSessionDecorator {
+    // 버퍼가 가득 찼을 때의 처리 정책
+    public enum OverflowPolicy {
+        DROP_OLDEST, // 가장 오래된 메시지부터 버린다.
+        COALESCE, // 병합 키가 있는(최신 값만 의미 있는) 메시지부터 버리고, 그래도 넘치면 가장 오래된 메시지를 버린다.
+        DISCONNECT // 느린 클라이언트로 판단하고 연결을 끊는다.
+    }
+
+    // 큐에 쌓이는 메시지 한 건 (병합 키가 같은 메시지는 큐 안에서 최신 메시지로 교체된다)
+    private static final class Frame {
+        private WebSocketMessage<?> message;
+        private final String coalesceKey;
+        private long enqueuedAt; // 큐에 들어온 시각 (System.nanoTime, 병합되면 새 메시지가 들어온 시각)
+
+        private Frame(WebSocketMessage<?> message, String coalesceKey, long enqueuedAt) {
+            this.message = message;
+            this.coalesceKey = coalesceKey;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final Executor executor;
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final OverflowPolicy overflowPolicy;
+    private final Counter droppedCounter; // 전체 세션에서 버려진 메시지 수 (지표)
+    private final Timer sendLatencyTimer; // 메시지가 큐에 들어온 뒤 소켓에 쓰일 때까지 걸린 시간 (지표)
+
+    // 아래 필드들은 모두 lock 으로 보호된다.
+    private final Object lock = new Object();
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private final ArrayDeque<Frame> lowPriorityQueue = new ArrayDeque<>(); // 병합 키가 있는 메시지 (queue 가 비었을 때 전송)
+    private final Map<String, Frame> coalesceMap = new HashMap<>();
+    private int bufferSize; // 큐에 쌓인 메시지들의 바이트 크기 합
+    private boolean draining; // 전송 작업이 실행 중인지 여부
+    private boolean closed;
+
+    private volatile long sendStartTime; // 현재 진행 중인 소켓 쓰기의 시작 시각 (0 이면 쓰는 중이 아님)
+    private volatile long droppedCount;
+
+    public BufferedWebSocketSession(WebSocketSession delegate, Executor executor,
+                                    int sendTimeLimit, int bufferSizeLimit, OverflowPolicy overflowPolicy,
+                                    Counter droppedCounter, Timer sendLatencyTimer) {
+        super(delegate);
+        this.executor = executor;
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.overflowPolicy = overflowPolicy;
+        this.droppedCounter = droppedCounter;
+        this.sendLatencyTimer = sendLatencyTimer;
+    }
+
+    // 메시지를 큐에 넣고 바로 반환한다. 실제 전송은 전송 스레드에서 수행된다.
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        sendMessage(message, null);
+    }
+
+    // coalesceKey 가 같은 메시지가 아직 전송되지 않고 큐에 남아있다면, 새 메시지로 교체한다. (예: 입력 중 표시, 접속 상태)
+    public void sendMessage(WebSocketMessage<?> message, String coalesceKey) {
+        if (isSendTimeLimitExceeded()) {
+            disconnect("send time limit exceeded");
+            return;
+        }
+        boolean schedule = false;
+        boolean overflowDisconnect = false;
+        long now = System.nanoTime();
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            Frame queued = coalesceKey != null ? coalesceMap.get(coalesceKey) : null;
+            if (queued != null) {
+                bufferSize += message.getPayloadLength() - queued.message.getPayloadLength();
+                queued.message = message;
+                queued.enqueuedAt = now;
+            } else {
+                Frame frame = new Frame(message, coalesceKey, now);
+                if (coalesceKey != null) {
+                    lowPriorityQueue.addLast(frame);
+                    coalesceMap.put(coalesceKey, frame);
+                } else {
+                    queue.addLast(frame);
+                }
+                bufferSize += message.getPayloadLength();
+            }
+            if (bufferSize > bufferSizeLimit && !handleOverflow()) {
+                overflowDisconnect = true;
+            } else {
+                schedule = !draining;
+                draining = true;
+            }
+        }
+        if (overflowDisconnect) {
+            disconnect("buffer size limit exceeded");
+        } else if (schedule) {
+            scheduleDrain();
+        }
+    }
+
+    // 버퍼 초과 시 정책에 따라 처리, 연결을 끊어야 하는 경우 false 를 반환
+    private boolean handleOverflow() {
+        switch (overflowPolicy) {
+            case DISCONNECT:
+                return false;
+            case COALESCE:
+                while (bufferSize > bufferSizeLimit && !lowPriorityQueue.isEmpty() && !queue.isEmpty()) {
+                    dropped(lowPriorityQueue.pollFirst());
+                }
+                // 병합 가능한 메시지를 모두 버려도 넘친다면 가장 오래된 메시지부터 버린다.
+            case DROP_OLDEST:
+            default:
+                while (bufferSize > bufferSizeLimit && queue.size() > 1) {
+                    dropped(queue.pollFirst());
+                }
+                while (bufferSize > bufferSizeLimit && queue.size() + lowPriorityQueue.size() > 1) {
+                    dropped(lowPriorityQueue.pollFirst());
+                }
+                return true;
+        }
+    }
+
+    private void dropped(Frame frame) {
+        bufferSize -= frame.message.getPayloadLength();
+        if (frame.coalesceKey != null) {
+            coalesceMap.remove(frame.coalesceKey, frame);
+        }
+        droppedCount++;
+        droppedCounter.increment();
+    }
+
+    private void scheduleDrain() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            log.warn("전송 작업 등록 실패, 세션 종료 : {}", getId());
+            disconnect("outbound executor rejected");
+        }
+    }
+
+    // 전송 스레드에서 실행, 큐가 빌 때까지 순서대로 메시지를 보낸다. (병합 키가 있는 메시지는 일반 메시지가 없을 때만)
+    private void drain() {
+        while (true) {
+            WebSocketMessage<?> message;
+            long enqueuedAt;
+            synchronized (lock) {
+                Frame frame = !queue.isEmpty() ? queue.pollFirst() : lowPriorityQueue.pollFirst();
+                if (frame == null || closed) {
+                    draining = false;
+                    return;
+                }
+                if (frame.coalesceKey != null) {
+                    coalesceMap.remove(frame.coalesceKey, frame);
+                }
+                bufferSize -= frame.message.getPayloadLength();
+                message = frame.message;
+                enqueuedAt = frame.enqueuedAt;
+            }
+            try {
+                sendStartTime = System.currentTimeMillis();
+                getDelegate().sendMessage(message);
+                sendLatencyTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            } catch (IOException | IllegalStateException e) {
+                log.warn("메시지 전송 실패 : {} ({})", getId(), e.getMessage());
+                synchronized (lock) {
+                    clearQueue();
+                    draining = false;
+                }
+                return;
+            } finally {
+                sendStartTime = 0;
+            }
+        }
+    }
+
+    private boolean isSendTimeLimitExceeded() {
+        long start = sendStartTime;
+        return start != 0 && System.currentTimeMillis() - start > sendTimeLimit;
+    }
+
+    private void clearQueue() {
+        int size = queue.size() + lowPriorityQueue.size();
+        droppedCount += size;
+        droppedCounter.increment(size);
+        queue.clear();
+        lowPriorityQueue.clear();
+        coalesceMap.clear();
+        bufferSize = 0;
+    }
+
+    private void disconnect(String reason) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            clearQueue();
+        }
+        log.warn("느린 클라이언트의 연결을 종료 : {} ({})", getId(), reason);
+        try {
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("세션 종료 실패 : {}", getId(), e);
+        }
+    }
+
+    // 연결이 종료되었을 때 호출, 남은 메시지를 버리고 더 이상 큐에 넣지 않는다.
+    public void release() {
+        synchronized (lock) {
+            closed = true;
+            queue.clear();
+            lowPriorityQueue.clear();
+            coalesceMap.clear();
+            bufferSize = 0;
+        }
+    }
+
+    // 큐에 쌓여 전송을 기다리는 메시지의 수
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queue.size() + lowPriorityQueue.size();
+        }
+    }
+
+    // 큐에 쌓인 메시지들의 바이트 크기 합
+    public int getBufferSize() {
+        synchronized (lock) {
+            return bufferSize;
+        }
+    }
+
+    // 버퍼 초과나 연결 종료로 버려진 메시지의 수
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
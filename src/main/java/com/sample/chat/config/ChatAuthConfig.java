@@ -0,0 +1,28 @@
+package com.sample.chat.config;
+
+import com.sample.chat.utils.ChatToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+// 웹소켓 연결 토큰(ChatToken)의 비밀 키를 chat.auth.secret 으로 설정하는 클래스
+// 설정하지 않으면 시작할 때마다 임의의 키를 만들므로, 토큰은 발급한 서버에서 재시작 전까지만 유효하다. (서버가 여러 대이면 같은 값을 설정해야 한다)
+@Slf4j
+@Configuration
+public class ChatAuthConfig {
+
+    @Bean
+    public ChatToken chatToken(@Value("${chat.auth.secret:}") String secret) {
+        if (secret.isEmpty()) {
+            log.warn("chat.auth.secret 이 설정되지 않아 임의의 키를 사용합니다. (재시작하거나 다른 서버에 연결하면 토큰을 다시 발급받아야 함)");
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            return new ChatToken(random);
+        }
+        return new ChatToken(secret.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,181 @@
+package com.sample.chat.config;
+
+import com.sample.chat.dto.ChatMessageDto;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+/ws/chat 의 바이너리 프로토콜(chat.binary.v1)로 채팅 메시지를 인코딩/디코딩하는 클래스이다.
+클라이언트가 웹소켓 연결 시 Sec-WebSocket-Protocol 헤더로 chat.binary.v1 을 요청하면 해당 세션은 이 형식을 사용하고,
+요청하지 않은 기존 클라이언트는 지금까지처럼 JSON 텍스트 프레임을 사용한다.
+
+프레임 구성 (정수는 빅 엔디언)
+[메시지 종류 1 바이트 (ENTER=0, TALK=1, CLOSE=2, THROTTLED=3, TYPING=4, PRESENCE=5, ACTIVITY=6, ACK=7, RESUME=8)][채팅방 ID 8 바이트][회원 ID 8 바이트][메시지 길이 (가변 길이 정수)][메시지 (UTF-8)]
+[순번 (가변 길이 정수, 선택)] : 서버가 보내는 채팅 기록 메시지에만 붙는다. 메시지 길이로 끝을 알 수 있으므로, 순번을 모르는 디코더는 무시하면 된다.
+JSON 과 달리 필드 이름을 반복하지 않고 ID 를 숫자 그대로 보내기 때문에, 같은 메시지가 훨씬 작고 인코딩/디코딩도 단순하다.
+클라이언트가 보내는 회원 ID 는 사용하지 않으며(회원은 연결 시점에 확인된다), 서버가 보내는 프레임에는 보낸 회원의 ID 가 담긴다.
+*/
+public final class ChatBinaryCodec {
+    public static final String PROTOCOL = "chat.binary.v1";
+    public static final String JSON_PROTOCOL = "chat.json.v1"; // 명시적으로 JSON 을 요청하는 클라이언트용
+
+    private static final int HEADER_SIZE = 1 + 8 + 8;
+
+    private ChatBinaryCodec() {
+    }
+
+    // 세션이 바이너리 프로토콜로 연결되었는지 여부
+    public static boolean isBinary(WebSocketSession session) {
+        return PROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    // 메시지를 UTF-8 로 프레임 배열에 바로 기록 (String.getBytes 가 만드는 임시 배열과 복사를 생략)
+    public static byte[] encode(ChatMessageDto message, long memberId) {
+        String text = message.getMessage() != null ? message.getMessage() : "";
+        int length = utf8Length(text);
+        Long seq = message.getSeq();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + varIntSize(length) + length + (seq != null ? varIntSize(seq) : 0));
+        buffer.put((byte) message.getType().getCode());
+        buffer.putLong(Long.parseLong(message.getRoomId()));
+        buffer.putLong(memberId);
+        putVarInt(buffer, length);
+        putUtf8(buffer.array(), buffer.position(), text);
+        if (seq != null) {
+            buffer.position(buffer.position() + length);
+            putVarLong(buffer, seq);
+        }
+        return buffer.array();
+    }
+
+    // 형식이 잘못된 프레임이면 IllegalArgumentException
+    public static ChatMessageDto decode(ByteBuffer frame) {
+        ByteBuffer buffer = frame.duplicate();
+        try {
+            ChatMessageDto.MessageType type = ChatMessageDto.MessageType.fromCode(buffer.get() & 0xFF); // 알 수 없는 값이면 IllegalArgumentException
+            long roomId = buffer.getLong();
+            buffer.getLong(); // 회원 ID (서버는 세션의 회원 정보를 사용)
+            int length = getVarInt(buffer);
+            if (length > buffer.remaining()) {
+                throw new IllegalArgumentException("메시지 길이가 프레임보다 깁니다 : " + length);
+            }
+            String text = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            ChatMessageDto message = new ChatMessageDto();
+            message.setType(type);
+            message.setRoomId(String.valueOf(roomId));
+            message.setMessage(text);
+            buffer.position(buffer.position() + length);
+            if (buffer.hasRemaining()) {
+                message.setSeq(getVarLong(buffer));
+            }
+            return message;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("프레임이 너무 짧습니다.", e);
+        }
+    }
+
+    // 7 비트씩 나누어 기록하고, 뒤에 바이트가 더 있으면 최상위 비트를 1 로 설정 (127 이하는 1 바이트)
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("잘못된 순번");
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("잘못된 메시지 길이");
+    }
+
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (!Character.isSurrogate(c)) {
+                length += 3;
+            } else if (isSurrogatePair(text, i)) {
+                length += 4;
+                i++;
+            } else {
+                length += 1; // 짝이 맞지 않는 서로게이트는 '?'
+            }
+        }
+        return length;
+    }
+
+    // 짝이 맞지 않는 서로게이트는 String.getBytes 와 같이 '?' 로 기록
+    private static void putUtf8(byte[] bytes, int offset, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[offset++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[offset++] = (byte) (0xC0 | (c >> 6));
+                bytes[offset++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                bytes[offset++] = (byte) (0xE0 | (c >> 12));
+                bytes[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[offset++] = (byte) (0x80 | (c & 0x3F));
+            } else if (isSurrogatePair(text, i)) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[offset++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                bytes[offset++] = '?';
+            }
+        }
+    }
+
+    private static boolean isSurrogatePair(String text, int index) {
+        return Character.isHighSurrogate(text.charAt(index)) && index + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(index + 1));
+    }
+
+    private static int varIntSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,251 @@
+package com.sample.chat.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sample.chat.dto.ChatMessageDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+웹소켓으로 들어온 채팅 메시지(JSON)를 ChatMessageDto 로 읽는 클래스이며, 세션마다 하나씩 생성된다.
+ObjectMapper.readValue 는 리플렉션을 사용하는 범용 경로를 거치지만, 이 클래스는 JsonParser 의 토큰을 직접 읽어 type, roomId, sender, message 네 필드만 채운다.
+
+한 메시지가 여러 프레임으로 나뉘어 오는 경우에는 조각들을 이어 붙인 문자열을 새로 만들지 않고, 조각들을 차례로 읽는 Reader 로 한 번에 파싱한다.
+(Jackson 의 논블로킹 파서도 조각 단위로 읽을 수 있지만, 한글처럼 여러 바이트로 인코딩되는 문자를 한 글자씩 처리하기 때문에 한글 메시지에서 몇 배 느리다.)
+최대 크기를 넘는 메시지는 조각이 도착하는 즉시, JSON 객체로 시작하지 않는 메시지는 첫 조각에서 예외를 던진다.
+바이너리 프로토콜(chat.binary.v1)로 연결된 세션의 바이너리 프레임은 JSON 이 아닌 ChatBinaryCodec 형식으로 읽는다.
+*/
+public class ChatMessageReader {
+    // 메시지가 최대 크기를 넘은 경우
+    public static class MessageTooLargeException extends IOException {
+        public MessageTooLargeException(int size, int maxSize) {
+            super("메시지 크기 초과 : " + size + " > " + maxSize);
+        }
+    }
+
+    private final JsonFactory jsonFactory;
+    private final int maxMessageSize; // 메시지 한 건의 최대 크기 (텍스트는 문자 수, 바이너리는 바이트 수)
+    private final boolean binaryProtocol; // 바이너리 프레임을 ChatBinaryCodec 형식으로 읽을지 여부
+
+    // 여러 프레임으로 나뉘어 도착 중인 메시지의 조각들
+    private final List<String> textChunks = new ArrayList<>();
+    private final List<byte[]> binaryChunks = new ArrayList<>();
+    private int size;
+
+    public ChatMessageReader(JsonFactory jsonFactory, int maxMessageSize) {
+        this(jsonFactory, maxMessageSize, false);
+    }
+
+    public ChatMessageReader(JsonFactory jsonFactory, int maxMessageSize, boolean binaryProtocol) {
+        this.jsonFactory = jsonFactory;
+        this.maxMessageSize = maxMessageSize;
+        this.binaryProtocol = binaryProtocol;
+    }
+
+    // 텍스트 프레임을 읽는다. 메시지가 끝나지 않았으면(last 가 false) null 을 반환한다.
+    public ChatMessageDto read(String chunk, boolean last) throws IOException {
+        addSize(chunk.length());
+        if (textChunks.isEmpty()) {
+            if (last) {
+                // 한 프레임으로 온 메시지는 문자열을 그대로 읽는다.
+                size = 0;
+                try (JsonParser parser = jsonFactory.createParser(chunk)) {
+                    return read(parser);
+                }
+            }
+            checkStart(chunk);
+        }
+        textChunks.add(chunk); // 컨테이너가 만든 문자열을 그대로 보관 (복사하지 않음)
+        if (!last) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(new ChunkReader(textChunks))) {
+            return read(parser);
+        } finally {
+            reset();
+        }
+    }
+
+    // 바이너리 프레임(UTF-8 JSON 또는 바이너리 프로토콜)을 읽는다. 메시지가 끝나지 않았으면(last 가 false) null 을 반환한다.
+    public ChatMessageDto read(ByteBuffer chunk, boolean last) throws IOException {
+        addSize(chunk.remaining());
+        if (binaryChunks.isEmpty() && last) {
+            size = 0;
+            if (binaryProtocol) {
+                return ChatBinaryCodec.decode(chunk.hasArray() ? chunk : ByteBuffer.wrap(copy(chunk)));
+            }
+            JsonParser parser = chunk.hasArray()
+                    ? jsonFactory.createParser(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining())
+                    : jsonFactory.createParser(copy(chunk));
+            try (parser) {
+                return read(parser);
+            }
+        }
+        byte[] bytes = copy(chunk); // 컨테이너가 버퍼를 다시 사용하므로 조각은 복사해서 보관
+        if (binaryChunks.isEmpty() && !binaryProtocol) {
+            checkStart(bytes);
+        }
+        binaryChunks.add(bytes);
+        if (!last) {
+            return null;
+        }
+        if (binaryProtocol) {
+            // 바이너리 프로토콜은 길이가 앞에 있는 고정 형식이므로 조각을 하나로 합쳐서 읽는다.
+            ByteBuffer frame = ByteBuffer.allocate(size);
+            binaryChunks.forEach(frame::put);
+            reset();
+            frame.flip();
+            return ChatBinaryCodec.decode(frame);
+        }
+        List<InputStream> streams = new ArrayList<>(binaryChunks.size());
+        for (byte[] binaryChunk : binaryChunks) {
+            streams.add(new ByteArrayInputStream(binaryChunk));
+        }
+        try (JsonParser parser = jsonFactory.createParser(new SequenceInputStream(Collections.enumeration(streams)))) {
+            return read(parser);
+        } finally {
+            reset();
+        }
+    }
+
+    private void addSize(int length) throws MessageTooLargeException {
+        size += length;
+        if (size > maxMessageSize) {
+            int tooLarge = size;
+            reset();
+            throw new MessageTooLargeException(tooLarge, maxMessageSize);
+        }
+    }
+
+    // 메시지의 첫 조각이 JSON 객체로 시작하는지 확인 (나머지 조각을 기다리지 않고 잘못된 메시지를 거절)
+    private void checkStart(CharSequence chunk) throws JsonParseException {
+        for (int i = 0; i < chunk.length(); i++) {
+            if (checkStart(chunk.charAt(i))) {
+                return;
+            }
+        }
+    }
+
+    private void checkStart(byte[] chunk) throws JsonParseException {
+        for (byte b : chunk) {
+            if (checkStart((char) b)) {
+                return;
+            }
+        }
+    }
+
+    // 객체의 시작이면 true, 공백이면 false, 그 외의 문자이면 예외
+    private boolean checkStart(char c) throws JsonParseException {
+        if (c == '{') {
+            return true;
+        }
+        if (!Character.isWhitespace(c)) {
+            reset();
+            throw new JsonParseException(null, "메시지는 JSON 객체여야 합니다.");
+        }
+        return false;
+    }
+
+    // 메시지 객체 하나를 읽는다. 알 수 없는 필드와 중첩된 값은 무시한다.
+    private static ChatMessageDto read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "메시지는 JSON 객체여야 합니다.");
+        }
+        ChatMessageDto message = new ChatMessageDto();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                if (isKnownField(fieldName)) {
+                    throw new JsonParseException(parser, fieldName + " 의 값은 객체나 배열일 수 없습니다.");
+                }
+                parser.skipChildren();
+                continue;
+            }
+            String text = value == JsonToken.VALUE_NULL ? null : parser.getText();
+            switch (fieldName) {
+                case "type":
+                    try {
+                        message.setType(text != null ? ChatMessageDto.MessageType.valueOf(text) : null);
+                    } catch (IllegalArgumentException e) {
+                        throw new JsonParseException(parser, "알 수 없는 메시지 종류 : " + text);
+                    }
+                    break;
+                case "roomId":
+                    message.setRoomId(text);
+                    break;
+                case "sender":
+                    message.setSender(text);
+                    break;
+                case "message":
+                    message.setMessage(text);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "메시지가 끝나지 않았습니다.");
+        }
+        return message;
+    }
+
+    private static boolean isKnownField(String name) {
+        return "type".equals(name) || "roomId".equals(name) || "sender".equals(name) || "message".equals(name);
+    }
+
+    private static byte[] copy(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    // 다음 메시지를 읽을 수 있도록 상태를 초기화
+    private void reset() {
+        textChunks.clear();
+        binaryChunks.clear();
+        size = 0;
+    }
+
+    // 여러 문자열 조각을 하나의 문자열처럼 차례로 읽는 Reader
+    private static final class ChunkReader extends Reader {
+        private final List<String> chunks;
+        private int chunkIndex;
+        private int position;
+
+        private ChunkReader(List<String> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            while (chunkIndex < chunks.size()) {
+                String chunk = chunks.get(chunkIndex);
+                if (position < chunk.length()) {
+                    int count = Math.min(length, chunk.length() - position);
+                    chunk.getChars(position, position + count, buffer, offset);
+                    position += count;
+                    return count;
+                }
+                chunkIndex++;
+                position = 0;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.sample.chat.config;
+
+import com.sample.chat.service.SessionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 세션별 전송 큐 상태를 조회하는 actuator 엔드포인트 (/actuator/chatsessions)
+// 세션 ID 를 지표의 태그로 사용하면 지표의 수가 끝없이 늘어나기 때문에, 세션별 값은 이 엔드포인트로만 노출한다.
+@Component
+@Endpoint(id = "chatsessions")
+public class ChatSessionsEndpoint {
+    private static final int MAX_ROWS = 100;
+
+    private final SessionService sessionService;
+
+    @Autowired
+    ChatSessionsEndpoint(SessionService sessionService) {
+        this.sessionService = sessionService;
+    }
+
+    // 전송 대기 메시지가 많은 순서로 상위 세션들을 반환
+    @ReadOperation
+    public List<Map<String, Object>> sessions() {
+        List<BufferedWebSocketSession> sessions = new ArrayList<>();
+        for (WebSocketSession session : sessionService.getSessions()) {
+            if (session instanceof BufferedWebSocketSession) {
+                sessions.add((BufferedWebSocketSession) session);
+            }
+        }
+        sessions.sort(Comparator.comparingInt(BufferedWebSocketSession::getQueueDepth).reversed());
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (BufferedWebSocketSession session : sessions.subList(0, Math.min(MAX_ROWS, sessions.size()))) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("sessionId", session.getId());
+            row.put("memberId", sessionService.findMemberId(session));
+            row.put("queueDepth", session.getQueueDepth());
+            row.put("bufferSize", session.getBufferSize());
+            row.put("dropped", session.getDroppedCount());
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,43 @@
+package com.sample.chat.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executors;
+
+// 채팅 처리에 사용하는 스레드 풀들을 설정하는 클래스
+@Configuration
+@EnableScheduling // @Scheduled 메서드 실행 (유휴 채팅방의 캐시 정리 등)
+public class ExecutorConfig {
+
+    // 세션별 전송 큐를 비우는 스레드 풀
+    // 세션 하나당 동시에 하나의 전송 작업만 등록되므로, 작업 큐의 길이는 접속 중인 세션 수를 넘지 않는다.
+    @Bean
+    public ThreadPoolTaskExecutor outboundExecutor(@Value("${chat.websocket.outbound-threads:8}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("ws-outbound-");
+        executor.initialize();
+        return executor;
+    }
+
+    /*
+    chat.threads.virtual=true 이면 Tomcat 의 요청 처리 스레드 풀(기본 최대 200 개)을 요청마다 가상 스레드를 만드는 실행기로 교체한다.
+    컨트롤러의 요청과 웹소켓 메시지 수신(WebSocketHandler)이 모두 이 실행기에서 실행되므로,
+    JDBC 응답을 기다리는 요청이 늘어나도 스레드 수가 동시 처리량의 상한이 되지 않는다.
+    (이 경우 server.tomcat.threads.* 설정은 사용되지 않으며, 동시에 데이터 베이스를 사용하는 수는 여전히 커넥션 풀 크기로 제한된다)
+    단, mysql-connector-j 8.0.x 는 쿼리 중인 가상 스레드가 캐리어를 붙잡으므로(pinning) 쿼리를 기다리는 동안에는 이 효과가 없다. (RoomEventDispatcher)
+    */
+    @Bean
+    @ConditionalOnProperty(name = "chat.threads.virtual", havingValue = "true")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory()));
+    }
+}
@@ -0,0 +1,66 @@
+package com.sample.chat.config;
+
+import com.sample.chat.dto.ChatPrincipal;
+import com.sample.chat.service.MemberService;
+import com.sample.chat.utils.ChatToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/*
+웹소켓 연결(핸드셰이크) 시점에 회원을 확인하는 인터셉터이다.
+연결 주소의 token 파라미터(예: /ws/chat?token=...)를 검증하여 회원을 한 번만 조회하고, 불변 객체인 ChatPrincipal 로 세션 속성에 저장한다.
+토큰은 로그인할 때처럼 비밀번호를 확인한 뒤 발급되며(POST /member/chat-token), 서명되어 있으므로 클라이언트가 다른 회원으로 바꿀 수 없다.
+이후의 메시지 처리에서는 메시지 안의 sender 값을 믿지 않고, 세션에 저장된 회원 정보를 사용한다.
+토큰이 없거나 유효하지 않은 연결은 핸드셰이크에서 거부하므로, 연결된 세션은 항상 회원이 확인되어 있다.
+*/
+@Slf4j
+@Component
+public class MemberHandshakeInterceptor implements HandshakeInterceptor {
+    private final MemberService memberService;
+    private final ChatToken chatToken;
+
+    @Autowired
+    MemberHandshakeInterceptor(MemberService memberService, ChatToken chatToken) {
+        this.memberService = memberService;
+        this.chatToken = chatToken;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = request instanceof ServletServerHttpRequest
+                ? ((ServletServerHttpRequest) request).getServletRequest().getParameter("token") : null;
+        Long memberId = chatToken.verify(token, System.currentTimeMillis());
+        if (memberId == null) {
+            // 토큰이 없거나, 서명이 맞지 않거나, 만료된 연결은 거부
+            log.warn("인증되지 않은 웹소켓 연결 거부 : {}", request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        return memberService.findMemberById(memberId)
+                .map(member -> {
+                    attributes.put(ChatPrincipal.ATTRIBUTE, ChatPrincipal.of(member));
+                    return true;
+                })
+                .orElseGet(() -> {
+                    // 토큰 발급 후 탈퇴한 회원의 연결은 거부
+                    log.warn("존재하지 않는 회원의 웹소켓 연결 거부 : {}", memberId);
+                    response.setStatusCode(HttpStatus.FORBIDDEN);
+                    return false;
+                });
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
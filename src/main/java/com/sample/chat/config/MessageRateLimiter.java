@@ -0,0 +1,179 @@
+package com.sample.chat.config;
+
+import com.sample.chat.utils.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+클라이언트가 보내는 메시지의 속도를 세션별, 채팅방별 토큰 버킷(TokenBucket)으로 제한하는 클래스이다.
+메시지 하나는 채팅방 전체로 방송되기 때문에, 한 클라이언트가 메시지를 쏟아내면 다른 채팅방의 이벤트 처리까지 느려진다.
+WebSocketHandler 가 이벤트를 발행하기 전에 검사하여, 제한을 넘은 메시지는 이벤트 처리 스레드로 넘기지 않고 버린다.
+
+- 세션 : 채팅 메시지 (chat.rate-limit.session.*)
+- 세션의 입장 : ENTER, RESUME (chat.rate-limit.membership.*), 채팅 메시지와 따로 세므로 채팅을 많이 보낸 뒤에도 입장은 막히지 않는다.
+  CLOSE 는 세션이 차지한 상태를 정리하는 메시지이므로 제한하지 않는다. (버리면 퇴장하지 않은 세션이 채팅방에 남는다)
+- 세션의 활동 : TYPING, PRESENCE, ACK (chat.rate-limit.activity.*), ACK 는 마지막 순번만 의미가 있으므로 버려져도 다음 ACK 가 대신한다.
+- 채팅방 : 방송되는 TALK 메시지 (chat.rate-limit.room.*)
+세션이 처음 제한에 걸리면 알림(THROTTLED)을 한 번 보내고, 일정 시간 안에 제한에 걸린 횟수가 너무 많으면 연결을 종료한다.
+입장이 제한에 걸린 경우에는 클라이언트가 입장하지 못했음을 알 수 있도록 매번 알린다.
+검사는 토큰 버킷의 CAS 한 번이며, 세션의 상태는 연결 시점에, 채팅방의 버킷은 채팅방의 첫 메시지에서만 생성된다.
+*/
+@Slf4j
+@Component
+public class MessageRateLimiter {
+    private static final String ATTRIBUTE = "chatRateLimit"; // 세션별 제한 상태를 저장하는 속성의 키
+
+    // 검사 결과
+    public enum Result {
+        ACCEPTED, // 처리
+        THROTTLED, // 버리고 알림 전송
+        DROPPED, // 버림 (이미 알림을 보냄)
+        DISCONNECT // 버리고 연결 종료
+    }
+
+    // 세션별 제한 상태, 한 세션의 메시지는 컨테이너가 한 번에 하나씩 전달하므로 위반 횟수는 동기화하지 않는다.
+    private static final class SessionState {
+        private final TokenBucket bucket; // 채팅 메시지 (rate 가 0 이하이면 null)
+        private final TokenBucket membershipBucket; // 입장 (rate 가 0 이하이면 null)
+        private final TokenBucket activityBucket; // 입력 중 표시, 접속 상태, ACK (rate 가 0 이하이면 null)
+        private long windowStart; // 위반 횟수를 세기 시작한 시각
+        private int violations;
+
+        private SessionState(TokenBucket bucket, TokenBucket membershipBucket, TokenBucket activityBucket) {
+            this.bucket = bucket;
+            this.membershipBucket = membershipBucket;
+            this.activityBucket = activityBucket;
+        }
+    }
+
+    private final double sessionRate;
+    private final int sessionBurst;
+    private final double membershipRate;
+    private final int membershipBurst;
+    private final double activityRate;
+    private final int activityBurst;
+    private final double roomRate;
+    private final int roomBurst;
+    private final int maxViolations;
+    private final long violationWindowNanos;
+    private final Map<Long, TokenBucket> roomBuckets = new ConcurrentHashMap<>();
+
+    private final Counter sessionDroppedCounter;
+    private final Counter membershipDroppedCounter;
+    private final Counter activityDroppedCounter;
+    private final Counter roomDroppedCounter;
+    private final Counter disconnectedCounter;
+
+    @Autowired
+    public MessageRateLimiter(MeterRegistry meterRegistry,
+                              @Value("${chat.rate-limit.session.rate:5}") double sessionRate,
+                              @Value("${chat.rate-limit.session.burst:10}") int sessionBurst,
+                              @Value("${chat.rate-limit.membership.rate:2}") double membershipRate,
+                              @Value("${chat.rate-limit.membership.burst:20}") int membershipBurst,
+                              @Value("${chat.rate-limit.activity.rate:20}") double activityRate,
+                              @Value("${chat.rate-limit.activity.burst:40}") int activityBurst,
+                              @Value("${chat.rate-limit.room.rate:50}") double roomRate,
+                              @Value("${chat.rate-limit.room.burst:100}") int roomBurst,
+                              @Value("${chat.rate-limit.max-violations:20}") int maxViolations,
+                              @Value("${chat.rate-limit.violation-window-ms:10000}") long violationWindowMs) {
+        this.sessionRate = sessionRate;
+        this.sessionBurst = sessionBurst;
+        this.membershipRate = membershipRate;
+        this.membershipBurst = membershipBurst;
+        this.activityRate = activityRate;
+        this.activityBurst = activityBurst;
+        this.roomRate = roomRate;
+        this.roomBurst = roomBurst;
+        this.maxViolations = maxViolations;
+        this.violationWindowNanos = violationWindowMs * 1_000_000L;
+        this.sessionDroppedCounter = Counter.builder("chat.ratelimit.dropped").tag("scope", "session")
+                .description("세션별 제한을 넘어 버려진 메시지 수").register(meterRegistry);
+        this.membershipDroppedCounter = Counter.builder("chat.ratelimit.dropped").tag("scope", "membership")
+                .description("세션별 입장 제한을 넘어 버려진 ENTER / RESUME 수").register(meterRegistry);
+        this.activityDroppedCounter = Counter.builder("chat.ratelimit.dropped").tag("scope", "activity")
+                .description("세션별 활동 제한을 넘어 버려진 TYPING / PRESENCE / ACK 수").register(meterRegistry);
+        this.roomDroppedCounter = Counter.builder("chat.ratelimit.dropped").tag("scope", "room")
+                .description("채팅방별 제한을 넘어 버려진 메시지 수").register(meterRegistry);
+        this.disconnectedCounter = Counter.builder("chat.ratelimit.disconnected")
+                .description("제한을 반복해서 넘어 연결이 종료된 세션 수").register(meterRegistry);
+    }
+
+    // 연결 시점에 세션의 토큰 버킷을 생성 (rate 가 0 이하인 종류는 제한하지 않음)
+    public void register(WebSocketSession session) {
+        TokenBucket bucket = sessionRate > 0 ? new TokenBucket(sessionRate, sessionBurst) : null;
+        TokenBucket membershipBucket = membershipRate > 0 ? new TokenBucket(membershipRate, membershipBurst) : null;
+        TokenBucket activityBucket = activityRate > 0 ? new TokenBucket(activityRate, activityBurst) : null;
+        if (bucket != null || membershipBucket != null || activityBucket != null) {
+            session.getAttributes().put(ATTRIBUTE, new SessionState(bucket, membershipBucket, activityBucket));
+        }
+    }
+
+    // 세션의 채팅 메시지 하나를 검사
+    public Result checkSession(WebSocketSession session) {
+        SessionState state = (SessionState) session.getAttributes().get(ATTRIBUTE);
+        return state != null ? check(session, state, state.bucket, sessionDroppedCounter, false) : Result.ACCEPTED;
+    }
+
+    // 세션의 입장(ENTER, RESUME) 하나를 검사, 제한에 걸리면 매번 THROTTLED (연결 종료 제외)
+    public Result checkMembership(WebSocketSession session) {
+        SessionState state = (SessionState) session.getAttributes().get(ATTRIBUTE);
+        return state != null ? check(session, state, state.membershipBucket, membershipDroppedCounter, true) : Result.ACCEPTED;
+    }
+
+    // 세션의 입력 중 표시, 접속 상태, ACK 하나를 검사
+    public Result checkActivity(WebSocketSession session) {
+        SessionState state = (SessionState) session.getAttributes().get(ATTRIBUTE);
+        return state != null ? check(session, state, state.activityBucket, activityDroppedCounter, false) : Result.ACCEPTED;
+    }
+
+    private Result check(WebSocketSession session, SessionState state, TokenBucket bucket, Counter droppedCounter, boolean notifyAlways) {
+        long now = System.nanoTime();
+        if (bucket == null || bucket.tryAcquire(now)) {
+            return Result.ACCEPTED;
+        }
+        droppedCounter.increment();
+        if (state.violations == 0 || now - state.windowStart > violationWindowNanos) {
+            state.windowStart = now;
+            state.violations = 1;
+            return Result.THROTTLED;
+        }
+        if (++state.violations > maxViolations) {
+            disconnectedCounter.increment();
+            log.warn("메시지 속도 제한을 반복해서 넘어 연결 종료 : {}", session.getId());
+            return Result.DISCONNECT;
+        }
+        return notifyAlways ? Result.THROTTLED : Result.DROPPED;
+    }
+
+    // 채팅방으로 방송될 메시지 하나를 검사 (채팅방 제한은 보낸 세션의 잘못이 아닐 수 있으므로 위반 횟수에 포함하지 않는다)
+    public Result checkRoom(Long roomId) {
+        if (roomRate <= 0) {
+            return Result.ACCEPTED;
+        }
+        TokenBucket bucket = roomBuckets.get(roomId);
+        if (bucket == null) {
+            bucket = roomBuckets.computeIfAbsent(roomId, id -> new TokenBucket(roomRate, roomBurst));
+        }
+        if (bucket.tryAcquire(System.nanoTime())) {
+            return Result.ACCEPTED;
+        }
+        roomDroppedCounter.increment();
+        return Result.THROTTLED;
+    }
+
+    // 토큰이 가득 찬(최근에 메시지가 없었던) 채팅방의 버킷을 제거, 다음 메시지에서 가득 찬 버킷으로 다시 생성된다.
+    @Scheduled(fixedDelayString = "${chat.rate-limit.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        roomBuckets.entrySet().removeIf(entry -> entry.getValue().isFull(now));
+    }
+}
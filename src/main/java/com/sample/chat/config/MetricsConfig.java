@@ -0,0 +1,67 @@
+package com.sample.chat.config;
+
+import com.sample.chat.service.ChatRoomRegistry;
+import com.sample.chat.service.SessionService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/*
+개별 클래스에 속하지 않는 지표들을 설정하는 클래스이다. (지표는 actuator 의 /actuator/prometheus 로 수집)
+채팅방 ID, 세션 ID 처럼 값이 끝없이 늘어나는 값은 태그로 사용하지 않는다. (세션별 값은 /actuator/chatsessions)
+HTTP 요청의 태그는 실제 경로가 아닌 매핑된 경로 패턴(예 : /chat/{roomId}/messages)을 사용한다.
+*/
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+    private final MeterRegistry meterRegistry;
+
+    MetricsConfig(MeterRegistry meterRegistry, SessionService sessionService, ChatRoomRegistry chatRoomRegistry) {
+        this.meterRegistry = meterRegistry;
+        // 현재 연결된 웹소켓 세션 수와 접속자가 있는 채팅방 수
+        Gauge.builder("chat.sessions.active", sessionService, SessionService::getSessionCount)
+                .description("연결된 웹소켓 세션 수").register(meterRegistry);
+        Gauge.builder("chat.rooms.active", chatRoomRegistry, ChatRoomRegistry::getRoomCount)
+                .description("이 서버에 접속자가 있는 채팅방 수").register(meterRegistry);
+    }
+
+    // Hibernate 가 실행하는 SQL 문을 스레드별로 세도록 등록
+    // (static : 엔티티 매니저 팩토리가 이 설정 객체를 만들지 않고 사용하도록, Hikari 지표가 데이터 소스를 사용하므로 MeterRegistry 와 순환이 생긴다)
+    @Bean
+    public static HibernatePropertiesCustomizer queryCountInspectorCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountInspector());
+    }
+
+    // HTTP 요청 하나가 실행한 SQL 문의 수 (요청 경로 패턴별)
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                QueryCountInspector.start();
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                DistributionSummary.builder("jpa.statements")
+                        .description("요청 하나가 실행한 SQL 문의 수")
+                        .tag("channel", "http")
+                        .tag("operation", request.getMethod() + " " + (pattern != null ? pattern : "UNKNOWN"))
+                        .register(meterRegistry)
+                        .record(QueryCountInspector.stop());
+            }
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package com.sample.chat.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/*
+Hibernate 가 SQL 문을 준비(prepare)할 때마다 호출되어, 현재 스레드에서 실행된 SQL 문의 수를 세는 클래스이다.
+HTTP 요청(MetricsConfig)이나 채팅방 이벤트(RoomEventDispatcher)를 처리하기 전에 start, 처리한 뒤에 stop 을 호출하여
+요청 하나가 실행한 SQL 문의 수를 지표(jpa.statements)로 남긴다. (N+1 조회처럼 요청마다 문장 수가 늘어나는 문제를 찾기 위한 용도)
+JDBC 배치는 문장을 한 번 준비하고 여러 번 실행하므로 하나로 센다. JdbcTemplate 으로 실행한 SQL 은 세지 않는다.
+*/
+public class QueryCountInspector implements StatementInspector {
+    // 요청 하나는 한 스레드에서 처리되므로 스레드별로 센다. (세는 중이 아니면 null)
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql; // SQL 은 바꾸지 않는다.
+    }
+
+    // 현재 스레드에서 세기 시작
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    // 세기를 끝내고 start 이후 실행된 SQL 문의 수를 반환 (start 하지 않았으면 0)
+    public static int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count != null ? count[0] : 0;
+    }
+}
@@ -0,0 +1,215 @@
+package com.sample.chat.config;
+
+import com.sample.chat.service.RemoteBroadcastEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+WebSocketHandler 의 이벤트를 웹소켓(Tomcat) 스레드가 아닌 별도의 이벤트 처리 스레드에서 실행하는 클래스이다.
+채팅방 ID 를 해시하여 N 개의 샤드(단일 스레드 실행기) 중 하나에 배정하기 때문에,
+같은 채팅방의 이벤트는 항상 같은 스레드에서 도착 순서대로 처리되고, 서로 다른 채팅방의 이벤트는 여러 코어에서 병렬로 처리된다.
+(@Async 는 이벤트마다 임의의 스레드를 사용하기 때문에 같은 방의 메시지 순서가 뒤바뀔 수 있어 사용하지 않는다.)
+
+chat.threads.virtual=true 이면 샤드의 스레드를 가상 스레드로 만든다. (샤드마다 스레드는 여전히 하나이므로 같은 채팅방의 처리 순서는 그대로 유지된다)
+단, 지금 사용하는 mysql-connector-j 8.0.x 는 소켓 I/O 를 synchronized 블록 안에서 하므로, 쿼리를 기다리는 가상 스레드는
+캐리어(플랫폼) 스레드를 양보하지 못하고 붙잡는다. (pinning) 캐리어는 코어 수만큼이고 Tomcat 의 가상 스레드(ExecutorConfig)와 함께 쓰므로,
+샤드를 코어 수보다 많이 두면 데이터 베이스를 기다리는 샤드들이 캐리어를 모두 차지해 요청 처리까지 멈출 수 있다.
+그래서 샤드 수의 기본값은 두 방식 모두 코어 수이며, 드라이버를 synchronized 대신 ReentrantLock 을 쓰는 버전(9.x)으로 올리기 전에는 늘리지 않는다.
+*/
+@Slf4j
+@Component
+public class RoomEventDispatcher implements SmartLifecycle {
+    // 웹 서버(웹소켓 연결)가 먼저 종료되어 더 이상 이벤트가 들어오지 않은 뒤에 종료되도록, 웹 서버보다 낮은 phase 를 사용
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final ThreadPoolExecutor[] shards;
+    private final long enqueueTimeoutMs;
+    private final Counter rejectedCounter;
+    private final Counter droppedCounter;
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, Timer[]> stageTimers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, DistributionSummary> statementSummaries = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    @Autowired
+    RoomEventDispatcher(ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                        @Value("${chat.events.shards:0}") int shardCount,
+                        @Value("${chat.events.queue-capacity:10000}") int queueCapacity,
+                        @Value("${chat.events.enqueue-timeout-ms:1000}") long enqueueTimeoutMs,
+                        @Value("${chat.threads.virtual:false}") boolean virtualThreads) {
+        this.eventPublisher = eventPublisher;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+        this.meterRegistry = meterRegistry;
+        if (shardCount <= 0) {
+            // 설정하지 않으면 코어 수만큼 생성 (가상 스레드도 JDBC 를 기다리는 동안 캐리어를 점유하므로 같은 값을 사용)
+            shardCount = Runtime.getRuntime().availableProcessors();
+        }
+        this.shards = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = newShard(i, queueCapacity, virtualThreads);
+            shards[i].prestartAllCoreThreads(); // 대기열에 직접 넣은 이벤트도 실행되도록 스레드를 미리 시작
+            BlockingQueue<Runnable> queue = shards[i].getQueue();
+            Gauge.builder("chat.events.queue.depth", queue, BlockingQueue::size)
+                    .description("샤드별 처리 대기 중인 이벤트 수")
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        this.rejectedCounter = Counter.builder("chat.events.rejected")
+                .description("대기열이 가득 차서 즉시 등록되지 못한 이벤트 수")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("chat.events.dropped")
+                .description("대기열 초과나 종료 중이라 처리하지 못하고 버린 이벤트 수")
+                .register(meterRegistry);
+    }
+
+    private static ThreadPoolExecutor newShard(int index, int queueCapacity, boolean virtualThreads) {
+        AtomicInteger created = new AtomicInteger();
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    String name = "room-event-" + index + "-" + created.incrementAndGet();
+                    if (virtualThreads) {
+                        return Thread.ofVirtual().name(name).unstarted(runnable); // 가상 스레드는 항상 데몬 스레드
+                    }
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // 채팅방 ID 에 해당하는 샤드에서 이벤트를 발행 (리스너는 해당 샤드 스레드에서 실행된다)
+    // 웹소켓 세션의 이벤트(WebSocketHandler.SessionEvent)와 다른 노드에서 온 메시지(RemoteBroadcastEvent)를 같은 순서로 처리한다.
+    public void dispatch(Long roomId, ApplicationEvent event) {
+        ThreadPoolExecutor shard = shards[shardOf(roomId)];
+        Timer[] timers = timersFor(event.getClass());
+        DistributionSummary statements = statementsFor(event.getClass());
+        long enqueuedAt = System.nanoTime();
+        Runnable task = () -> {
+            long startedAt = System.nanoTime();
+            timers[0].record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+            QueryCountInspector.start();
+            try {
+                eventPublisher.publishEvent(event);
+            } catch (RuntimeException e) {
+                log.error("이벤트 처리 실패 : {} (room {})", event.getClass().getSimpleName(), roomId, e);
+            } finally {
+                timers[1].record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                statements.record(QueryCountInspector.stop());
+            }
+        };
+        try {
+            shard.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            if (shard.isShutdown()) {
+                droppedCounter.increment();
+                log.warn("종료 중이라 이벤트를 버림 : {} (room {})", event.getClass().getSimpleName(), roomId);
+                return;
+            }
+            if (event instanceof WebSocketHandler.MessageReceivedEvent || event instanceof RemoteBroadcastEvent) {
+                // 일반 채팅 메시지는 버리고, 입장/퇴장처럼 상태를 바꾸는 이벤트는 enqueue-timeout-ms 까지만 자리가 나기를 기다린다.
+                droppedCounter.increment();
+                log.warn("이벤트 대기열 초과로 메시지를 버림 (room {})", roomId);
+                return;
+            }
+            enqueue(shard, task, event, roomId);
+        }
+    }
+
+    // 대기열에 자리가 날 때까지 제한된 시간만 기다린다. (웹소켓 스레드를 무한정 막지 않음)
+    // 넣은 직후에 종료가 시작되었으면 실행되지 않을 수 있으므로 다시 꺼내서 버린다.
+    private void enqueue(ThreadPoolExecutor shard, Runnable task, ApplicationEvent event, Long roomId) {
+        boolean queued = false;
+        try {
+            queued = shard.getQueue().offer(task, enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (queued && shard.isShutdown() && shard.remove(task)) {
+            queued = false;
+        }
+        if (!queued) {
+            droppedCounter.increment();
+            log.error("이벤트 대기열 초과로 {}ms 안에 등록하지 못하여 버림 : {} (room {})", enqueueTimeoutMs,
+                    event.getClass().getSimpleName(), roomId);
+        }
+    }
+
+    int shardOf(Long roomId) {
+        return Math.floorMod(Long.hashCode(roomId), shards.length);
+    }
+
+    // 이벤트 종류별 [대기 시간, 처리 시간] 타이머 (종류가 몇 개 되지 않으므로 태그로 사용해도 지표 수가 제한된다)
+    private Timer[] timersFor(Class<?> eventType) {
+        return stageTimers.computeIfAbsent(eventType, type -> new Timer[]{
+                Timer.builder("chat.events.stage").tag("stage", "queue").tag("event", type.getSimpleName())
+                        .description("이벤트가 대기열에서 기다린 시간").register(meterRegistry),
+                Timer.builder("chat.events.stage").tag("stage", "handle").tag("event", type.getSimpleName())
+                        .description("이벤트 리스너의 처리 시간").register(meterRegistry)
+        });
+    }
+
+    // 이벤트 종류별 리스너가 실행한 SQL 문의 수 (HTTP 요청과 같은 지표 이름, MetricsConfig 참고)
+    private DistributionSummary statementsFor(Class<?> eventType) {
+        return statementSummaries.computeIfAbsent(eventType, type -> DistributionSummary.builder("jpa.statements")
+                .description("요청 하나가 실행한 SQL 문의 수")
+                .tag("channel", "event")
+                .tag("operation", type.getSimpleName())
+                .register(meterRegistry));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    // 애플리케이션 종료 시 대기 중인 이벤트를 모두 처리한 뒤 스레드를 정리
+    @Override
+    public void stop() {
+        running = false;
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor shard : shards) {
+                if (!shard.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("이벤트 샤드 종료 대기 시간 초과, 남은 이벤트 : {}", shard.getQueue().size());
+                    shard.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -18,18 +18,23 @@ Web Socket 은 양방향 통신으로, 클라이언트가 WebSocket 프로토콜
 
 public class WebSocketConfig implements WebSocketConfigurer {
     private final WebSocketHandler webSocketHandler;
+    private final MemberHandshakeInterceptor memberHandshakeInterceptor;
 
     @Autowired
-    WebSocketConfig(WebSocketHandler webSocketHandler){
+    WebSocketConfig(WebSocketHandler webSocketHandler, MemberHandshakeInterceptor memberHandshakeInterceptor){
         this.webSocketHandler = webSocketHandler;
+        this.memberHandshakeInterceptor = memberHandshakeInterceptor;
     }
 
     @Override
     // 웹 소켓 통신을 구현하기 위해서는 특정 엔드포인트에 대한 핸들러가 필요하다.
     // 이 핸들러는 클라이언트로부터의 연결 요청을 받아들이고 메시지를 받고 보내는 등의 역할을 수행한다.
     // 아래 코드는 웹소켓 핸들러를 특정 엔드 포인트에 연결 후, 모든 도메인에서의 접속을 허용한다.
+    // 연결 시점에 회원을 확인하는 인터셉터도 함께 등록한다.
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry){
-        registry.addHandler(webSocketHandler, "/ws/chat").setAllowedOrigins("*");
+        registry.addHandler(webSocketHandler, "/ws/chat")
+                .addInterceptors(memberHandshakeInterceptor)
+                .setAllowedOrigins("*");
     }
 }
 
@@ -1,74 +1,346 @@
 package com.sample.chat.config;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sample.chat.dto.ChatMessageDto;
+import com.sample.chat.dto.ChatPrincipal;
+import com.sample.chat.service.ChatRoomRegistry;
+import com.sample.chat.service.DeliveryAckTracker;
+import com.sample.chat.service.RoomActivityTracker;
+import com.sample.chat.service.SessionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEvent;
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
-public class WebSocketHandler extends TextWebSocketHandler {
+public class WebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
+    private static final String READER_ATTRIBUTE = "chatMessageReader"; // 세션별 ChatMessageReader 를 저장하는 속성의 키
+    private static final String THROTTLED_COALESCE_KEY = "throttled";
+
     // JSON 문자열을 객체로, 객체를 JSON 문자열로 변환하기 위해 필요한 객체
     private final ObjectMapper objectMapper;
 
-    // 이벤트 발행을 위한 객체
-    private final ApplicationEventPublisher eventPublisher;
+    // 이벤트를 채팅방별 순서를 보장하는 이벤트 처리 스레드에서 발행하기 위한 객체
+    private final RoomEventDispatcher roomEventDispatcher;
+
+    // 웹소켓 세션과 회원 ID, 채팅방 ID 들을 색인하는 서비스
+    private final SessionService sessionService;
+
+    // 채팅방별 접속 세션을 메모리에 유지하는 레지스트리 (메시지 전송 시 DB 조회 없이 수신자를 결정)
+    private final ChatRoomRegistry chatRoomRegistry;
+
+    // 세션을 전송 큐가 있는 BufferedWebSocketSession 으로 감싸는 객체
+    private final BufferedSessionFactory bufferedSessionFactory;
+
+    // 수신 메시지 한 건의 최대 크기, 넘으면 끝까지 읽지 않고 연결을 종료
+    private final int maxMessageSize;
+
+    // 세션별, 채팅방별 메시지 속도 제한
+    private final MessageRateLimiter messageRateLimiter;
+
+    // 입력 중 표시와 접속 상태 (저장하지 않는 일시적인 이벤트)
+    private final RoomActivityTracker roomActivityTracker;
 
-    // 웹소켓 세션과 채팅방 ID를 매핑하기 위한 Map (동시성 문제를 예방하기 위해 ConcurrentHashMap 사용)
-    private final Map<WebSocketSession, String> sessionRoomIdMap = new ConcurrentHashMap<>();
+    // 클라이언트가 받은 마지막 메시지의 순번 (재연결 시 놓친 메시지를 다시 보내는 기준)
+    private final DeliveryAckTracker deliveryAckTracker;
+
+    // 수신 프레임 수와 파싱 시간 (프레임 형식별 : text, binary), 형식 오류나 크기 초과로 종료한 연결 수
+    private final Counter textFrames;
+    private final Counter binaryFrames;
+    private final Timer textParseTimer;
+    private final Timer binaryParseTimer;
+    private final Counter tooLargeRejections;
+    private final Counter badDataRejections;
 
     @Autowired
-    WebSocketHandler(ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher){
+    WebSocketHandler(ObjectMapper objectMapper, RoomEventDispatcher roomEventDispatcher, SessionService sessionService,
+                     ChatRoomRegistry chatRoomRegistry, BufferedSessionFactory bufferedSessionFactory,
+                     @Value("${chat.websocket.max-message-size:16384}") int maxMessageSize, MessageRateLimiter messageRateLimiter,
+                     RoomActivityTracker roomActivityTracker, DeliveryAckTracker deliveryAckTracker, MeterRegistry meterRegistry){
         this.objectMapper = objectMapper;
-        this.eventPublisher = eventPublisher;
+        this.roomEventDispatcher = roomEventDispatcher;
+        this.sessionService = sessionService;
+        this.chatRoomRegistry = chatRoomRegistry;
+        this.bufferedSessionFactory = bufferedSessionFactory;
+        this.maxMessageSize = maxMessageSize;
+        this.messageRateLimiter = messageRateLimiter;
+        this.roomActivityTracker = roomActivityTracker;
+        this.deliveryAckTracker = deliveryAckTracker;
+        this.textFrames = inboundFrames(meterRegistry, "text");
+        this.binaryFrames = inboundFrames(meterRegistry, "binary");
+        this.textParseTimer = parseTimer(meterRegistry, "text");
+        this.binaryParseTimer = parseTimer(meterRegistry, "binary");
+        this.tooLargeRejections = rejections(meterRegistry, "too_large");
+        this.badDataRejections = rejections(meterRegistry, "bad_data");
+    }
+
+    private static Counter inboundFrames(MeterRegistry meterRegistry, String format) {
+        return Counter.builder("chat.ws.inbound.frames").description("수신한 웹소켓 프레임 수")
+                .tag("format", format).register(meterRegistry);
+    }
+
+    private static Timer parseTimer(MeterRegistry meterRegistry, String format) {
+        return Timer.builder("chat.ws.inbound.parse").description("수신 프레임 하나를 읽는(파싱) 시간")
+                .tag("format", format).register(meterRegistry);
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("chat.ws.inbound.rejected").description("잘못된 메시지를 받아 종료한 연결 수")
+                .tag("reason", reason).register(meterRegistry);
+    }
+
+    // 핸드셰이크에서 클라이언트가 요청할 수 있는 하위 프로토콜 (요청하지 않은 클라이언트는 JSON 을 사용)
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(ChatBinaryCodec.PROTOCOL, ChatBinaryCodec.JSON_PROTOCOL);
+    }
+
+    // 웹소켓 연결이 수립되면 호출되는 메서드
+    // 이후로는 원본 세션 대신 전송 큐를 가진 데코레이터를 색인, 레지스트리, 이벤트에 사용한다.
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        WebSocketSession decorated = bufferedSessionFactory.decorate(session);
+        decorated.getAttributes().put(READER_ATTRIBUTE,
+                new ChatMessageReader(objectMapper.getFactory(), maxMessageSize, ChatBinaryCodec.isBinary(decorated)));
+        messageRateLimiter.register(decorated);
+        sessionService.putSession(decorated);
+        // 핸드셰이크에서 회원이 확인된 경우, 세션과 회원을 바로 연결
+        ChatPrincipal principal = ChatPrincipal.from(decorated);
+        if (principal != null) {
+            sessionService.bindMember(decorated, principal.getId());
+        }
+    }
+
+    // 스프링이 넘겨주는 원본 세션에 대응하는 데코레이터를 조회
+    private WebSocketSession decorated(WebSocketSession session) {
+        WebSocketSession decorated = sessionService.findSessionById(session.getId());
+        return decorated != null ? decorated : session;
+    }
+
+    // 큰 메시지는 여러 프레임으로 나누어 받는다. 각 조각은 ChatMessageReader 가 바로 파싱하므로 메시지 전체를 따로 모아두지 않는다.
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
     }
 
     //
     // 클라이언트에서 사용자가 채팅방에 입장해서, 서버로 메시지를 전송할 때 발생하는 이벤트를 처리하는 메서드
     @Override
-    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        // 메시지를 추출하고, JSON 형태의 문자열을 ChatMessageDto 객체로 변환
-        String payload = message.getPayload(); // 페이로드 : 순수한 데이터를 의미
-        ChatMessageDto chatMessage = objectMapper.readValue(payload, ChatMessageDto.class);
+    protected void handleTextMessage(WebSocketSession rawSession, TextMessage message) throws Exception {
+        WebSocketSession session = decorated(rawSession);
+        // 메시지(JSON)를 ChatMessageDto 객체로 변환, 메시지의 마지막 조각이 아니면 다음 조각을 기다린다.
+        ChatMessageDto chatMessage = read(session, message.getPayload(), message.isLast());
+        if (chatMessage != null) {
+            handleChatMessage(session, chatMessage);
+        }
+    }
 
-        // 세션에 발신자의 식별자(email)을 memberId로 저장
-        session.getAttributes().put("memberEmail", chatMessage.getSender());
+    // 바이너리 프레임으로 온 메시지도 텍스트와 같이 처리 (바이너리 프로토콜 세션은 ChatBinaryCodec 형식, 그 외에는 UTF-8 JSON)
+    @Override
+    protected void handleBinaryMessage(WebSocketSession rawSession, BinaryMessage message) throws Exception {
+        WebSocketSession session = decorated(rawSession);
+        ChatMessageDto chatMessage = read(session, message.getPayload(), message.isLast());
+        if (chatMessage != null) {
+            handleChatMessage(session, chatMessage);
+        }
+    }
+
+    // 크기를 넘거나 형식이 잘못된 메시지를 보낸 세션은 연결을 종료하고 null 을 반환
+    private ChatMessageDto read(WebSocketSession session, Object payload, boolean last) throws IOException {
+        if (!session.isOpen()) {
+            return null; // 이미 종료한 연결로 뒤늦게 도착한 나머지 조각은 무시
+        }
+        ChatMessageReader reader = (ChatMessageReader) session.getAttributes().get(READER_ATTRIBUTE);
+        boolean text = payload instanceof String;
+        (text ? textFrames : binaryFrames).increment();
+        long startedAt = System.nanoTime();
+        try {
+            ChatMessageDto chatMessage;
+            try {
+                chatMessage = text ? reader.read((String) payload, last) : reader.read((ByteBuffer) payload, last);
+            } finally {
+                (text ? textParseTimer : binaryParseTimer).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+            if (chatMessage != null) {
+                if (chatMessage.getType() == null || chatMessage.getRoomId() == null) {
+                    throw new IllegalArgumentException("type 과 roomId 는 필수입니다.");
+                }
+                if (chatMessage.getType() == ChatMessageDto.MessageType.THROTTLED
+                        || chatMessage.getType() == ChatMessageDto.MessageType.ACTIVITY) {
+                    throw new IllegalArgumentException("서버에서만 보내는 메시지 종류입니다 : " + chatMessage.getType());
+                }
+                Long.parseLong(chatMessage.getRoomId()); // 숫자가 아니면 NumberFormatException (IllegalArgumentException)
+                // ACK 는 순번이 필수, RESUME 은 비어 있으면 ACK 로 기록된 순번을 사용
+                String seq = chatMessage.getMessage();
+                if (chatMessage.getType() == ChatMessageDto.MessageType.ACK
+                        || (chatMessage.getType() == ChatMessageDto.MessageType.RESUME && seq != null && !seq.isBlank())) {
+                    Long.parseLong(seq != null ? seq.trim() : null);
+                }
+            }
+            return chatMessage;
+        } catch (ChatMessageReader.MessageTooLargeException e) {
+            log.warn("메시지 크기 초과로 연결 종료 : {} ({})", session.getId(), e.getMessage());
+            tooLargeRejections.increment();
+            session.close(CloseStatus.TOO_BIG_TO_PROCESS);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.warn("잘못된 형식의 메시지로 연결 종료 : {} ({})", session.getId(), e.getMessage());
+            badDataRejections.increment();
+            session.close(CloseStatus.BAD_DATA);
+        }
+        return null;
+    }
 
-        // 세션과 채팅방 ID를 매핑
-        sessionRoomIdMap.put(session, chatMessage.getRoomId());
+    // 메시지 종류에 따라 세션 색인과 레지스트리를 갱신하고 이벤트를 발행
+    private void handleChatMessage(WebSocketSession session, ChatMessageDto chatMessage) throws IOException {
+        ChatMessageDto.MessageType type = chatMessage.getType();
+        // 입력 중 표시, 접속 상태, ACK 는 채팅 메시지와 따로 센다. (MessageRateLimiter)
+        if (type == ChatMessageDto.MessageType.TYPING || type == ChatMessageDto.MessageType.PRESENCE
+                || type == ChatMessageDto.MessageType.ACK) {
+            if (checkRate(session, chatMessage, messageRateLimiter.checkActivity(session))) {
+                if (type == ChatMessageDto.MessageType.ACK) {
+                    handleAck(session, chatMessage);
+                } else {
+                    handleActivity(session, chatMessage);
+                }
+            }
+            return;
+        }
+        // 이벤트 발행 전에 세션의 메시지 속도를 먼저 검사
+        // 입장은 채팅 메시지와 따로 세고, 퇴장(CLOSE)은 버리면 세션이 채팅방에 남으므로 검사하지 않는다. (MessageRateLimiter)
+        if (type != ChatMessageDto.MessageType.CLOSE && !checkRate(session, chatMessage,
+                type == ChatMessageDto.MessageType.ENTER || type == ChatMessageDto.MessageType.RESUME
+                        ? messageRateLimiter.checkMembership(session) : messageRateLimiter.checkSession(session))) {
+            return;
+        }
+        // 발신자는 메시지의 sender 가 아닌 핸드셰이크에서 확인하여 세션에 저장된 회원 정보로 결정 (MemberHandshakeInterceptor)
+        ChatPrincipal principal = ChatPrincipal.from(session);
+        if (principal == null) {
+            log.warn("회원이 확인되지 않은 세션의 연결 종료 : {}", session.getId());
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        chatMessage.setSender(principal.getEmail());
 
-        // 메시지 타입에 따라 해당하는 이벤트를 발행
+        // 메시지 타입에 따라 세션 색인과 레지스트리를 갱신하고, 해당하는 이벤트를 채팅방의 이벤트 처리 스레드로 발행
+        Long roomId = Long.valueOf(chatMessage.getRoomId());
         if (chatMessage.getType() == ChatMessageDto.MessageType.ENTER) {
-            eventPublisher.publishEvent(new SessionEnteredEvent(session, chatMessage));
+            sessionService.putSession(session, chatMessage.getRoomId()); // 세션과 채팅방 ID를 매핑
+            chatRoomRegistry.join(roomId, session);
+            roomActivityTracker.presence(roomId, session.getId(), principal.getEmail(), RoomActivityTracker.ONLINE);
+            roomEventDispatcher.dispatch(roomId, new SessionEnteredEvent(session, chatMessage));
+        } else if (chatMessage.getType() == ChatMessageDto.MessageType.RESUME) {
+            // 레지스트리 등록은 놓친 메시지를 보낸 뒤 채팅방의 이벤트 처리 스레드에서 한다. (ChatService.handleSessionResumedEvent)
+            sessionService.putSession(session, chatMessage.getRoomId());
+            roomActivityTracker.presence(roomId, session.getId(), principal.getEmail(), RoomActivityTracker.ONLINE);
+            roomEventDispatcher.dispatch(roomId, new SessionResumedEvent(session, chatMessage));
         } else if (chatMessage.getType() == ChatMessageDto.MessageType.CLOSE) {
-            eventPublisher.publishEvent(new SessionExitedEvent(session, chatMessage));
+            sessionService.exitRoom(session, chatMessage.getRoomId());
+            roomActivityTracker.leave(roomId, session.getId());
+            // 입장해 있던 채팅방에서만 퇴장 메시지를 남긴다. (입장하지 않은 채팅방의 CLOSE 는 무시)
+            if (chatRoomRegistry.leave(roomId, session)) {
+                roomEventDispatcher.dispatch(roomId, new SessionExitedEvent(session, chatMessage));
+            }
+        } else if (!sessionService.findRoomIds(session).contains(roomId)) {
+            // 입장(ENTER, RESUME)하지 않은 채팅방의 메시지는 버린다. (채팅방별 상태를 만들기 전에 확인)
+            // 재연결(RESUME)한 세션은 레지스트리 등록이 이벤트 처리 스레드에서 끝나므로 여기서는 세션 색인으로 확인하고,
+            // 레지스트리와 채팅방의 존재는 이벤트 처리 스레드에서 다시 확인한다. (ChatService.handleMessageReceivedEvent)
+            log.warn("입장하지 않은 채팅방의 메시지를 버림 : {} ({})", roomId, session.getId());
+        } else if (checkRate(session, chatMessage, messageRateLimiter.checkRoom(roomId))) {
+            roomEventDispatcher.dispatch(roomId, new MessageReceivedEvent(session, chatMessage));
+        }
+    }
+
+    // 입력 중 표시와 접속 상태는 이벤트 처리 스레드로 넘기지 않고 바로 상태만 바꾼다. (방송은 RoomActivityTracker 가 모아서)
+    // 메모리의 상태만 바꾸는 가벼운 처리이므로 채팅 메시지와는 따로, 세션별 activity 제한으로 센다.
+    // 회원이 확인되고 해당 채팅방에 입장해 있는 세션의 이벤트만 처리한다.
+    private void handleActivity(WebSocketSession session, ChatMessageDto chatMessage) {
+        ChatPrincipal principal = ChatPrincipal.from(session);
+        Long roomId = Long.valueOf(chatMessage.getRoomId());
+        if (principal == null || !chatRoomRegistry.contains(roomId, session)) {
+            return;
+        }
+        String value = chatMessage.getMessage();
+        if (chatMessage.getType() == ChatMessageDto.MessageType.TYPING) {
+            roomActivityTracker.typing(roomId, session.getId(), principal.getEmail(), !"STOP".equals(value));
+        } else if (RoomActivityTracker.ONLINE.equals(value) || RoomActivityTracker.AWAY.equals(value)) {
+            roomActivityTracker.presence(roomId, session.getId(), principal.getEmail(), value);
+        }
+    }
+
+    // 받은 메시지의 순번을 회원별로 기록, 메모리의 값만 바꾸므로 입력 중 표시와 같이 이벤트 처리 스레드로 넘기지 않는다.
+    private void handleAck(WebSocketSession session, ChatMessageDto chatMessage) {
+        ChatPrincipal principal = ChatPrincipal.from(session);
+        if (principal != null) {
+            deliveryAckTracker.ack(principal.getId(), Long.valueOf(chatMessage.getRoomId()), Long.parseLong(chatMessage.getMessage().trim()));
+        }
+    }
+
+    // 속도 제한 검사 결과에 따라 알림을 보내거나 연결을 종료하고, 메시지를 처리해도 되면 true
+    private boolean checkRate(WebSocketSession session, ChatMessageDto chatMessage, MessageRateLimiter.Result result) throws IOException {
+        switch (result) {
+            case ACCEPTED:
+                return true;
+            case THROTTLED:
+                sendThrottled(session, chatMessage.getRoomId());
+                return false;
+            case DISCONNECT:
+                session.close(CloseStatus.POLICY_VIOLATION);
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    // 메시지가 버려졌음을 보낸 세션에만 알림, 아직 보내지 못한 이전 알림은 새 알림으로 교체
+    private void sendThrottled(WebSocketSession session, String roomId) throws IOException {
+        ChatMessageDto notice = new ChatMessageDto(ChatMessageDto.MessageType.THROTTLED, roomId, null, "메시지를 너무 빠르게 보내고 있습니다.");
+        WebSocketMessage<?> frame = ChatBinaryCodec.isBinary(session)
+                ? new BinaryMessage(ChatBinaryCodec.encode(notice, 0L))
+                : new TextMessage(objectMapper.writeValueAsBytes(notice));
+        if (session instanceof BufferedWebSocketSession) {
+            ((BufferedWebSocketSession) session).sendMessage(frame, THROTTLED_COALESCE_KEY);
         } else {
-            eventPublisher.publishEvent(new MessageReceivedEvent(session, chatMessage));
+            session.sendMessage(frame);
         }
     }
 
     // 웹소켓 연결이 종료되면 호출되는 메서드
     @Override
-    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        log.warn("afterConnectionClosed : {}", session);
-        // 연결이 종료된 세션을 Map에서 제거
-        String roomId = sessionRoomIdMap.remove(session);
-        if (roomId != null) {
+    public void afterConnectionClosed(WebSocketSession rawSession, CloseStatus status) throws Exception {
+        log.warn("afterConnectionClosed : {}", rawSession);
+        WebSocketSession session = decorated(rawSession);
+        if (session instanceof BufferedWebSocketSession) {
+            ((BufferedWebSocketSession) session).release(); // 전송 대기 중인 메시지를 정리
+        }
+        // 연결이 종료된 세션을 색인에서 제거하고, 세션이 입장해 있던 모든 채팅방에 대해 처리
+        Set<Long> roomIds = sessionService.removeSession(session);
+        for (Long roomId : roomIds) {
+            chatRoomRegistry.leave(roomId, session);
+            roomActivityTracker.leave(roomId, session.getId());
             // 연결 종료 메시지 생성 후 이벤트 발행
             ChatMessageDto chatMessage = new ChatMessageDto();
             chatMessage.setType(ChatMessageDto.MessageType.CLOSE);
-            chatMessage.setRoomId(roomId);
-            eventPublisher.publishEvent(new SessionDisconnectedEvent(session, chatMessage));
+            chatMessage.setRoomId(String.valueOf(roomId));
+            roomEventDispatcher.dispatch(roomId, new SessionDisconnectedEvent(session, chatMessage));
         }
     }
 
@@ -102,6 +374,12 @@ public class WebSocketHandler extends TextWebSocketHandler {
             super(session, chatMessage);
         }
     }
+    // 재연결 후 채팅방 재입장 이벤트 클래스
+    public class SessionResumedEvent extends SessionEvent {
+        public SessionResumedEvent(WebSocketSession session, ChatMessageDto chatMessage) {
+            super(session, chatMessage);
+        }
+    }
     // 메시지 수신 이벤트 클래스
     public class MessageReceivedEvent extends SessionEvent {
         public MessageReceivedEvent(WebSocketSession session, ChatMessageDto chatMessage) {
@@ -1,9 +1,11 @@
 package com.sample.chat.controller;
 
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.dto.ChatMessageSearchResDto;
 import com.sample.chat.dto.ChatRoomReqDto;
-import com.sample.chat.entity.ChatMessage;
 import com.sample.chat.entity.ChatRoom;
 import com.sample.chat.service.ChatService;
+import com.sample.chat.service.MessageSearchService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -20,10 +22,12 @@ import static com.sample.chat.utils.Common.CORS_ORIGIN;
 @RequestMapping("/chat")
 public class ChatController {
     private final ChatService chatService;
+    private final MessageSearchService messageSearchService;
 
     @Autowired
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, MessageSearchService messageSearchService) {
         this.chatService = chatService;
+        this.messageSearchService = messageSearchService;
     }
 
     // 채팅방 생성
@@ -71,11 +75,32 @@ public class ChatController {
     }
     
     // 이전 채팅 로그 불러오기
+    // 예) /chat/1/messages?limit=50 으로 최근 50개를 받은 뒤, 그중 가장 오래된 메시지의 id 를 before 로 넘겨 다음 페이지를 조회한다.
+    // order 는 한 페이지 안의 정렬 순서이다. 기본값 asc 는 이전과 같이 오래된 순(가장 오래된 메시지가 맨 앞), desc 는 최신순(가장 오래된 메시지가 맨 뒤)
     @GetMapping("/{roomId}/messages")
-    public ResponseEntity<List<ChatMessage>> getPreviousMessages(@PathVariable Long roomId) {
-        List<ChatMessage> messages = chatService.getPreviousMessages(roomId);
+    public ResponseEntity<List<ChatMessageHistoryDto>> getPreviousMessages(@PathVariable Long roomId,
+                                                                           @RequestParam(required = false) Long before,
+                                                                           @RequestParam(defaultValue = "50") int limit,
+                                                                           @RequestParam(defaultValue = "asc") String order) {
+        if (!order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<ChatMessageHistoryDto> messages = chatService.getPreviousMessages(roomId, before, limit, order.equalsIgnoreCase("desc"));
         return ResponseEntity.ok(messages);
     }
+
+    // 채팅방의 메시지 검색 (관련도 순)
+    // 예) /chat/1/search?q=회의록&page=0&size=20, 결과의 highlights 는 text 에서 검색어와 일치하는 구간들이다.
+    @GetMapping("/{roomId}/search")
+    public ResponseEntity<ChatMessageSearchResDto> searchMessages(@PathVariable Long roomId,
+                                                                  @RequestParam String q,
+                                                                  @RequestParam(defaultValue = "0") int page,
+                                                                  @RequestParam(defaultValue = "20") int size) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(messageSearchService.search(roomId, q, page, size));
+    }
     // Q. List <> 안의 형식을 엔티티로 했을 때와 Dto로 했을 때의 차이?
     // 엔티티는 데이터 베이스와 직접적으로 매핑되는 객체이기 때문에,
     // 데이터 베이스의 구조가 변경되면 엔티티도 함께 변경되어야 하지만,
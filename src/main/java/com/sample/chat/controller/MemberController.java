@@ -5,6 +5,7 @@ import com.sample.chat.service.MemberService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -135,4 +136,13 @@ public class MemberController {
         boolean isTrue = memberService.login(memberDto.getEmail(), memberDto.getPassword());
         return ResponseEntity.ok(isTrue);
     }
+
+    // 웹소켓 연결 토큰 발급, 로그인과 같이 이메일과 비밀번호를 확인한다.
+    // 채팅 서버에는 받은 토큰으로 연결한다. (예: /ws/chat?token=...) 비밀번호가 틀리면 401
+    @PostMapping("/chat-token")
+    public ResponseEntity<String> chatToken(@RequestBody MemberDto memberDto) {
+        return memberService.issueChatToken(memberDto.getEmail(), memberDto.getPassword())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+    }
 }
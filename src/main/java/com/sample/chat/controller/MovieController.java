@@ -1,7 +1,7 @@
 package com.sample.chat.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.sample.chat.dto.MovieDto;
-import com.sample.chat.entity.Movie;
 import com.sample.chat.service.MovieService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,8 +9,9 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.Map;
 
 import static com.sample.chat.utils.Common.CORS_ORIGIN;
 
@@ -27,22 +28,16 @@ public class MovieController {
     }
 
     // 응답은 스프링 부트가 요청을 한 다른 웹 서비스(파이썬, 리액트 등)에게 자동으로 보내준다.
+    // 요청 본문(영화 목록 JSON 배열)을 List 로 변환하지 않고 스트림 그대로 넘겨, 서비스가 한 건씩 읽으며 배치로 저장(upsert)한다.
     @PostMapping("/insert")
-    public ResponseEntity<Boolean> movieInsert(@RequestBody List<Map<String, String>> movieList) {
-        log.info("movieList : {}", movieList);
-
-        for (Map<String, String> data : movieList) {
-            Movie movie = new Movie();
-            movie.setMovieRank(data.get("rank"));
-            movie.setImage(data.get("image"));
-            movie.setTitle(data.get("title"));
-            movie.setScore(data.get("score"));
-            movie.setRate(data.get("eval_num"));
-            movie.setReservation(data.get("reservation"));
-            movie.setDate(data.get("open_date"));
-            movieService.saveMovie(movie);
+    public ResponseEntity<Boolean> movieInsert(InputStream body) throws IOException {
+        try {
+            movieService.ingest(body);
+            return ResponseEntity.ok(true);
+        } catch (JsonProcessingException e) {
+            log.warn("영화 목록 형식 오류 : {}", e.getOriginalMessage());
+            return ResponseEntity.badRequest().body(false);
         }
-        return ResponseEntity.ok(true);
     }
 
     // 영화 목록 조회
@@ -70,7 +65,7 @@ public class MovieController {
         return ResponseEntity.ok(pageCnt);
     }
 
-    // 영화 전체 삭제
+    // 이전 영화 스냅샷 삭제 (현재 제공 중인 스냅샷은 지우지 않으므로, 크롤러가 삭제 후 저장해도 목록이 비는 순간이 없다)
     @DeleteMapping("/delete")
     public ResponseEntity<Boolean> movieDelete() {
         movieService.deleteAll();
@@ -1,5 +1,6 @@
 package com.sample.chat.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -12,15 +13,59 @@ import lombok.extern.slf4j.Slf4j;
 @NoArgsConstructor
 @Slf4j
 public class ChatMessageDto {
+    // code 는 바이너리 프로토콜(ChatBinaryCodec)과 노드 간 버스(TcpRoomBroadcastBus)에서 사용하는 값이다.
+    // 선언 순서(ordinal)와 달리 상수를 추가하거나 순서를 바꿔도 변하지 않으므로, 새 상수는 사용하지 않은 code 를 받아야 한다.
     public enum MessageType{ // enum : 상수를 정의할때 사용
-        ENTER, // 채팅방에 입장 
-        TALK, // 실제 채팅 메시지를 전송
-        CLOSE // 채팅방에서 퇴장
+        ENTER(0), // 채팅방에 입장
+        TALK(1), // 실제 채팅 메시지를 전송
+        CLOSE(2), // 채팅방에서 퇴장
+        THROTTLED(3), // 메시지를 너무 빠르게 보내서 버려졌음을 알림 (서버에서만 전송)
+        TYPING(4), // 입력 중 표시 (message : START / STOP), 저장하지 않음
+        PRESENCE(5), // 접속 상태 변경 (message : ONLINE / AWAY), 저장하지 않음
+        ACTIVITY(6), // 채팅방의 입력 중 표시와 접속 상태 (message : RoomActivityDto 의 JSON, 서버에서만 전송)
+        ACK(7), // 클라이언트가 받은 마지막 메시지의 순번 (message : seq), 저장하지 않음
+        RESUME(8); // 재연결 후 채팅방에 다시 입장하며 놓친 메시지를 요청 (message : 마지막으로 받은 seq)
+                   // 서버는 놓친 메시지를 보낸 뒤 RESUME (message : OK / TRUNCATED, seq : 채팅방의 마지막 순번)으로 응답
+
+        private static final MessageType[] BY_CODE = new MessageType[256];
+
+        static {
+            for (MessageType type : values()) {
+                if (BY_CODE[type.code] != null) {
+                    throw new ExceptionInInitializerError("중복된 메시지 종류 code : " + type.code);
+                }
+                BY_CODE[type.code] = type;
+            }
+        }
+
+        private final int code;
+
+        MessageType(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        // code 에 해당하는 메시지 종류, 없으면 IllegalArgumentException
+        public static MessageType fromCode(int code) {
+            MessageType type = code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+            if (type == null) {
+                throw new IllegalArgumentException("알 수 없는 메시지 종류 : " + code);
+            }
+            return type;
+        }
     }
 
     private MessageType type; // 메시지의 종류
     private String roomId; // 채팅방 아이디
     private String sender; // 메시지를 보낸 사용자의 식별 정보
     private String message; // 실제 전송된 메시지의 내용
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long seq; // 채팅방 안의 메시지 순번 (서버가 보내는 채팅 기록 메시지에만 포함)
 
+    public ChatMessageDto(MessageType type, String roomId, String sender, String message) {
+        this(type, roomId, sender, message, null);
+    }
 }
@@ -0,0 +1,28 @@
+package com.sample.chat.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.sample.chat.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// 이전 채팅 로그 조회 응답, 엔티티 대신 화면에 필요한 컬럼만 담는다. (회원의 비밀번호 등은 조회하지 않음)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatMessageHistoryDto {
+    private Long id; // 메시지 ID, 다음 페이지를 조회할 때 before 값으로 사용
+    private Long seq; // 채팅방 안의 순번, 재연결 시 RESUME 메시지로 보낼 값 (순번이 생기기 전에 저장된 메시지는 null)
+    private ChatMessage.MessageType type;
+    private String text; // 메시지 내용
+    @JsonIgnore
+    private Long senderId; // 놓친 메시지를 웹소켓으로 다시 보낼 때 사용 (응답에는 포함하지 않음)
+    @JsonIgnore
+    private String senderEmail;
+    private String senderName; // 보낸 사용자의 이름 (입장/퇴장 메시지는 null 일 수 있음)
+    private LocalDateTime timestamp; // 메시지 전송 시각
+}
@@ -0,0 +1,22 @@
+package com.sample.chat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// 메시지 검색 결과 하나 (관련도 순)
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatMessageSearchHitDto {
+    private Long id; // 메시지 ID, 이전 채팅 로그에서 이 메시지 주변을 조회할 때 before 값으로 사용
+    private Long seq;
+    private String text; // 메시지 내용
+    private String senderName;
+    private LocalDateTime timestamp; // 메시지 전송 시각
+    private double score; // 관련도 점수 (BM25), 같은 검색 결과 안에서만 비교할 수 있다.
+    private List<int[]> highlights; // 검색어와 일치하는 text 의 구간들 [시작, 끝) (문자 위치, 끝은 포함하지 않음)
+}
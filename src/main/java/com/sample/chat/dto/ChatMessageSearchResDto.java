@@ -0,0 +1,18 @@
+package com.sample.chat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// 메시지 검색 응답 : 검색어와 일치하는 전체 메시지 수와 요청한 페이지의 결과
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatMessageSearchResDto {
+    private int total; // 검색어와 일치하는 메시지 수
+    private int page;
+    private int size;
+    private List<ChatMessageSearchHitDto> hits;
+}
@@ -0,0 +1,34 @@
+package com.sample.chat.dto;
+
+import com.sample.chat.entity.Member;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.web.socket.WebSocketSession;
+
+// 웹소켓 세션의 회원 정보, 연결 시점에 한 번만 확인하여 세션 속성에 저장하고 이후에는 변경하지 않는다. (불변 객체)
+@Getter
+@ToString
+public final class ChatPrincipal {
+    public static final String ATTRIBUTE = "chatPrincipal"; // 세션 속성의 키
+
+    private final Long id; // 회원 ID
+    private final String email;
+    private final String name;
+    private final String image; // 프로필 이미지
+
+    public ChatPrincipal(Long id, String email, String name, String image) {
+        this.id = id;
+        this.email = email;
+        this.name = name;
+        this.image = image;
+    }
+
+    public static ChatPrincipal of(Member member) {
+        return new ChatPrincipal(member.getId(), member.getEmail(), member.getName(), member.getImage());
+    }
+
+    // 세션에 저장된 회원 정보, 아직 확인되지 않은 세션이면 null
+    public static ChatPrincipal from(WebSocketSession session) {
+        return (ChatPrincipal) session.getAttributes().get(ATTRIBUTE);
+    }
+}
@@ -0,0 +1,19 @@
+package com.sample.chat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+// 채팅방의 입력 중 표시와 접속 상태 (ACTIVITY 메시지의 message 필드에 JSON 으로 담긴다)
+// 서버(노드)마다 자신에게 접속한 회원의 상태 전체를 보내므로, 클라이언트는 node 별로 최신 값을 합쳐서 표시한다.
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class RoomActivityDto {
+    private long node; // 상태를 보낸 노드 (chat.node-id)
+    private List<String> typing; // 입력 중인 회원의 이메일
+    private Map<String, String> presence; // 회원 이메일 -> 접속 상태 (ONLINE / AWAY), 없으면 퇴장
+}
@@ -0,0 +1,27 @@
+package com.sample.chat.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+// 채팅방 전체에 방송할 메시지 한 건, 여러 서버(노드)가 RoomBroadcastBus 로 주고받는다. (불변 객체)
+@Getter
+@ToString
+public final class RoomBroadcast {
+    private final Long roomId;
+    private final ChatMessageDto message; // 클라이언트에 전송할 메시지
+    private final long memberId; // 보낸 회원 ID (없으면 0), 바이너리 프로토콜 프레임에 담긴다.
+    private final ChatMessageHistoryDto history; // 채팅 기록으로 저장된 메시지이면 다른 노드의 최근 메시지 캐시에도 추가 (없으면 null)
+    private final String coalesceKey; // 전송 전에 같은 키의 새 메시지가 오면 교체해도 되는 메시지 (없으면 null)
+
+    public RoomBroadcast(Long roomId, ChatMessageDto message, long memberId, ChatMessageHistoryDto history, String coalesceKey) {
+        this.roomId = roomId;
+        this.message = message;
+        this.memberId = memberId;
+        this.history = history;
+        this.coalesceKey = coalesceKey;
+    }
+
+    public static RoomBroadcast of(Long roomId, ChatMessageDto message, long memberId) {
+        return new RoomBroadcast(roomId, message, memberId, null, null);
+    }
+}
@@ -3,9 +3,15 @@ package com.sample.chat.entity;
 import lombok.*;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_message")
+@Table(name = "chat_message", indexes = {
+        // 채팅방별 이전 메시지 조회(WHERE room_id = ? AND message_id < ? ORDER BY message_id DESC)를 인덱스만으로 처리하기 위한 복합 인덱스
+        @Index(name = "idx_chat_message_room_id_message_id", columnList = "room_id, message_id"),
+        // 재연결한 클라이언트가 놓친 메시지 조회(WHERE room_id = ? AND seq > ? ORDER BY seq DESC)와 채팅방의 마지막 순번 조회(MAX(seq))용 인덱스
+        @Index(name = "idx_chat_message_room_id_seq", columnList = "room_id, seq")
+})
 @Getter
 @Setter
 @ToString
@@ -14,17 +20,22 @@ import javax.persistence.*;
 public class ChatMessage {
     @Id
     @Column(name = "message_id")
-    @GeneratedValue
-    private Long id;
+    private Long id; // MessageIdGenerator 가 발급한 시간 순서의 ID (데이터 베이스에서 생성하지 않음)
+    private Long seq; // 채팅방 안에서 1 씩 증가하는 순번 (RoomSequencer), 클라이언트가 마지막으로 받은 메시지를 가리킬 때 사용
+    @Convert(converter = MessageTypeConverter.class) // 선언 순서가 아닌 고정된 code 로 저장 (기존 행의 값과 같음)
     private MessageType type;
+    @Column(columnDefinition = "TEXT") // 최대 수신 크기(chat.websocket.max-message-size)의 메시지까지 저장
     private String message;
+    private LocalDateTime regDate; // 메시지 전송 시각
 
-    @ManyToOne(fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
-    @JoinColumn(name = "room_id")
+    // 외래 키 제약 조건은 만들지 않는다. MySQL 의 파티션 테이블(chat_message 를 월별로 나눔)은 외래 키를 지원하지 않기 때문이다.
+    // 채팅방을 삭제할 때는 채팅방의 메시지를 먼저 한 번에 지운다. (MessageHistoryService.removeRoom)
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "room_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private ChatRoom chatRoom;
 
     @ManyToOne(fetch = FetchType.EAGER)
-    @JoinColumn(name = "member_id")
+    @JoinColumn(name = "member_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Member sender;
     /*
     해당 필드는 JPA 상에서는 Member 타입의 sender라는 이름의 필드지만,
@@ -32,7 +43,41 @@ public class ChatMessage {
     이는 JPA가 알아서 변환을 해주기 때문에 가능한 일이다.
     */
 
+    // code 는 테이블, 노드 간 버스, 보관 세그먼트에 저장되는 값이므로 상수를 추가하더라도 기존 값은 바꾸지 않는다.
     public enum MessageType {
-        ENTER, TALK, CLOSE
+        ENTER(0), TALK(1), CLOSE(2);
+
+        private final int code;
+
+        MessageType(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        // code 에 해당하는 메시지 종류, 없으면 IllegalArgumentException
+        public static MessageType fromCode(int code) {
+            for (MessageType type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("알 수 없는 메시지 종류 : " + code);
+        }
+    }
+
+    @Converter
+    public static class MessageTypeConverter implements AttributeConverter<MessageType, Integer> {
+        @Override
+        public Integer convertToDatabaseColumn(MessageType type) {
+            return type != null ? type.getCode() : null;
+        }
+
+        @Override
+        public MessageType convertToEntityAttribute(Integer code) {
+            return code != null ? MessageType.fromCode(code) : null;
+        }
     }
 }
@@ -23,6 +23,10 @@ public class ChatRoom {
     private Long id;
     private String name;
     private LocalDateTime regDate;
+    // 채팅방에서 마지막으로 발급된 메시지 순번, 여러 노드가 함께 발급할 때 RoomSequencer 가 SQL 로 1 씩 증가시킨다.
+    // 엔티티를 저장할 때 이전에 읽은 값으로 덮어쓰지 않도록 UPDATE 에서 제외한다.
+    @Column(name = "last_seq", updatable = false, columnDefinition = "bigint default 0 not null")
+    private long lastSeq;
 
     /*
     // 다대다 관계
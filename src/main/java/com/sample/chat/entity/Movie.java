@@ -6,14 +6,23 @@ import lombok.ToString;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "movie")
+@Table(name = "movie", uniqueConstraints = {
+        // 한 스냅샷 안에서 같은 영화(제목 + 개봉일)가 다시 오면 새로 추가하지 않고 기존 행을 수정한다. (MovieService.ingest)
+        // snapshot_id 가 맨 앞에 있으므로 스냅샷의 영화 전체 조회와 오래된 스냅샷 삭제에도 이 인덱스를 사용한다.
+        @UniqueConstraint(name = "uk_movie_snapshot_title_date", columnNames = {"snapshot_id", "title", "date"})
+})
 @Getter @Setter @ToString
 @NoArgsConstructor
 public class Movie {
     @Id
     @Column(name = "movie_id")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movie_seq")
+    // ID 를 allocationSize 개씩 미리 받아와 메모리에서 나눠 쓰므로(pooled) INSERT 마다 ID 를 조회하지 않고, INSERT 를 JDBC 배치로 묶을 수 있다.
+    // (MySQL 에는 시퀀스가 없어 Hibernate 가 movie_seq 테이블로 대신한다)
+    @SequenceGenerator(name = "movie_seq", sequenceName = "movie_seq", allocationSize = 100)
     private Long id;
+    @Column(name = "snapshot_id")
+    private Long snapshotId; // 영화가 속한 스냅샷 (MovieSnapshot), 연관 관계 대신 ID 만 저장하여 INSERT 배치에 조회가 끼어들지 않게 한다.
     private String movieRank;
     private String image;
     private String title;
@@ -0,0 +1,23 @@
+package com.sample.chat.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// 크롤러가 한 번에 보낸 영화 목록(버전) 하나, 가장 최근에 저장(커밋)된 스냅샷이 현재 제공 중인 영화 순위이다.
+@Entity
+@Table(name = "movie_snapshot")
+@Getter @Setter @ToString
+@NoArgsConstructor
+public class MovieSnapshot {
+    @Id
+    @Column(name = "snapshot_id")
+    @GeneratedValue
+    private Long id;
+    private int movieCount; // 스냅샷에 저장된 영화 수
+    private LocalDateTime regDate;
+}
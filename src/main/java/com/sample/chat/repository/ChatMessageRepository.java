@@ -1,10 +1,14 @@
 package com.sample.chat.repository;
 
+import com.sample.chat.dto.ChatMessageHistoryDto;
 import com.sample.chat.entity.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
@@ -33,4 +37,37 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
 
     혹시 두 설정을 동시에 사용하면,
     */
+
+    // 커서(키셋) 기반 페이지 조회 : before 보다 작은 ID 의 메시지를 최신순으로 pageable 의 크기만큼 조회
+    // OFFSET 을 사용하지 않기 때문에 몇 번째 페이지든 (room_id, message_id) 인덱스에서 필요한 행만 읽는다.
+    // 엔티티 대신 DTO 로 바로 조회하므로 필요한 컬럼만 읽고, 영속성 컨텍스트에도 올라가지 않는다.
+    // from 은 보관 계층의 watermark 로, 그보다 오래된 메시지는 세그먼트 파일에서 읽는다. (MessageHistoryService)
+    @Query("SELECT new com.sample.chat.dto.ChatMessageHistoryDto(cm.id, cm.seq, cm.type, cm.message, s.id, s.email, s.name, cm.regDate) " +
+            "FROM ChatMessage cm LEFT JOIN cm.sender s " +
+            "WHERE cm.chatRoom.id = :roomId AND cm.id >= :from AND cm.id < :before " +
+            "ORDER BY cm.id DESC")
+    List<ChatMessageHistoryDto> findHistory(@Param("roomId") Long roomId, @Param("from") Long from, @Param("before") Long before, Pageable pageable);
+
+    // 순번이 after 보다 큰 메시지 중 최근 것부터 pageable 의 크기만큼 조회 (재연결한 클라이언트가 놓친 메시지)
+    // (room_id, seq) 인덱스를 뒤에서부터 읽으므로, 놓친 메시지가 아무리 많아도 필요한 행만 읽는다.
+    @Query("SELECT new com.sample.chat.dto.ChatMessageHistoryDto(cm.id, cm.seq, cm.type, cm.message, s.id, s.email, s.name, cm.regDate) " +
+            "FROM ChatMessage cm LEFT JOIN cm.sender s " +
+            "WHERE cm.chatRoom.id = :roomId AND cm.id >= :from AND cm.seq > :after " +
+            "ORDER BY cm.seq DESC")
+    List<ChatMessageHistoryDto> findAfterSeq(@Param("roomId") Long roomId, @Param("from") Long from, @Param("after") Long after, Pageable pageable);
+
+    // 검색 결과의 메시지들 조회 (MessageSearchService), 기본 키로 찾으므로 결과의 수만큼만 읽는다.
+    @Query("SELECT new com.sample.chat.dto.ChatMessageHistoryDto(cm.id, cm.seq, cm.type, cm.message, s.id, s.email, s.name, cm.regDate) " +
+            "FROM ChatMessage cm LEFT JOIN cm.sender s " +
+            "WHERE cm.chatRoom.id = :roomId AND cm.id IN :ids")
+    List<ChatMessageHistoryDto> findHistoryByIds(@Param("roomId") Long roomId, @Param("ids") Collection<Long> ids);
+
+    // 채팅방의 마지막 순번 (순번이 있는 메시지가 없으면 null)
+    @Query("SELECT MAX(cm.seq) FROM ChatMessage cm WHERE cm.chatRoom.id = :roomId")
+    Long findMaxSeq(@Param("roomId") Long roomId);
+
+    // 채팅방의 메시지를 한 번의 DELETE 로 삭제 (엔티티를 하나씩 읽어서 지우지 않음), (room_id, message_id) 인덱스로 해당 행만 찾는다.
+    @Modifying
+    @Query("DELETE FROM ChatMessage cm WHERE cm.chatRoom.id = :roomId")
+    int deleteByRoomId(@Param("roomId") Long roomId);
 }
@@ -2,6 +2,30 @@ package com.sample.chat.repository;
 
 import com.sample.chat.entity.Movie;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface MovieRepository extends JpaRepository<Movie, Long> {
-}
\ No newline at end of file
+    // 저장 중인 스냅샷의 영화들 중 이미 있는 영화를 한 번에 조회 (개봉일은 조회한 뒤 비교)
+    List<Movie> findBySnapshotIdAndTitleIn(Long snapshotId, Collection<String> titles);
+
+    // 스냅샷의 영화 전체를 저장된 순서(크롤러가 보낸 순서)대로 조회
+    List<Movie> findBySnapshotIdOrderByIdAsc(Long snapshotId);
+
+    // 스냅샷을 도입하기 전에 저장된 영화 (snapshot_id 가 없음), 스냅샷이 하나도 없는 동안에만 제공한다. (MovieSnapshotCache)
+    List<Movie> findBySnapshotIdIsNullOrderByIdAsc();
+
+    // 스냅샷을 도입하기 전에 저장된 영화를 삭제 (새 스냅샷이 저장될 때 함께 지운다)
+    @Modifying
+    @Query("DELETE FROM Movie m WHERE m.snapshotId IS NULL")
+    int deleteLegacy();
+
+    // 해당 스냅샷과 그 이전 스냅샷들의 영화를 DELETE 한 번으로 삭제 (엔티티를 조회하지 않음)
+    @Modifying
+    @Query("DELETE FROM Movie m WHERE m.snapshotId <= :snapshotId")
+    int deleteUpToSnapshot(@Param("snapshotId") Long snapshotId);
+}
@@ -0,0 +1,24 @@
+package com.sample.chat.repository;
+
+import com.sample.chat.entity.MovieSnapshot;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface MovieSnapshotRepository extends JpaRepository<MovieSnapshot, Long> {
+    // 현재 제공 중인(가장 최근에 커밋된) 스냅샷의 ID, 스냅샷이 없으면 null
+    @Query("SELECT MAX(s.id) FROM MovieSnapshot s")
+    Long findActiveId();
+
+    // 최신순 스냅샷 ID (pageable 로 보관할 개수만큼 건너뛰어 삭제할 스냅샷을 찾는다)
+    @Query("SELECT s.id FROM MovieSnapshot s ORDER BY s.id DESC")
+    List<Long> findIdsNewestFirst(Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM MovieSnapshot s WHERE s.id <= :snapshotId")
+    int deleteUpTo(@Param("snapshotId") Long snapshotId);
+}
@@ -0,0 +1,263 @@
+package com.sample.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+오래된 채팅 메시지를 보관하는 cold 계층이다. (최근 메시지는 hot 계층인 chat_message 테이블에 있다)
+보관 작업(ChatMessageArchiver)이 오래된 달의 메시지를 채팅방별 세그먼트 파일(room-{roomId}/{yyyy-MM}.seg)로 옮기고,
+옮긴 범위의 끝을 watermark 파일에 기록한 뒤 테이블에서 지운다.
+
+ID 가 watermark 보다 작은 메시지는 이 계층에서, 크거나 같은 메시지는 테이블에서 조회한다. (MessageHistoryService)
+watermark 는 세그먼트를 모두 쓴 뒤, 테이블에서 지우기 전에 올리므로 어느 시점에 조회하더라도 메시지가 빠지거나 두 번 나오지 않는다.
+
+세그먼트는 채팅방별로 열어 둔 것을 캐시하며, 파일은 매핑되어 있으므로 캐시에서 제거되어도 운영체제의 페이지 캐시에 남아 있을 수 있다.
+(세그먼트는 로컬 디스크에 있으므로 서버를 여러 대 사용하면 보관 작업은 한 서버에서만 실행하고, 디렉터리는 모든 서버가 함께 읽을 수 있어야 한다)
+보관 작업을 실행하지 않는 서버는 watermark 파일을 주기적으로(chat.archive.watermark-check-ms) 다시 읽고,
+값이 바뀌었으면 다른 서버가 새 세그먼트를 쓴 것이므로 열어 둔 세그먼트 목록을 모두 버린다.
+*/
+@Slf4j
+@Component
+public class ChatMessageArchive {
+    private static final String WATERMARK_FILE = "watermark";
+    private static final String ROOM_DIRECTORY_PREFIX = "room-";
+
+    private final Path directory;
+    private final Cache<Long, List<MessageSegment>> segments; // 채팅방 -> 첫 메시지 ID 순으로 정렬된 세그먼트 (없으면 빈 목록)
+    private final Counter blocksRead;
+    private final long watermarkCheckMillis;
+    private final AtomicLong watermarkCheckedAt = new AtomicLong(); // 마지막으로 watermark 파일을 읽은 시각
+    private volatile long watermark = Long.MIN_VALUE;
+
+    @Autowired
+    public ChatMessageArchive(MeterRegistry meterRegistry,
+                              @Value("${chat.archive.dir:./data/archive}") String directory,
+                              @Value("${chat.archive.open-rooms:1000}") long openRooms,
+                              @Value("${chat.archive.watermark-check-ms:1000}") long watermarkCheckMillis) {
+        this.directory = Paths.get(directory);
+        this.segments = Caffeine.newBuilder().maximumSize(openRooms).build();
+        this.blocksRead = Counter.builder("chat.archive.blocks.read").description("압축을 풀어 읽은 세그먼트 블록 수").register(meterRegistry);
+        this.watermarkCheckMillis = watermarkCheckMillis;
+        try {
+            reloadWatermark();
+        } catch (IOException e) {
+            throw new UncheckedIOException("보관 계층의 watermark 를 읽을 수 없습니다 : " + this.directory.toAbsolutePath(), e);
+        }
+        watermarkCheckedAt.set(System.currentTimeMillis());
+    }
+
+    // 세그먼트 파일을 저장하는 디렉터리 (chat.archive.dir)
+    Path directory() {
+        return directory;
+    }
+
+    // 이 ID 보다 작은 메시지는 보관 계층에 있다. (아직 보관한 적이 없으면 Long.MIN_VALUE)
+    // 파일을 다시 읽을 시간이 되었으면 호출한 스레드 하나만 읽고, 나머지는 기다리지 않고 지금 값을 사용한다.
+    public long watermark() {
+        long checkedAt = watermarkCheckedAt.get();
+        long now = System.currentTimeMillis();
+        if (now - checkedAt >= watermarkCheckMillis && watermarkCheckedAt.compareAndSet(checkedAt, now)) {
+            try {
+                reloadWatermark();
+            } catch (IOException | NumberFormatException e) {
+                log.warn("보관 계층의 watermark 를 다시 읽지 못함 (이전 값 사용) : {}", e.toString());
+            }
+        }
+        return watermark;
+    }
+
+    // 다른 서버(보관 작업)가 올린 watermark 를 반영하고, 바뀌었으면 새 세그먼트가 보이도록 세그먼트 목록을 버린다.
+    private synchronized void reloadWatermark() throws IOException {
+        Path file = directory.resolve(WATERMARK_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        long read = Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+        if (read > watermark) {
+            // 목록을 먼저 버린 뒤 watermark 를 올려, 새 watermark 로 조회하는 스레드가 새 세그먼트를 열게 한다.
+            segments.invalidateAll();
+            watermark = read;
+            log.info("보관 계층의 watermark 변경 : {}", read);
+        }
+    }
+
+    // before 보다 ID 가 작은 메시지를 최신순으로 limit 개까지 조회
+    public List<ChatMessageHistoryDto> findBefore(Long roomId, long before, int limit) {
+        List<ChatMessageHistoryDto> result = new ArrayList<>(Math.min(limit, 256));
+        List<MessageSegment> roomSegments = segments(roomId);
+        try {
+            for (int s = roomSegments.size() - 1; s >= 0 && result.size() < limit; s--) {
+                MessageSegment segment = roomSegments.get(s);
+                for (int block = segment.lastBlockBefore(before); block >= 0 && result.size() < limit; block--) {
+                    List<ChatMessageHistoryDto> messages = read(segment, block);
+                    for (int i = messages.size() - 1; i >= 0 && result.size() < limit; i--) {
+                        if (messages.get(i).getId() < before) {
+                            result.add(messages.get(i));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    // 순번이 after 보다 큰 메시지 중 최근 것부터 limit 개까지 조회 (채팅방 안에서 순번은 ID 와 같은 순서로 증가한다)
+    public List<ChatMessageHistoryDto> findAfterSeq(Long roomId, long after, int limit) {
+        List<ChatMessageHistoryDto> result = new ArrayList<>(Math.min(limit, 256));
+        List<MessageSegment> roomSegments = segments(roomId);
+        try {
+            for (int s = roomSegments.size() - 1; s >= 0; s--) {
+                MessageSegment segment = roomSegments.get(s);
+                for (int block = segment.blockCount() - 1; block >= 0; block--) {
+                    List<ChatMessageHistoryDto> messages = read(segment, block);
+                    for (int i = messages.size() - 1; i >= 0; i--) {
+                        Long seq = messages.get(i).getSeq();
+                        if (seq == null || seq <= after || result.size() == limit) {
+                            return result;
+                        }
+                        result.add(messages.get(i));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    // ID 로 메시지들을 조회 (검색 결과 등), 없는 ID 는 결과에서 빠진다.
+    public List<ChatMessageHistoryDto> findByIds(Long roomId, Collection<Long> ids) {
+        List<MessageSegment> roomSegments = segments(roomId);
+        if (roomSegments.isEmpty() || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Long> remaining = new HashSet<>(ids);
+        List<ChatMessageHistoryDto> result = new ArrayList<>(ids.size());
+        try {
+            for (MessageSegment segment : roomSegments) {
+                // 같은 블록에 있는 ID 들은 블록을 한 번만 읽는다.
+                Set<Integer> blocks = new HashSet<>();
+                for (Long id : remaining) {
+                    int block = segment.blockOf(id);
+                    if (block >= 0) {
+                        blocks.add(block);
+                    }
+                }
+                for (int block : blocks) {
+                    for (ChatMessageHistoryDto message : read(segment, block)) {
+                        if (remaining.remove(message.getId())) {
+                            result.add(message);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    // 보관된 메시지 중 채팅방의 마지막 순번 (없으면 null)
+    public Long findMaxSeq(Long roomId) {
+        List<ChatMessageHistoryDto> last = findBefore(roomId, Long.MAX_VALUE, 1);
+        return last.isEmpty() ? null : last.get(0).getSeq();
+    }
+
+    private List<ChatMessageHistoryDto> read(MessageSegment segment, int block) throws IOException {
+        blocksRead.increment();
+        return segment.readBlock(block);
+    }
+
+    private List<MessageSegment> segments(Long roomId) {
+        return segments.get(roomId, this::openSegments);
+    }
+
+    private List<MessageSegment> openSegments(Long roomId) {
+        Path roomDirectory = roomDirectory(roomId);
+        if (!Files.isDirectory(roomDirectory)) {
+            return Collections.emptyList();
+        }
+        List<MessageSegment> opened = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(roomDirectory, "*" + MessageSegment.SUFFIX)) {
+            for (Path file : files) {
+                opened.add(MessageSegment.open(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("보관된 메시지를 읽을 수 없습니다 : " + roomDirectory, e);
+        }
+        opened.sort(Comparator.comparingLong(MessageSegment::firstId));
+        return opened;
+    }
+
+    // 보관 작업 : 채팅방의 한 달 치 세그먼트를 만든다. (commit 후 segmentWritten 을 호출해야 조회에 반영된다)
+    MessageSegment.Writer newSegment(Long roomId, YearMonth month) throws IOException {
+        Path roomDirectory = roomDirectory(roomId);
+        Files.createDirectories(roomDirectory);
+        return new MessageSegment.Writer(roomDirectory.resolve(month + MessageSegment.SUFFIX));
+    }
+
+    void segmentWritten(Long roomId) {
+        segments.invalidate(roomId);
+    }
+
+    // 보관 작업 : 이 ID 보다 작은 메시지를 모두 세그먼트로 옮겼음을 기록 (임시 파일에 쓴 뒤 이름을 바꾼다)
+    synchronized void advanceWatermark(long id) throws IOException {
+        if (id <= watermark) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(WATERMARK_FILE + ".tmp");
+        Files.write(temp, Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temp, directory.resolve(WATERMARK_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        watermark = id;
+    }
+
+    // 채팅방의 보관된 메시지를 모두 삭제 (세그먼트는 채팅방마다 따로 있으므로 디렉터리만 지우면 된다)
+    public void removeRoom(Long roomId) {
+        Path roomDirectory = roomDirectory(roomId);
+        segments.invalidate(roomId);
+        if (!Files.isDirectory(roomDirectory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(roomDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(roomDirectory);
+        } catch (IOException e) {
+            log.error("채팅방 {} 의 보관된 메시지 삭제 실패 : {}", roomId, e.getMessage());
+        }
+    }
+
+    private Path roomDirectory(Long roomId) {
+        return directory.resolve(ROOM_DIRECTORY_PREFIX + roomId);
+    }
+}
@@ -0,0 +1,293 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.entity.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+오래된 채팅 메시지를 chat_message 테이블(hot)에서 세그먼트 파일(cold, ChatMessageArchive)로 옮기는 보관 작업이다.
+최근 hot-months 개월(이번 달 포함)의 메시지만 테이블에 남기고, 그보다 오래된 달은 한 달씩 다음 순서로 옮긴다.
+
+1. 그 달에 메시지가 있는 채팅방마다 메시지를 ID 순서대로 나누어 읽어 세그먼트 파일 하나(room-{roomId}/{yyyy-MM}.seg)에 쓴다.
+2. 모든 채팅방의 세그먼트를 쓴 뒤 watermark 를 그 달의 끝(다음 달의 첫 메시지 ID)으로 올린다. 이때부터 그 달은 세그먼트에서 조회된다.
+3. watermark 보다 오래된 행을 테이블에서 지운다.
+   chat_message 가 월별 파티션 테이블이면 (MySQL, db/chat_message_partitioning.sql) 해당 달의 파티션을 DROP 하여 바로 지우고,
+   파티션 테이블이 아니면 batch-size 개씩 나누어 DELETE 한다. (한 번에 지우면 긴 트랜잭션이 메시지 저장을 막는다)
+
+중간에 종료되어도 watermark 를 올리기 전이면 다음 실행에서 같은 달을 처음부터 다시 옮기고 (세그먼트를 덮어씀),
+올린 뒤라면 테이블에 남은 행만 지운다. 파티션 테이블이면 앞으로 사용할 달의 파티션도 미리 만들어 둔다.
+보관 작업은 전용 스레드에서 실행되므로, 오래 걸려도 @Scheduled 작업(입력 중 표시 방송 등)을 막지 않는다.
+*/
+@Slf4j
+@Component
+public class ChatMessageArchiver implements SmartLifecycle {
+    private static final String FIRST_ID_SQL = "SELECT MIN(message_id) FROM chat_message WHERE message_id >= ? AND message_id < ?";
+    private static final String ROOMS_SQL = "SELECT DISTINCT room_id FROM chat_message WHERE message_id >= ? AND message_id < ?";
+    private static final String MESSAGES_SQL =
+            "SELECT cm.message_id, cm.seq, cm.type, cm.message, cm.member_id, m.email, m.name, cm.reg_date " +
+            "FROM chat_message cm LEFT JOIN member m ON m.member_id = cm.member_id " +
+            "WHERE cm.room_id = ? AND cm.message_id >= ? AND cm.message_id < ? ORDER BY cm.message_id LIMIT ?";
+    private static final String PURGE_BOUNDARY_SQL = "SELECT message_id FROM chat_message WHERE message_id < ? ORDER BY message_id LIMIT 1 OFFSET ?";
+    private static final String PARTITIONS_SQL = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_message' AND PARTITION_NAME IS NOT NULL " +
+            "ORDER BY PARTITION_ORDINAL_POSITION";
+    private static final String MAX_PARTITION = "pmax";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatMessageArchive chatMessageArchive;
+    private final boolean enabled;
+    private final int hotMonths;
+    private final long initialDelayMs;
+    private final long intervalMs;
+    private final int batchSize;
+    private final int futurePartitions;
+    private final ZoneId zone = ZoneId.systemDefault(); // 메시지의 전송 시각(reg_date)과 같은 시간대로 달을 나눈다.
+    private final Counter archivedCounter;
+    private final Counter purgedCounter;
+    private final Timer runTimer;
+
+    private volatile boolean running;
+    private ScheduledExecutorService executor;
+    private Boolean mysql; // 처음 실행할 때 확인
+
+    @Autowired
+    public ChatMessageArchiver(JdbcTemplate jdbcTemplate, ChatMessageArchive chatMessageArchive, MeterRegistry meterRegistry,
+                               @Value("${chat.archive.enabled:false}") boolean enabled,
+                               @Value("${chat.archive.hot-months:3}") int hotMonths,
+                               @Value("${chat.archive.initial-delay-ms:60000}") long initialDelayMs,
+                               @Value("${chat.archive.interval-ms:3600000}") long intervalMs,
+                               @Value("${chat.archive.batch-size:1000}") int batchSize,
+                               @Value("${chat.archive.future-partitions:2}") int futurePartitions) {
+        if (hotMonths < 1) {
+            throw new IllegalArgumentException("chat.archive.hot-months 는 1 이상이어야 합니다 : " + hotMonths);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.chatMessageArchive = chatMessageArchive;
+        this.enabled = enabled;
+        this.hotMonths = hotMonths;
+        this.initialDelayMs = initialDelayMs;
+        this.intervalMs = intervalMs;
+        this.batchSize = batchSize;
+        this.futurePartitions = futurePartitions;
+        this.archivedCounter = Counter.builder("chat.archive.messages").description("세그먼트 파일로 옮긴 메시지 수").register(meterRegistry);
+        this.purgedCounter = Counter.builder("chat.archive.purged").description("보관한 뒤 테이블에서 DELETE 한 행 수").register(meterRegistry);
+        this.runTimer = Timer.builder("chat.archive.run").description("보관 작업 한 번에 걸린 시간").register(meterRegistry);
+    }
+
+    // 보관 작업 한 번 : 오래된 달을 옮기고, 테이블에서 지우고, 파티션을 관리한다.
+    public void archive() {
+        long startedAt = System.nanoTime();
+        YearMonth current = YearMonth.now(zone);
+        long cutoff = MessageIdGenerator.minIdAt(startOf(current.minusMonths(hotMonths - 1)));
+        long watermark = chatMessageArchive.watermark();
+        int archived = 0;
+        try {
+            while (watermark < cutoff && running) {
+                // 남은 메시지 중 가장 오래된 메시지의 달을 옮긴다. (메시지가 없는 달은 건너뜀)
+                Long firstId = jdbcTemplate.queryForObject(FIRST_ID_SQL, Long.class, watermark, cutoff);
+                long end = cutoff;
+                if (firstId != null) {
+                    YearMonth month = YearMonth.from(Instant.ofEpochMilli(MessageIdGenerator.timestampOf(firstId)).atZone(zone));
+                    end = Math.min(cutoff, MessageIdGenerator.minIdAt(startOf(month.plusMonths(1))));
+                    archived += archiveMonth(month, watermark, end);
+                }
+                chatMessageArchive.advanceWatermark(end);
+                watermark = end;
+            }
+            int purged = watermark > Long.MIN_VALUE ? purge(watermark) : 0;
+            maintainPartitions(current);
+            if (archived > 0 || purged > 0) {
+                log.info("메시지 보관 완료 : 세그먼트로 옮긴 메시지 {}건, 테이블에서 DELETE 한 행 {}건 ({}ms)", archived, purged,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            }
+        } catch (IOException | RuntimeException e) { // 예외가 나가면 이후의 실행이 모두 취소되므로 여기서 처리
+            log.error("메시지 보관 실패 (다음 실행에서 다시 시도) : {}", e.getMessage());
+        } finally {
+            runTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // 한 달 [from, to) 의 메시지를 채팅방별 세그먼트로 옮기고 옮긴 메시지 수를 반환
+    private int archiveMonth(YearMonth month, long from, long to) throws IOException {
+        int total = 0;
+        for (Long roomId : jdbcTemplate.queryForList(ROOMS_SQL, Long.class, from, to)) {
+            try (MessageSegment.Writer writer = chatMessageArchive.newSegment(roomId, month)) {
+                long next = from; // 다음 페이지의 첫 메시지 ID (마지막으로 읽은 ID + 1)
+                while (true) {
+                    if (!running) {
+                        throw new InterruptedIOException("서버 종료로 " + month + " 의 보관을 멈춤");
+                    }
+                    List<ChatMessageHistoryDto> page = jdbcTemplate.query(MESSAGES_SQL, this::mapMessage, roomId, next, to, batchSize);
+                    for (ChatMessageHistoryDto message : page) {
+                        writer.add(message);
+                    }
+                    total += page.size();
+                    if (page.size() < batchSize) {
+                        break;
+                    }
+                    next = page.get(page.size() - 1).getId() + 1;
+                }
+                if (writer.commit()) {
+                    chatMessageArchive.segmentWritten(roomId);
+                }
+            }
+        }
+        archivedCounter.increment(total);
+        log.info("{} 의 메시지 {}건을 세그먼트로 옮김", month, total);
+        return total;
+    }
+
+    private ChatMessageHistoryDto mapMessage(ResultSet rs, int rowNum) throws SQLException {
+        long seq = rs.getLong(2);
+        Long seqValue = rs.wasNull() ? null : seq;
+        long senderId = rs.getLong(5);
+        Long senderIdValue = rs.wasNull() ? null : senderId;
+        Timestamp regDate = rs.getTimestamp(8);
+        return new ChatMessageHistoryDto(rs.getLong(1), seqValue, ChatMessage.MessageType.fromCode(rs.getInt(3)), rs.getString(4),
+                senderIdValue, rs.getString(6), rs.getString(7), regDate != null ? regDate.toLocalDateTime() : null);
+    }
+
+    // watermark 보다 오래된 행을 batch-size 개씩 DELETE (파티션을 DROP 했으면 지울 행이 없으므로 바로 끝난다)
+    private int purge(long watermark) {
+        int total = 0;
+        while (running) {
+            List<Long> boundary = jdbcTemplate.queryForList(PURGE_BOUNDARY_SQL, Long.class, watermark, batchSize - 1);
+            int deleted = boundary.isEmpty()
+                    ? jdbcTemplate.update("DELETE FROM chat_message WHERE message_id < ?", watermark)
+                    : jdbcTemplate.update("DELETE FROM chat_message WHERE message_id <= ?", boundary.get(0));
+            total += deleted;
+            if (boundary.isEmpty()) {
+                break;
+            }
+        }
+        purgedCounter.increment(total);
+        return total;
+    }
+
+    /*
+    chat_message 가 MySQL 파티션 테이블이면 (파티션 이름 p{yyyyMM}, 범위는 그 달의 메시지 ID)
+    이번 달부터 future-partitions 개월 뒤까지의 파티션을 pmax 에서 나누어 만들고, 모두 보관된 달의 파티션은 DROP 한다.
+    DROP PARTITION 은 행을 하나씩 지우지 않고 파티션의 파일을 지우므로, 한 달 치 메시지가 많아도 바로 끝난다.
+    */
+    private void maintainPartitions(YearMonth current) {
+        if (!isMysql()) {
+            return;
+        }
+        List<String[]> partitions = jdbcTemplate.query(PARTITIONS_SQL, (rs, rowNum) -> new String[]{rs.getString(1), rs.getString(2)});
+        if (partitions.isEmpty()) {
+            return; // 파티션 테이블이 아님 : 보관한 행은 purge 가 DELETE 로 지운다.
+        }
+        long watermark = chatMessageArchive.watermark();
+        long highest = Long.MIN_VALUE;
+        boolean hasMax = false;
+        List<String> drop = new ArrayList<>();
+        for (String[] partition : partitions) {
+            if (MAX_PARTITION.equals(partition[0]) || "MAXVALUE".equals(partition[1])) {
+                hasMax = true;
+                continue;
+            }
+            long bound = Long.parseLong(partition[1].trim());
+            highest = Math.max(highest, bound);
+            if (bound <= watermark) {
+                drop.add(partition[0]);
+            }
+        }
+        List<String> add = new ArrayList<>();
+        for (int i = 0; i <= futurePartitions; i++) {
+            YearMonth month = current.plusMonths(i);
+            long bound = MessageIdGenerator.minIdAt(startOf(month.plusMonths(1)));
+            if (bound > highest) {
+                add.add("PARTITION " + month.format(PARTITION_NAME) + " VALUES LESS THAN (" + bound + ")");
+            }
+        }
+        if (!add.isEmpty()) {
+            String definitions = String.join(", ", add);
+            jdbcTemplate.execute(hasMax
+                    ? "ALTER TABLE chat_message REORGANIZE PARTITION " + MAX_PARTITION + " INTO (" + definitions
+                            + ", PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE)"
+                    : "ALTER TABLE chat_message ADD PARTITION (" + definitions + ")");
+            log.info("chat_message 파티션 추가 : {}", add);
+        }
+        if (!drop.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE chat_message DROP PARTITION " + String.join(", ", drop));
+            log.info("보관한 chat_message 파티션 삭제 : {}", drop);
+        }
+    }
+
+    private boolean isMysql() {
+        if (mysql == null) {
+            mysql = "MySQL".equalsIgnoreCase(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return mysql;
+    }
+
+    private long startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            return;
+        }
+        // 상대 경로는 서버를 실행한 디렉터리를 기준으로 하므로, 배포할 때마다 위치가 바뀌거나 다른 서버와 공유되지 않을 수 있다.
+        Path directory = chatMessageArchive.directory();
+        if (!directory.isAbsolute()) {
+            log.warn("chat.archive.dir 이 상대 경로입니다 : {} -> {} (서버마다 다른 디렉터리가 되지 않도록 절대 경로를 권장)",
+                    directory, directory.toAbsolutePath());
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-message-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::archive, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 진행 중인 보관 작업은 다음 단계로 넘어가지 않고 멈춘다. (옮기던 달은 다음 실행에서 처음부터 다시 옮김)
+    @Override
+    public void stop() {
+        running = false;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,216 @@
+package com.sample.chat.service;
+
+import com.sample.chat.config.RoomEventDispatcher;
+import com.sample.chat.entity.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+채팅 메시지를 지연 저장(write-behind)하는 클래스이다.
+메시지는 방송과 동시에 메모리 큐에 추가만 되고, 별도의 저장 스레드가 일정 개수 또는 일정 시간마다 모아서
+chat_message 테이블에 JDBC 배치로 INSERT 한다. 따라서 데이터 베이스는 메시지 전송의 지연 시간에 영향을 주지 않는다.
+큐가 가득 차면 append 가 자리가 날 때까지 기다리고(역압), 종료 시에는 큐에 남은 메시지를 모두 저장한 뒤 종료한다.
+큐에 있거나 저장을 재시도 중인 메시지가 있는 동안에는 hasUnflushed 가 true 이다. (RoomSequencer 가 순번을 다시 읽지 않도록)
+*/
+@Slf4j
+@Component
+public class ChatMessageStore implements SmartLifecycle {
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_message (message_id, type, message, room_id, member_id, reg_date, seq) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageSearchIndex messageSearchIndex; // 저장한 메시지를 검색 색인에 추가
+    private final BlockingQueue<ChatMessage> queue;
+    private final AtomicInteger unflushed = new AtomicInteger(); // 큐에 추가된 뒤 아직 저장(또는 버림)이 끝나지 않은 메시지 수
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Counter persistedCounter;
+    private final Counter failedCounter;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public ChatMessageStore(JdbcTemplate jdbcTemplate, MessageSearchIndex messageSearchIndex, MeterRegistry meterRegistry,
+                            @Value("${chat.message-store.queue-capacity:100000}") int queueCapacity,
+                            @Value("${chat.message-store.batch-size:500}") int batchSize,
+                            @Value("${chat.message-store.flush-interval-ms:200}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageSearchIndex = messageSearchIndex;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.persistedCounter = Counter.builder("chat.messages.persisted").register(meterRegistry);
+        this.failedCounter = Counter.builder("chat.messages.persist.failed")
+                .description("저장에 실패하여 버려진 메시지 수 (존재하지 않는 채팅방 등)").register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.messages.flush").description("배치 한 번을 저장하는 데 걸린 시간").register(meterRegistry);
+        Gauge.builder("chat.messages.pending", queue, BlockingQueue::size)
+                .description("저장을 기다리는 메시지 수").register(meterRegistry);
+    }
+
+    // 메시지를 저장 큐에 추가, 큐가 가득 찬 경우 자리가 날 때까지 기다린다.
+    public void append(ChatMessage chatMessage) {
+        unflushed.incrementAndGet();
+        try {
+            queue.put(chatMessage);
+        } catch (InterruptedException e) {
+            unflushed.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("메시지 저장 대기 중 인터럽트 발생", e);
+        }
+    }
+
+    // 저장 스레드 : 배치 크기만큼 모이거나 flush 간격이 지나면 저장
+    private void writeLoop() {
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    ChatMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                queue.drainTo(batch, batchSize - batch.size()); // 종료 중 인터럽트 : 남은 메시지를 마저 저장
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                unflushed.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    // 아직 테이블에 저장되지 않은 메시지가 있는지 여부 (데이터 베이스 장애로 재시도 중인 배치 포함)
+    public boolean hasUnflushed() {
+        return unflushed.get() > 0;
+    }
+
+    private void flush(List<ChatMessage> batch) {
+        long backoffMs = 100;
+        int attempts = 0;
+        while (true) {
+            try {
+                flushTimer.record(() -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind));
+                persistedCounter.increment(batch.size());
+                index(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // 일부 행의 제약 조건 위반 : 한 건씩 다시 저장하여 문제가 되는 행만 제외
+                flushOneByOne(batch);
+                return;
+            } catch (DataAccessException e) {
+                // 연결 실패 등 일시적인 오류 : 메시지를 버리지 않고 잠시 후 다시 시도 (종료 중에는 제한된 횟수만 시도)
+                if (!running && ++attempts > 5) {
+                    failedCounter.increment(batch.size());
+                    log.error("종료 중 메시지 저장 실패, {}건을 버림 : {}", batch.size(), e.getMessage());
+                    return;
+                }
+                log.warn("메시지 배치 저장 실패, {}ms 후 재시도 ({}건) : {}", backoffMs, batch.size(), e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                backoffMs = Math.min(backoffMs * 2, 5000);
+            }
+        }
+    }
+
+    private void flushOneByOne(List<ChatMessage> batch) {
+        List<ChatMessage> persisted = new ArrayList<>(batch.size());
+        for (ChatMessage chatMessage : batch) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, chatMessage));
+                persistedCounter.increment();
+                persisted.add(chatMessage);
+            } catch (DataAccessException e) {
+                failedCounter.increment();
+                log.error("메시지 저장 실패, 메시지를 버림 (id {}) : {}", chatMessage.getId(), e.getMessage());
+            }
+        }
+        index(persisted);
+    }
+
+    // 저장에 성공한 메시지만 검색 색인에 추가, 색인에 실패해도 저장은 계속한다. (재시작 시 테이블에서 다시 색인됨)
+    private void index(List<ChatMessage> persisted) {
+        try {
+            messageSearchIndex.add(persisted);
+        } catch (RuntimeException e) {
+            log.error("검색 색인 추가 실패 ({}건) : {}", persisted.size(), e.getMessage());
+        }
+    }
+
+    private void bind(PreparedStatement ps, ChatMessage chatMessage) throws SQLException {
+        ps.setLong(1, chatMessage.getId());
+        ps.setInt(2, chatMessage.getType().getCode()); // 엔티티와 같이 고정된 code 로 저장 (ChatMessage.MessageTypeConverter)
+        ps.setString(3, chatMessage.getMessage());
+        ps.setLong(4, chatMessage.getChatRoom().getId());
+        if (chatMessage.getSender() != null) {
+            ps.setLong(5, chatMessage.getSender().getId());
+        } else {
+            ps.setNull(5, Types.BIGINT);
+        }
+        ps.setTimestamp(6, Timestamp.valueOf(chatMessage.getRegDate()));
+        ps.setLong(7, chatMessage.getSeq());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "chat-message-writer");
+        writer.start();
+    }
+
+    // 종료 시 새 메시지를 더 이상 기다리지 않고, 큐에 남은 메시지를 모두 저장한 뒤 반환
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.error("종료 시간 초과로 저장하지 못한 메시지 : {}건", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 이벤트 처리 샤드(RoomEventDispatcher)가 모두 종료된 뒤에 멈추도록 가장 늦게 종료
+    @Override
+    public int getPhase() {
+        return RoomEventDispatcher.PHASE - 1;
+    }
+}
@@ -0,0 +1,161 @@
+package com.sample.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+채팅방 ID 와 해당 채팅방에 접속해 있는 웹소켓 세션들을 메모리 상에서 관리하는 클래스이다.
+WebSocketHandler 의 ENTER / CLOSE / 연결 종료 시점에 갱신되며,
+메시지를 방 전체에 전송할 때 데이터 베이스를 조회하지 않고 이 레지스트리만으로 수신자를 결정한다.
+채팅방에 첫 세션이 입장하면 메시지 버스에서 해당 채팅방을 구독하고, 마지막 세션이 퇴장하면 구독을 해지한다.
+구독이 바뀌면 RoomSubscriptionListener 들에 알려, 구독하지 않는 동안 오래된 값이 된 채팅방별 캐시를 버리게 한다.
+
+채팅방은 ID 의 해시로 N 개의 샤드에 나뉘어 있고, 입장과 퇴장은 해당 샤드의 락만 잡는다. (lock striping)
+따라서 서로 다른 샤드의 채팅방은 입장/퇴장이 동시에 일어나도 서로 기다리지 않는다.
+채팅방의 세션 목록은 바꿀 때마다 새 배열을 만들어 교체하는(copy-on-write) 불변 배열이므로,
+메시지를 보낼 때마다 일어나는 조회는 락이나 반복자(iterator) 생성 없이 volatile 읽기 한 번으로 끝난다.
+(입장/퇴장보다 방송이 훨씬 자주 일어나기 때문에, 바꾸는 쪽이 배열을 복사하는 비용을 부담한다)
+*/
+@Slf4j
+@Component
+public class ChatRoomRegistry {
+    private static final WebSocketSession[] EMPTY = new WebSocketSession[0];
+
+    private final Shard[] shards;
+    private final int mask;
+
+    // 다른 노드에서 이 노드의 세션이 있는 채팅방의 메시지만 받도록 구독을 관리
+    private final RoomBroadcastBus roomBroadcastBus;
+    private final List<RoomSubscriptionListener> subscriptionListeners;
+
+    public ChatRoomRegistry(RoomBroadcastBus roomBroadcastBus) {
+        this(roomBroadcastBus, 64);
+    }
+
+    public ChatRoomRegistry(RoomBroadcastBus roomBroadcastBus, int shardCount) {
+        this(roomBroadcastBus, Collections.emptyList(), shardCount);
+    }
+
+    @Autowired
+    public ChatRoomRegistry(RoomBroadcastBus roomBroadcastBus, List<RoomSubscriptionListener> subscriptionListeners,
+                            @Value("${chat.rooms.shards:64}") int shardCount) {
+        this.roomBroadcastBus = roomBroadcastBus;
+        this.subscriptionListeners = subscriptionListeners;
+        // 해시를 나머지 연산 대신 비트 AND 로 나누기 위해 2 의 거듭제곱으로 올림
+        int size = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        this.mask = size - 1;
+    }
+
+    // 세션을 채팅방에 등록
+    public void join(Long roomId, WebSocketSession session) {
+        Shard shard = shard(roomId);
+        // 구독과 구독 해지도 샤드의 락 안에서 호출하여, 같은 채팅방의 입장과 퇴장이 동시에 일어나도 순서가 뒤바뀌지 않게 한다. (버스는 대기열에 넣기만 한다)
+        synchronized (shard) {
+            WebSocketSession[] sessions = shard.rooms.get(roomId);
+            if (sessions == null) {
+                roomBroadcastBus.subscribe(roomId);
+                notifySubscription(roomId, true);
+                sessions = EMPTY;
+            } else if (indexOf(sessions, session) >= 0) {
+                return;
+            }
+            WebSocketSession[] updated = Arrays.copyOf(sessions, sessions.length + 1);
+            updated[sessions.length] = session;
+            shard.rooms.put(roomId, updated);
+        }
+    }
+
+    // 세션을 채팅방에서 제거하고, 방에 남은 세션이 없다면 방 자체를 레지스트리에서 제거 (입장해 있지 않았던 세션이면 false)
+    public boolean leave(Long roomId, WebSocketSession session) {
+        Shard shard = shard(roomId);
+        synchronized (shard) {
+            WebSocketSession[] sessions = shard.rooms.get(roomId);
+            int index = sessions != null ? indexOf(sessions, session) : -1;
+            if (index < 0) {
+                return false;
+            }
+            if (sessions.length == 1) {
+                shard.rooms.remove(roomId);
+                roomBroadcastBus.unsubscribe(roomId);
+                notifySubscription(roomId, false);
+                return true;
+            }
+            WebSocketSession[] updated = new WebSocketSession[sessions.length - 1];
+            System.arraycopy(sessions, 0, updated, 0, index);
+            System.arraycopy(sessions, index + 1, updated, index, updated.length - index);
+            shard.rooms.put(roomId, updated);
+            return true;
+        }
+    }
+
+    // 구독 해지 뒤에도 처리 중이던 메시지가 캐시를 다시 채울 수 있으므로, 구독을 시작할 때도 알린다.
+    private void notifySubscription(Long roomId, boolean subscribed) {
+        for (RoomSubscriptionListener listener : subscriptionListeners) {
+            listener.subscriptionChanged(roomId, subscribed);
+        }
+    }
+
+    // 채팅방에 접속 중인 세션들의 배열 (방송 경로용), 호출한 쪽에서 배열을 수정하면 안 된다.
+    public WebSocketSession[] members(Long roomId) {
+        WebSocketSession[] sessions = shard(roomId).rooms.get(roomId);
+        return sessions != null ? sessions : EMPTY;
+    }
+
+    // 채팅방에 접속 중인 세션 목록을 반환 (읽기 전용)
+    public List<WebSocketSession> getSessions(Long roomId) {
+        return Collections.unmodifiableList(Arrays.asList(members(roomId)));
+    }
+
+    // 세션이 채팅방에 입장해 있는지 여부
+    public boolean contains(Long roomId, WebSocketSession session) {
+        return indexOf(members(roomId), session) >= 0;
+    }
+
+    // 이 노드가 채팅방을 구독 중인지(접속 중인 세션이 있는지) 여부
+    public boolean isSubscribed(Long roomId) {
+        return members(roomId).length > 0;
+    }
+
+    // 현재 접속자가 있는 채팅방의 수
+    public int getRoomCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.rooms.size();
+        }
+        return count;
+    }
+
+    private Shard shard(Long roomId) {
+        long id = roomId;
+        int hash = (int) (id ^ (id >>> 32));
+        return shards[(hash ^ (hash >>> 16)) & mask]; // 채팅방 ID 의 상위 비트도 샤드 선택에 반영
+    }
+
+    // 한 채팅방의 세션 수는 많아야 수천 개이고 입장/퇴장 때만 찾으므로 선형 탐색
+    private static int indexOf(WebSocketSession[] sessions, WebSocketSession session) {
+        for (int i = 0; i < sessions.length; i++) {
+            if (sessions[i] == session) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 샤드 하나 : 샤드의 채팅방들은 이 객체의 락을 잡고 바꾸며, 읽기는 락 없이 한다.
+    private static final class Shard {
+        private final Map<Long, WebSocketSession[]> rooms = new ConcurrentHashMap<>();
+    }
+}
@@ -1,53 +1,90 @@
 package com.sample.chat.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.chat.config.BufferedWebSocketSession;
+import com.sample.chat.config.ChatBinaryCodec;
 import com.sample.chat.config.WebSocketHandler;
 import com.sample.chat.dto.ChatMessageDto;
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.dto.ChatPrincipal;
+import com.sample.chat.dto.RoomBroadcast;
 import com.sample.chat.entity.ChatMessage;
 import com.sample.chat.entity.ChatRoom;
-import com.sample.chat.entity.ChatRoomMember;
 import com.sample.chat.entity.Member;
-import com.sample.chat.repository.ChatMessageRepository;
-import com.sample.chat.repository.ChatRoomMemberRepository;
 import com.sample.chat.repository.ChatRoomRepository;
-import com.sample.chat.repository.MemberRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
 @Transactional(readOnly = true)
 @Service // 채팅 관련 로직을 수행
 public class ChatService {
+    private static final int MAX_HISTORY_PAGE_SIZE = 200; // 이전 채팅 로그 한 페이지의 최대 크기
     // ObjectMapper : 객체와 JSON 문자열을 서로 직렬화 및 역직렬화하기 위해 사용되는 클래스
     private final ObjectMapper objectMapper;
     private final ChatRoomRepository chatRoomRepository;
-    private final ChatMessageRepository chatMessageRepository;
-    private final MemberRepository memberRepository;
-    private final MemberService memberService;
-    private final ChatRoomMemberRepository chatRoomMemberRepository;
+    private final MessageHistoryService messageHistoryService; // 테이블(hot)과 세그먼트 파일(cold)에 나뉘어 있는 채팅 기록 조회
     private final SessionService sessionService;
+    private final ChatRoomRegistry chatRoomRegistry;
+    private final ChatMessageStore chatMessageStore;
+    private final MessageIdGenerator messageIdGenerator;
+    private final RecentMessageCache recentMessageCache;
+    private final RoomBroadcastBus roomBroadcastBus;
+    private final RoomSequencer roomSequencer;
+    private final MessageSearchIndex messageSearchIndex;
+    private final DeliveryAckTracker deliveryAckTracker;
+    private final int maxReplay; // 재연결 시 다시 보내는 최대 메시지 수, 더 많이 놓쳤으면 최근 것만 보내고 TRUNCATED 로 알린다.
+    // 방송 한 번의 이 노드 수신자 수 (이 노드에서 보낸 메시지 : local, 다른 노드에서 전달된 메시지 : remote)
+    private final DistributionSummary localFanout;
+    private final DistributionSummary remoteFanout;
 
     @Autowired
-    public ChatService(ObjectMapper objectMapper, ChatRoomRepository chatRoomRepository, ChatMessageRepository chatMessageRepository, MemberRepository memberRepository, MemberService memberService, ChatRoomMemberRepository chatRoomMemberRepository, SessionService sessionService) {
+    public ChatService(ObjectMapper objectMapper, ChatRoomRepository chatRoomRepository, MessageHistoryService messageHistoryService, SessionService sessionService, ChatRoomRegistry chatRoomRegistry,
+                       ChatMessageStore chatMessageStore, MessageIdGenerator messageIdGenerator, RecentMessageCache recentMessageCache,
+                       RoomBroadcastBus roomBroadcastBus, RoomSequencer roomSequencer, MessageSearchIndex messageSearchIndex,
+                       DeliveryAckTracker deliveryAckTracker,
+                       MeterRegistry meterRegistry, @Value("${chat.resume.max-replay:200}") int maxReplay) {
         this.objectMapper = objectMapper;
         this.chatRoomRepository = chatRoomRepository;
-        this.chatMessageRepository = chatMessageRepository;
-        this.memberRepository = memberRepository;
-        this.memberService = memberService;
-        this.chatRoomMemberRepository = chatRoomMemberRepository;
+        this.messageHistoryService = messageHistoryService;
         this.sessionService = sessionService;
+        this.chatRoomRegistry = chatRoomRegistry;
+        this.chatMessageStore = chatMessageStore;
+        this.messageIdGenerator = messageIdGenerator;
+        this.recentMessageCache = recentMessageCache;
+        this.roomBroadcastBus = roomBroadcastBus;
+        this.roomSequencer = roomSequencer;
+        this.messageSearchIndex = messageSearchIndex;
+        this.deliveryAckTracker = deliveryAckTracker;
+        this.maxReplay = maxReplay;
+        this.localFanout = fanout(meterRegistry, "local");
+        this.remoteFanout = fanout(meterRegistry, "remote");
+    }
+
+    private static DistributionSummary fanout(MeterRegistry meterRegistry, String origin) {
+        return DistributionSummary.builder("chat.broadcast.fanout").description("방송 한 번의 이 노드 수신자 수")
+                .tag("origin", origin).register(meterRegistry);
     }
 
     // [1] 채팅방 관리 메서드
@@ -76,164 +113,317 @@ public class ChatService {
         return chatRoom;
     }
 
-    // [1-4] 이전 채팅 로그를 호출
-    public List<ChatMessage> getPreviousMessages(Long roomId) {
-        return chatMessageRepository.findByChatRoom_IdWithSender(roomId);
+    // [1-4] 이전 채팅 로그를 호출, before 보다 오래된 메시지 중 가장 최근 것부터 limit 개를 반환 (before 가 없으면 가장 최근 메시지부터)
+    // 첫 페이지는 RecentMessageCache 에서 응답하고, 그보다 오래된 페이지만 데이터 베이스(오래된 메시지는 보관 계층)에서 조회한다.
+    // 이 노드가 구독하지 않는 채팅방은 다른 노드의 메시지가 캐시에 들어오지 않으므로 첫 페이지도 데이터 베이스에서 조회한다.
+    // newestFirst 가 false 이면 같은 페이지를 오래된 순으로 뒤집어서 반환한다. (기존 클라이언트가 받던 순서)
+    public List<ChatMessageHistoryDto> getPreviousMessages(Long roomId, Long before, int limit, boolean newestFirst) {
+        int size = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+        List<ChatMessageHistoryDto> page;
+        if (before != null) {
+            page = messageHistoryService.findHistory(roomId, before, size);
+        } else if (chatRoomRegistry.isSubscribed(roomId)) {
+            page = recentMessageCache.getRecent(roomId, size, count -> messageHistoryService.findHistory(roomId, Long.MAX_VALUE, count));
+        } else {
+            page = messageHistoryService.findHistory(roomId, Long.MAX_VALUE, size);
+        }
+        if (newestFirst) {
+            return page;
+        }
+        List<ChatMessageHistoryDto> ascending = new ArrayList<>(page); // 캐시가 돌려준 목록은 공유될 수 있으므로 복사한 뒤 뒤집는다.
+        Collections.reverse(ascending);
+        return ascending;
     }
 
-    // [1-5] 채팅방을 삭제
+    // [1-5] 채팅방을 삭제, 채팅방의 메시지를 먼저 지운다. (테이블은 한 번의 DELETE, 보관된 메시지는 채팅방의 디렉터리)
+    // 메모리에 남은 채팅방의 상태(최근 메시지, 순번, 검색 색인)는 트랜잭션이 커밋된 뒤에 정리한다. (롤백되면 그대로 사용)
     @Transactional
     public void removeRoom(Long roomId) {
+        messageHistoryService.removeRoom(roomId);
         chatRoomRepository.deleteById(roomId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentMessageCache.removeRoom(roomId);
+                roomSequencer.removeRoom(roomId);
+                messageSearchIndex.removeRoom(roomId);
+            }
+        });
     }
 
 
 
     // [2] 채팅 세션 관리 메서드
-    // [2-1] 채팅방에 입장한 세션을 추가하고 입장 메시지를 전송
-    @Transactional
-    public void addSessionAndHandleEnter(Long roomId, WebSocketSession session, Long memberId, ChatMessageDto chatMessageDto) {
+    // [2-1] 채팅방에 입장한 세션의 입장 메시지를 저장
+    // 채팅방의 회원 목록은 메모리의 ChatRoomRegistry 가 관리하므로(WebSocketHandler 가 등록), 채팅방이 존재하는지만 데이터 베이스에서 확인한다.
+    public void addSessionAndHandleEnter(Long roomId, WebSocketSession session, ChatMessageDto chatMessageDto) {
         ChatRoom room = findRoomById(roomId);
-        if (room != null) {
-            Member member = memberRepository.findById(memberId).orElse(null);
-            if (member != null) {
-                // 채팅방에 입장한 회원을 ChatRoomMember에 추가하기 전에 중복 여부 확인
-                ChatRoomMember existingMember = chatRoomMemberRepository.findByChatRoomAndMember(room, member);
-                if (existingMember == null) {
-                    ChatRoomMember chatRoomMember = new ChatRoomMember();
-                    chatRoomMember.setChatRoom(room);
-                    chatRoomMember.setMember(member);
-
-                    // MemberId와 사용자 이름을 세션의 속성으로 저장
-                    session.getAttributes().put("memberId", member.getId());
-                    session.getAttributes().put("memberName", member.getName()); // 새로운 라인 추가
-                    log.warn("addSessionAndHandleEnter 로그 : " + member.getId());
-                } else {
-                    log.warn("addSessionAndHandleEnter: Member already in the room.");
-
-                    // 중복된 회원이 채팅방에 이미 있으면 해당 정보로 sender를 설정
-                    chatMessageDto.setSender(existingMember.getMember().getName());
-                }
-            }
-            if (chatMessageDto.getSender() != null) {
-                chatMessageDto.setMessage(chatMessageDto.getSender() + "님이 입장했습니다.");
-                ChatMessage chatMessage = new ChatMessage();
-                chatMessage.setType(ChatMessage.MessageType.ENTER);
-                chatMessage.setMessage(chatMessageDto.getMessage());
-                chatMessage.setChatRoom(room);
-                chatMessage.setSender(memberRepository.findByName(chatMessageDto.getSender()));
-            }
-            log.debug("New session added: " + session);
+        if (room == null) {
+            // 존재하지 않는 채팅방 : 레지스트리와 세션 색인에서 제거하여 메시지를 받지도, 퇴장 기록을 남기지도 않게 한다.
+            chatRoomRegistry.leave(roomId, session);
+            sessionService.exitRoom(session, String.valueOf(roomId));
+            log.warn("존재하지 않는 채팅방 입장 요청 : {} ({})", roomId, session.getId());
+            return;
         }
+        // 회원은 연결 시점에 확인되어 세션에 저장되어 있다. (MemberHandshakeInterceptor)
+        ChatPrincipal principal = ChatPrincipal.from(session);
+        chatMessageDto.setMessage(principal.getName() + "님이 입장했습니다.");
+        record(newChatMessage(ChatMessage.MessageType.ENTER, chatMessageDto.getMessage(), room, memberRef(principal))); // 입장 메시지도 채팅 기록으로 저장
+        log.debug("New session added: " + session);
     }
 
-    // [2-2] 채팅방에서 퇴장한 세션을 제거하고 퇴장 메시지를 전송
-    @Transactional
+    // [2-2] 채팅방에서 퇴장한 세션의 퇴장 메시지를 저장하고 전송
+    // 회원 정보는 세션에 저장된 값을 사용하므로 데이터 베이스를 조회하지 않는다.
     public void removeSessionAndHandleExit(Long roomId, WebSocketSession session, ChatMessageDto chatMessageDto) {
-        ChatRoom room = findRoomById(roomId);
-        if (room != null) {
-            // 세션에서 memberId를 가져옵니다.
-            Long memberId = (Long) session.getAttributes().get("memberId");
-            Member member = memberRepository.findById(memberId).orElse(null);
-
-            if (member != null) {
-                // ChatRoomMember에서 해당 Member를 찾아서 삭제
-                ChatRoomMember chatRoomMember = chatRoomMemberRepository.findByChatRoomAndMember(room, member);
-                if (chatRoomMember != null) {
-                    chatRoomMemberRepository.delete(chatRoomMember);
-                }
+        ChatPrincipal principal = ChatPrincipal.from(session);
+        if (principal == null) {
+            log.debug("Member not found for session: " + session.getId());
+            return;
+        }
+        chatMessageDto.setMessage(principal.getName() + "님이 퇴장했습니다.");
 
-                chatMessageDto.setMessage(member.getName() + "님이 퇴장했습니다.");
+        ChatMessageHistoryDto history = record(newChatMessage(ChatMessage.MessageType.CLOSE, chatMessageDto.getMessage(),
+                roomRef(roomId), memberRef(principal)));
+        chatMessageDto.setSeq(history.getSeq());
+        sendMessageToAll(new RoomBroadcast(roomId, chatMessageDto, principal.getId(), history, null));
+        log.debug("Member removed: " + principal.getName());
+    }
 
-                ChatMessage chatMessage = new ChatMessage();
-                chatMessage.setType(ChatMessage.MessageType.CLOSE);
-                chatMessage.setMessage(chatMessageDto.getMessage());
-                chatMessage.setChatRoom(room);
-                chatMessage.setSender(member);
+    // 저장할 채팅 메시지 엔티티를 생성 (ID 와 전송 시각은 이 시점에 정해진다)
+    private ChatMessage newChatMessage(ChatMessage.MessageType type, String message, ChatRoom room, Member sender) {
+        ChatMessage chatMessage = new ChatMessage();
+        chatMessage.setId(messageIdGenerator.nextId());
+        chatMessage.setType(type);
+        chatMessage.setMessage(message);
+        chatMessage.setChatRoom(room);
+        chatMessage.setSender(sender);
+        chatMessage.setRegDate(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS)); // 데이터 베이스(datetime(6))와 같은 정밀도
+        return chatMessage;
+    }
 
-                sendMessageToAll(roomId, chatMessageDto);
-                log.debug("Member removed: " + member.getName());
-            } else {
-                log.debug("Member not found for Member ID: " + memberId);
-            }
-        }
+    // 채팅 메시지에 채팅방의 순번을 붙여 저장 큐와 채팅방의 최근 메시지 캐시에 추가하고, 캐시에 추가한 기록을 반환 (다른 노드의 캐시에도 전달)
+    // 채팅방의 이벤트 처리 스레드에서만 호출되므로, 순번은 ID 와 같은 순서로 발급된다.
+    private ChatMessageHistoryDto record(ChatMessage chatMessage) {
+        chatMessage.setSeq(roomSequencer.next(chatMessage.getChatRoom().getId()));
+        chatMessageStore.append(chatMessage);
+        Member sender = chatMessage.getSender();
+        ChatMessageHistoryDto history = new ChatMessageHistoryDto(chatMessage.getId(), chatMessage.getSeq(), chatMessage.getType(),
+                chatMessage.getMessage(), sender != null ? sender.getId() : null, sender != null ? sender.getEmail() : null,
+                sender != null ? sender.getName() : null, chatMessage.getRegDate());
+        recentMessageCache.add(chatMessage.getChatRoom().getId(), history);
+        return history;
     }
 
     // [2-3] 웹소켓 세션에 메시지를 전송
-    @Transactional
     public <T> void sendMessage(WebSocketSession session, T message) {
+        TextMessage frame = encode(message);
+        if (frame != null) {
+            sendFrame(session, frame);
+        }
+    }
+
+    // 메시지를 JSON 으로 한 번만 직렬화하여 전송용 프레임을 생성
+    // byte[] 로 생성한 TextMessage 는 바이트 배열을 그대로 보관하기 때문에, 여러 세션이 공유해도 길이 계산이나 전송 시 다시 인코딩하지 않는다.
+    public <T> TextMessage encode(T message) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsBytes(message));
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    // 세션 하나에 메시지를 세션의 형식(JSON, 바이너리)으로 전송
+    private void sendDirect(WebSocketSession session, ChatMessageDto message, long memberId) {
+        WebSocketMessage<?> frame = ChatBinaryCodec.isBinary(session)
+                ? new BinaryMessage(ChatBinaryCodec.encode(message, memberId))
+                : encode(message);
+        if (frame != null) {
+            sendFrame(session, frame);
+        }
+    }
+
+    private void sendFrame(WebSocketSession session, WebSocketMessage<?> frame) {
+        sendFrame(session, frame, null);
+    }
+
+    // coalesceKey 가 있으면 전송 큐에서 아직 보내지 않은 같은 키의 메시지를 교체 (BufferedWebSocketSession)
+    private void sendFrame(WebSocketSession session, WebSocketMessage<?> frame, String coalesceKey) {
         try {
-            String messageStr = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(messageStr));
+            if (coalesceKey != null && session instanceof BufferedWebSocketSession) {
+                ((BufferedWebSocketSession) session).sendMessage(frame, coalesceKey);
+                return;
+            }
+            session.sendMessage(frame);
         } catch (IOException e) {
             log.error(e.getMessage(), e);
         }
     }
 
     // [2-4] 각각 다른 세션을 가지고 있는, 채팅방에 있는 모든 회원에게 메시지를 전송
-    @Transactional
+    // 이 노드의 세션에는 직접 전송하고, 같은 채팅방의 회원이 접속해 있는 다른 노드에는 메시지 버스(RoomBroadcastBus)로 전달한다.
     public void sendMessageToAll(Long roomId, ChatMessageDto messageDto) {
-        ChatRoom room = findRoomById(roomId);
-        if (room != null) {
-            // ChatRoomMember에서 해당 ChatRoom에 속한 모든 Member를 찾는다.
-            List<ChatRoomMember> chatRoomMembers = chatRoomMemberRepository.findByChatRoom(room);
-            for (ChatRoomMember chatRoomMember : chatRoomMembers) {
-                Member member = chatRoomMember.getMember();
-                WebSocketSession session = sessionService.findSessionByMemberId(member.getId());
-                if (session != null) {
-                    sendMessage(session, messageDto); // 반복 수행
-                    log.warn("리액트로 보내는 메시지 분석 : " + messageDto.getSender());
+        sendMessageToAll(RoomBroadcast.of(roomId, messageDto, 0L)); // 보낸 회원이 없는 메시지 (바이너리 프레임의 회원 ID 는 0)
+    }
+
+    public void sendMessageToAll(RoomBroadcast broadcast) {
+        deliverLocally(broadcast, localFanout);
+        roomBroadcastBus.publish(broadcast);
+    }
+
+    // 이 노드에 접속한 채팅방의 세션들에 메시지를 전송
+    // 수신자는 메모리 상의 ChatRoomRegistry 에서 바로 결정하므로, 전송 과정에서 데이터 베이스를 조회하지 않는다.
+    // 메시지는 방송 한 번에 형식(JSON, 바이너리)별로 한 번만 직렬화되고, 같은 형식의 수신자들은 같은 인코딩 결과를 공유한다.
+    private void deliverLocally(RoomBroadcast broadcast, DistributionSummary fanout) {
+        WebSocketSession[] sessions = chatRoomRegistry.members(broadcast.getRoomId());
+        fanout.record(sessions.length);
+        if (sessions.length == 0) {
+            return;
+        }
+        // 각 형식은 해당 형식을 사용하는 수신자가 있을 때 처음 한 번만 인코딩
+        TextMessage textFrame = null;
+        byte[] binaryFrame = null;
+        for (WebSocketSession session : sessions) {
+            if (!session.isOpen()) {
+                continue;
+            }
+            if (ChatBinaryCodec.isBinary(session)) {
+                if (binaryFrame == null) {
+                    binaryFrame = ChatBinaryCodec.encode(broadcast.getMessage(), broadcast.getMemberId());
+                }
+                // 전송 시 ByteBuffer 의 위치가 바뀔 수 있으므로, 바이트 배열은 공유하고 BinaryMessage(ByteBuffer)는 수신자마다 생성
+                sendFrame(session, new BinaryMessage(binaryFrame), broadcast.getCoalesceKey());
+            } else {
+                if (textFrame == null) {
+                    textFrame = encode(broadcast.getMessage());
+                    if (textFrame == null) {
+                        return;
+                    }
                 }
+                sendFrame(session, textFrame, broadcast.getCoalesceKey()); // 반복 수행
             }
         }
     }
 
     // [3] 이벤트 핸들러 관련 메서드
+    // 이벤트는 RoomEventDispatcher 가 채팅방별 이벤트 처리 스레드에서 발행하므로, 리스너도 해당 스레드에서 순서대로 실행된다.
     // [3-1] 새로운 세션이 채팅방에 입장했을 때의 이벤트를 처리
-    @Transactional
+    // 채팅방 조회는 리포지토리가 자체 트랜잭션으로 수행하므로, 이벤트 처리 동안 트랜잭션(데이터 베이스 커넥션)을 붙잡지 않는다.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @EventListener // 이벤트 처리
-    @Async
     public void handleSessionEnteredEvent(WebSocketHandler.SessionEnteredEvent event) {
         WebSocketSession session = event.getSession();
         ChatMessageDto chatMessage = event.getChatMessage();
-        String roomId = chatMessage.getRoomId();
-        String memberEmail = (String) session.getAttributes().get("memberEmail");
-
-        Member member = memberService.findByEmail(memberEmail);
-        Long memberId = member.getId();
-        log.warn("로그 찍어보기" + memberId + ", 룸 아이디는 " + roomId);
-        addSessionAndHandleEnter(Long.valueOf(roomId), session, memberId, chatMessage);
+        addSessionAndHandleEnter(Long.valueOf(chatMessage.getRoomId()), session, chatMessage);
     }
 
     // [3-2] 채팅 메시지가 수신되었을 때의 이벤트를 처리
-    @Transactional
+    // 발신자는 세션에 저장된 회원 정보를 사용하고 저장은 ChatMessageStore 가 모아서 하기 때문에, 메시지 처리 중에는 데이터 베이스를 사용하지 않는다.
+    // 따라서 트랜잭션(데이터 베이스 커넥션)도 시작하지 않는다.
+    // 입장 처리(ENTER, RESUME)가 같은 스레드에서 먼저 끝나므로, 레지스트리에 없는 세션(존재하지 않는 채팅방, 이미 퇴장)의 메시지는 버린다.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @EventListener
-    @Async
     public void handleMessageReceivedEvent(WebSocketHandler.MessageReceivedEvent event) {
         ChatMessageDto chatMessage = event.getChatMessage();
-        String roomId = chatMessage.getRoomId();
+        Long roomId = Long.valueOf(chatMessage.getRoomId());
+        if (!chatRoomRegistry.contains(roomId, event.getSession())) {
+            log.warn("채팅방에 입장해 있지 않은 세션의 메시지를 버림 : {} ({})", roomId, event.getSession().getId());
+            return;
+        }
+        ChatPrincipal sender = ChatPrincipal.from(event.getSession());
 
-        ChatMessage chatMessageEntity = new ChatMessage();
-        chatMessageEntity.setType(ChatMessage.MessageType.valueOf(chatMessage.getType().name()));
-        chatMessageEntity.setMessage(chatMessage.getMessage());
-        chatMessageEntity.setChatRoom(findRoomById(Long.valueOf(roomId)));
-
-        String senderEmail = chatMessage.getSender();
-        log.warn("handleMessageReceivedEvent senderName : " + senderEmail);
-        Optional<Member> senderOpt = memberRepository.findByEmail(senderEmail);
-        if (senderOpt.isPresent()) {
-            Member sender = senderOpt.get();
-            chatMessageEntity.setSender(sender);
-        } else {
-            log.error("handleMessageReceivedEvent sender = null 에러 발생!");
+        ChatMessage chatMessageEntity = newChatMessage(ChatMessage.MessageType.valueOf(chatMessage.getType().name()),
+                chatMessage.getMessage(), roomRef(roomId), memberRef(sender));
+
+        // 저장 큐에 먼저 넣고(큐가 가득 찬 경우에만 대기) 바로 방송한다. 실제 INSERT 는 ChatMessageStore 가 모아서 수행한다.
+        ChatMessageHistoryDto history = record(chatMessageEntity);
+        chatMessage.setSeq(history.getSeq());
+        sendMessageToAll(new RoomBroadcast(roomId, chatMessage, sender.getId(), history, null));
+    }
+
+    /*
+    재연결한 세션이 채팅방에 다시 입장하며 놓친 메시지를 요청했을 때의 이벤트를 처리
+    클라이언트가 보낸 순번(없으면 ACK 로 기록된 순번) 이후의 메시지를 최근 메시지 캐시에서, 캐시에 없으면 데이터 베이스에서 읽어 오래된 것부터 보낸 뒤,
+    RESUME 응답을 보내고 나서 세션을 레지스트리에 등록한다.
+    이 채팅방의 메시지는 모두 같은 이벤트 처리 스레드에서 방송되므로, 다시 보낸 메시지와 이후의 실시간 메시지 사이에 빠지거나 겹치는 메시지가 없다.
+    */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @EventListener
+    public void handleSessionResumedEvent(WebSocketHandler.SessionResumedEvent event) {
+        WebSocketSession session = event.getSession();
+        ChatMessageDto request = event.getChatMessage();
+        Long roomId = Long.valueOf(request.getRoomId());
+        if (findRoomById(roomId) == null) {
+            // 존재하지 않는 채팅방 : 세션 색인에서 제거하고 레지스트리에 등록하지 않는다. (메시지를 보낼 수 없음)
+            sessionService.exitRoom(session, request.getRoomId());
+            log.warn("존재하지 않는 채팅방 재입장 요청 : {} ({})", roomId, session.getId());
+            return;
+        }
+        String requested = request.getMessage();
+        Long afterSeq = requested != null && !requested.isBlank()
+                ? Long.valueOf(requested.trim())
+                : deliveryAckTracker.lastAcked(ChatPrincipal.from(session).getId(), roomId);
+        long after = afterSeq != null ? afterSeq : 0L; // 마지막으로 받은 순번을 알 수 없으면 최근 메시지부터 보낸다.
+
+        long lastSeq = roomSequencer.current(roomId);
+        boolean truncated = false;
+        if (after < lastSeq) {
+            // 최대 개수보다 하나 더 읽어서 잘렸는지 확인
+            // 이 노드가 구독하지 않던 채팅방(이 세션이 첫 세션)이면 캐시에 다른 노드의 메시지가 빠져 있으므로 데이터 베이스에서 읽는다.
+            List<ChatMessageHistoryDto> missed = chatRoomRegistry.isSubscribed(roomId)
+                    ? recentMessageCache.getAfter(roomId, after, maxReplay + 1, count -> messageHistoryService.findAfterSeq(roomId, after, count))
+                    : messageHistoryService.findAfterSeq(roomId, after, maxReplay + 1);
+            truncated = missed.size() > maxReplay;
+            for (int i = Math.min(missed.size(), maxReplay) - 1; i >= 0; i--) {
+                ChatMessageHistoryDto history = missed.get(i);
+                ChatMessageDto message = new ChatMessageDto(ChatMessageDto.MessageType.valueOf(history.getType().name()),
+                        request.getRoomId(), history.getSenderEmail(), history.getText(), history.getSeq());
+                sendDirect(session, message, history.getSenderId() != null ? history.getSenderId() : 0L);
+            }
+        }
+        // TRUNCATED 이면 클라이언트는 받은 가장 오래된 메시지의 ID 를 before 로 이전 채팅 로그 API 를 호출하여 나머지를 채운다.
+        sendDirect(session, new ChatMessageDto(ChatMessageDto.MessageType.RESUME, request.getRoomId(), null,
+                truncated ? "TRUNCATED" : "OK", lastSeq), 0L);
+
+        chatRoomRegistry.join(roomId, session);
+        if (!session.isOpen()) {
+            chatRoomRegistry.leave(roomId, session); // 처리하는 사이에 연결이 끊긴 경우 (연결 종료 처리가 먼저 끝났을 수 있음)
+        }
+    }
+
+    // 다른 노드에서 메시지 버스로 전달된 메시지를 이 노드의 세션들에 전송 (채팅방의 이벤트 처리 스레드에서 실행)
+    // 저장은 메시지를 받은 노드가 하므로, 이 노드의 최근 메시지 캐시와 검색 색인에만 추가한다.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @EventListener
+    public void handleRemoteBroadcastEvent(RemoteBroadcastEvent event) {
+        RoomBroadcast broadcast = event.getBroadcast();
+        if (broadcast.getHistory() != null) {
+            roomSequencer.observe(broadcast.getRoomId(), broadcast.getHistory().getSeq());
+            recentMessageCache.add(broadcast.getRoomId(), broadcast.getHistory());
+            messageSearchIndex.add(broadcast.getRoomId(), broadcast.getHistory());
         }
-        sendMessageToAll(Long.valueOf(roomId), chatMessage);
+        deliverLocally(broadcast, remoteFanout);
+    }
+
+    // 저장에는 채팅방과 회원의 ID 만 필요하므로(ChatMessageStore 는 JDBC 로 ID 만 기록), 조회 없이 값만 채운 객체를 사용
+    private static ChatRoom roomRef(Long roomId) {
+        ChatRoom chatRoom = new ChatRoom();
+        chatRoom.setId(roomId);
+        return chatRoom;
+    }
+
+    private static Member memberRef(ChatPrincipal principal) {
+        Member member = new Member();
+        member.setId(principal.getId());
+        member.setEmail(principal.getEmail());
+        member.setName(principal.getName());
+        member.setImage(principal.getImage());
+        return member;
     }
 
     // [3-3] 세션이 채탕방에서 퇴장했을 때의 이벤트를 처리
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @EventListener
-    @Async
     public void handleSessionExitedEvent(WebSocketHandler.SessionExitedEvent event) {
         WebSocketSession session = event.getSession();
         ChatMessageDto chatMessage = event.getChatMessage();
@@ -243,9 +433,8 @@ public class ChatService {
     }
 
     // [3-3] 세션이 연결이 끊어졌을 때 이벤트를 처리
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @EventListener
-    @Async
     public void handleSessionDisconnectedEvent(WebSocketHandler.SessionDisconnectedEvent event) {
         WebSocketSession session = event.getSession();
         ChatMessageDto chatMessage = event.getChatMessage();
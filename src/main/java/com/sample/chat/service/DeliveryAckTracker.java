@@ -0,0 +1,71 @@
+package com.sample.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/*
+클라이언트가 ACK 로 알려준 "채팅방에서 마지막으로 받은 메시지의 순번"을 회원별로 기억하는 클래스이다.
+연결이 끊긴 뒤 다시 연결한 클라이언트가 RESUME 에 순번을 보내지 않으면(예 : 페이지를 새로 연 경우) 여기 기록된 순번 이후의 메시지를 다시 보낸다.
+세션이 아닌 회원 기준으로 저장하므로 연결이 끊겨도 남아 있으며, 크기와 유효 시간이 제한된 캐시에 보관한다.
+*/
+@Component
+public class DeliveryAckTracker {
+    private final Cache<Key, Long> acked;
+
+    @Autowired
+    public DeliveryAckTracker(MeterRegistry meterRegistry,
+                              @Value("${chat.resume.ack-maximum-size:100000}") long maximumSize,
+                              @Value("${chat.resume.ack-ttl-seconds:600}") long ttlSeconds) {
+        this.acked = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, acked, "chat.acks");
+    }
+
+    // 받은 순번을 기록, 순서가 바뀌어 도착한 더 작은 순번으로 되돌리지 않는다.
+    public void ack(Long memberId, Long roomId, long seq) {
+        acked.asMap().merge(new Key(memberId, roomId), seq, Math::max);
+    }
+
+    // 회원이 채팅방에서 마지막으로 받은 순번 (기록이 없으면 null)
+    public Long lastAcked(Long memberId, Long roomId) {
+        return acked.getIfPresent(new Key(memberId, roomId));
+    }
+
+    private static final class Key {
+        private final Long memberId;
+        private final Long roomId;
+
+        private Key(Long memberId, Long roomId) {
+            this.memberId = memberId;
+            this.roomId = roomId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return memberId.equals(key.memberId) && roomId.equals(key.roomId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(memberId, roomId);
+        }
+    }
+}
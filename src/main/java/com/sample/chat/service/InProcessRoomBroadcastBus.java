@@ -0,0 +1,50 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.RoomBroadcast;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/*
+같은 JVM 안의 노드들을 Hub 로 연결하는 RoomBroadcastBus 구현이다.
+서버가 한 대이면 Hub 에 노드가 하나뿐이므로 publish 는 아무 일도 하지 않으며(chat.bus.type=in-process, 기본값),
+테스트에서는 하나의 Hub 에 여러 노드를 연결하여 노드 간 전달을 확인할 수 있다.
+메시지는 발행한 스레드에서 바로 전달되므로 묶어 보내거나(batching) 교체할(coalescing) 대기열이 없다.
+*/
+public class InProcessRoomBroadcastBus implements RoomBroadcastBus {
+    // 같은 JVM 안의 노드 목록 (노드 추가는 시작할 때만 일어나므로 CopyOnWriteArraySet 사용)
+    public static final class Hub {
+        private final Set<InProcessRoomBroadcastBus> nodes = new CopyOnWriteArraySet<>();
+    }
+
+    private final Hub hub;
+    private final Consumer<RoomBroadcast> receiver; // 다른 노드에서 온 메시지를 처리
+    private final Set<Long> subscribedRoomIds = ConcurrentHashMap.newKeySet();
+
+    public InProcessRoomBroadcastBus(Hub hub, Consumer<RoomBroadcast> receiver) {
+        this.hub = hub;
+        this.receiver = receiver;
+        hub.nodes.add(this);
+    }
+
+    @Override
+    public void publish(RoomBroadcast broadcast) {
+        for (InProcessRoomBroadcastBus node : hub.nodes) {
+            if (node != this && node.subscribedRoomIds.contains(broadcast.getRoomId())) {
+                node.receiver.accept(broadcast);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Long roomId) {
+        subscribedRoomIds.add(roomId);
+    }
+
+    @Override
+    public void unsubscribe(Long roomId) {
+        subscribedRoomIds.remove(roomId);
+    }
+}
@@ -1,14 +1,21 @@
 package com.sample.chat.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.sample.chat.dto.MemberDto;
 import com.sample.chat.entity.Member;
 import com.sample.chat.repository.MemberRepository;
+import com.sample.chat.utils.ChatToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -19,13 +26,42 @@ import java.util.Optional;
 public class MemberService {
     private final MemberRepository memberRepository; // 객체의 불변성을 위해 final 설정
 
+    // 채팅 메시지마다 보낸 회원을 조회하기 때문에, 회원 정보를 이메일과 ID 두 가지 키로 메모리에 캐시한다.
+    // 크기와 유효 시간이 제한되어 있으며, 회원 정보를 수정하거나 삭제하면 두 캐시에서 모두 제거한다.
+    // 캐시된 엔티티는 여러 스레드가 공유하므로 수정하지 않고 조회 용도로만 사용한다.
+    private final Cache<String, Member> memberByEmailCache;
+    private final Cache<Long, Member> memberByIdCache;
+
+    // 로그인한 회원에게 웹소켓 연결 토큰을 발급하기 위한 객체와 토큰의 유효 시간
+    private final ChatToken chatToken;
+    private final long tokenTtlMillis;
+
     @Autowired // 단일 생성자만을 가질때는 생략 가능
-    public MemberService(MemberRepository memberRepository) {
+    public MemberService(MemberRepository memberRepository, MeterRegistry meterRegistry,
+                         @Value("${chat.member-cache.maximum-size:10000}") long maximumSize,
+                         @Value("${chat.member-cache.ttl-seconds:600}") long ttlSeconds,
+                         ChatToken chatToken,
+                         @Value("${chat.auth.token-ttl-ms:43200000}") long tokenTtlMillis) {
         this.memberRepository = memberRepository;
+        this.chatToken = chatToken;
+        this.tokenTtlMillis = tokenTtlMillis;
+        this.memberByEmailCache = newCache(maximumSize, ttlSeconds);
+        this.memberByIdCache = newCache(maximumSize, ttlSeconds);
+        // 적중률 등의 통계를 cache.gets{result=hit|miss}, cache.evictions 등의 지표로 노출
+        CaffeineCacheMetrics.monitor(meterRegistry, memberByEmailCache, "members.byEmail");
+        CaffeineCacheMetrics.monitor(meterRegistry, memberByIdCache, "members.byId");
     }
     // 위와 같이 선언하면, 스프링 컨테이너가 Service 객체를 생성 시에 Repository 타입의 Bean을 찾아서 주입
     // 만약 Repository Bean이 등록되어있지 않으면 NoSuchBeanDefinitionException이 발생
 
+    private static <K> Cache<K, Member> newCache(long maximumSize, long ttlSeconds) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
     // 회원 가입 여부 확인
     public boolean isMember(String email) {
         return memberRepository.existsByEmail(email);
@@ -121,6 +157,7 @@ public class MemberService {
             member.setName(memberDto.getName());
             member.setImage(memberDto.getImage());
             memberRepository.save(member);
+            evictMember(member);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -135,6 +172,7 @@ public class MemberService {
                     () -> new RuntimeException("해당 회원이 존재하지 않습니다.")
             );
             memberRepository.delete(member);
+            evictMember(member);
             return true; // 회원이 존재하면 true 반환
         } catch (RuntimeException e) {
             return false; // 회원이 존재하지 않으면 false 반환
@@ -149,9 +187,45 @@ public class MemberService {
         return member.isPresent();
     }
 
+    // 이메일과 비밀번호가 맞으면 웹소켓 연결 토큰을 발급 (/ws/chat?token=...), 틀리면 빈 값
+    public Optional<String> issueChatToken(String email, String password) {
+        return memberRepository.findByEmailAndPassword(email, password)
+                .map(member -> chatToken.issue(member.getId(), System.currentTimeMillis() + tokenTtlMillis));
+    }
+
     public Member findByEmail(String email) {
-        return memberRepository.findByEmail(email)
+        return findMemberByEmail(email)
                 .orElseThrow(() -> new NoSuchElementException("No member found with email: " + email));
     }
+
+    // 이메일로 회원 조회 (캐시에 없을 때만 데이터 베이스를 조회, 존재하지 않는 회원은 캐시하지 않음)
+    public Optional<Member> findMemberByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        Member member = memberByEmailCache.get(email, key -> memberRepository.findByEmail(key).orElse(null));
+        if (member != null) {
+            memberByIdCache.put(member.getId(), member);
+        }
+        return Optional.ofNullable(member);
+    }
+
+    // ID 로 회원 조회 (캐시에 없을 때만 데이터 베이스를 조회, 존재하지 않는 회원은 캐시하지 않음)
+    public Optional<Member> findMemberById(Long memberId) {
+        if (memberId == null) {
+            return Optional.empty();
+        }
+        Member member = memberByIdCache.get(memberId, key -> memberRepository.findById(key).orElse(null));
+        if (member != null) {
+            memberByEmailCache.put(member.getEmail(), member);
+        }
+        return Optional.ofNullable(member);
+    }
+
+    // 회원 정보가 바뀌었을 때 두 캐시에서 모두 제거
+    private void evictMember(Member member) {
+        memberByEmailCache.invalidate(member.getEmail());
+        memberByIdCache.invalidate(member.getId());
+    }
 }
 
@@ -0,0 +1,92 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.repository.ChatMessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+채팅 기록을 두 계층에서 이어서 조회하는 클래스이다.
+ID 가 watermark 이상인 최근 메시지는 chat_message 테이블(hot)에서, 그보다 오래된 메시지는 세그먼트 파일(cold, ChatMessageArchive)에서 읽는다.
+최신순 조회는 테이블에서 먼저 읽고, 한 페이지를 채우지 못하면 나머지를 보관 계층에서 이어서 읽으므로 클라이언트는 두 계층을 구분하지 않는다.
+(테이블 조회에는 항상 ID >= watermark 조건을 붙여서, 보관한 뒤 아직 지우지 않은 행이 보관된 메시지와 겹치지 않게 한다)
+*/
+@Service
+@Transactional(readOnly = true)
+public class MessageHistoryService {
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageArchive chatMessageArchive;
+
+    @Autowired
+    public MessageHistoryService(ChatMessageRepository chatMessageRepository, ChatMessageArchive chatMessageArchive) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatMessageArchive = chatMessageArchive;
+    }
+
+    // before 보다 ID 가 작은 메시지를 최신순으로 size 개 조회
+    public List<ChatMessageHistoryDto> findHistory(Long roomId, long before, int size) {
+        long watermark = chatMessageArchive.watermark();
+        List<ChatMessageHistoryDto> messages = new ArrayList<>(size);
+        if (before > watermark) {
+            messages.addAll(chatMessageRepository.findHistory(roomId, watermark, before, PageRequest.of(0, size)));
+        }
+        if (messages.size() < size) {
+            messages.addAll(chatMessageArchive.findBefore(roomId, Math.min(before, watermark), size - messages.size()));
+        }
+        return messages;
+    }
+
+    // 순번이 after 보다 큰 메시지 중 최근 것부터 size 개 조회 (재연결한 클라이언트가 놓친 메시지)
+    public List<ChatMessageHistoryDto> findAfterSeq(Long roomId, long after, int size) {
+        List<ChatMessageHistoryDto> messages = new ArrayList<>(
+                chatMessageRepository.findAfterSeq(roomId, chatMessageArchive.watermark(), after, PageRequest.of(0, size)));
+        if (messages.size() < size) {
+            messages.addAll(chatMessageArchive.findAfterSeq(roomId, after, size - messages.size()));
+        }
+        return messages;
+    }
+
+    // ID 로 메시지들을 조회 (순서는 보장하지 않으며, 없는 ID 는 결과에서 빠진다)
+    public List<ChatMessageHistoryDto> findByIds(Long roomId, Collection<Long> ids) {
+        long watermark = chatMessageArchive.watermark();
+        List<Long> hot = new ArrayList<>(ids.size());
+        List<Long> cold = new ArrayList<>();
+        for (Long id : ids) {
+            (id >= watermark ? hot : cold).add(id);
+        }
+        List<ChatMessageHistoryDto> messages = new ArrayList<>(ids.size());
+        if (!hot.isEmpty()) {
+            messages.addAll(chatMessageRepository.findHistoryByIds(roomId, hot));
+        }
+        if (!cold.isEmpty()) {
+            messages.addAll(chatMessageArchive.findByIds(roomId, cold));
+        }
+        return messages;
+    }
+
+    // 채팅방의 마지막 순번, 테이블에 없으면 (모두 보관됨) 보관 계층에서 찾는다. (메시지가 없으면 null)
+    public Long findMaxSeq(Long roomId) {
+        Long max = chatMessageRepository.findMaxSeq(roomId);
+        return max != null ? max : chatMessageArchive.findMaxSeq(roomId);
+    }
+
+    // 채팅방의 메시지를 두 계층에서 모두 삭제, 보관 계층의 파일은 트랜잭션이 커밋된 뒤에 지운다.
+    @Transactional
+    public void removeRoom(Long roomId) {
+        chatMessageRepository.deleteByRoomId(roomId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                chatMessageArchive.removeRoom(roomId);
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package com.sample.chat.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+채팅 메시지의 ID 를 데이터 베이스가 아닌 애플리케이션에서 발급하는 클래스이다.
+[밀리초 타임스탬프 41비트][노드 ID 10비트][같은 밀리초 안의 순번 12비트] 로 구성되어 시간 순서대로 증가하기 때문에,
+메시지를 저장하기 전(방송 시점)에 ID 가 정해지고, ID 순서가 곧 메시지의 시간 순서가 된다.
+(ID 를 받기 위해 데이터 베이스에 다녀올 필요가 없으므로 INSERT 를 JDBC 배치로 모아서 보낼 수 있다.)
+*/
+@Component
+public class MessageIdGenerator {
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    private final long nodeId;
+    private long lastTimestamp = -1L;
+    private long sequence;
+
+    public MessageIdGenerator(@Value("${chat.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("chat.node-id 는 0 ~ " + MAX_NODE_ID + " 사이여야 합니다 : " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public synchronized long nextId() {
+        long now = System.currentTimeMillis();
+        if (now < lastTimestamp) {
+            now = lastTimestamp; // 시스템 시계가 뒤로 돌아간 경우에도 ID 가 감소하지 않도록 마지막 시각을 사용
+        }
+        if (now == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                now = lastTimestamp + 1; // 같은 밀리초의 순번을 모두 사용하면 다음 밀리초의 값을 미리 사용
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = now;
+        return ((now - EPOCH) << TIMESTAMP_SHIFT) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    // 주어진 시각 이후에 발급되는 ID 의 최솟값 (시간 범위를 ID 범위로 바꿔서 조회할 때 사용)
+    public static long minIdAt(long epochMillis) {
+        return (epochMillis - EPOCH) << TIMESTAMP_SHIFT;
+    }
+
+    // ID 가 발급된 시각 (epoch milliseconds)
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+}
@@ -0,0 +1,517 @@
+package com.sample.chat.service;
+
+import com.sample.chat.config.RoomEventDispatcher;
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.entity.ChatMessage;
+import com.sample.chat.entity.ChatRoom;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+채팅 메시지 검색을 위한 채팅방별 역색인(inverted index)이다.
+색인어(SearchTokenizer) -> 그 색인어가 들어있는 메시지 목록(postings)을 메모리에 두고, 검색어의 모든 색인어가 들어있는 메시지를 BM25 점수 순으로 찾는다.
+따라서 chat_message 테이블을 LIKE '%검색어%' 로 전체 조회하지 않는다.
+
+1. 메시지는 지연 저장(ChatMessageStore)이 데이터 베이스에 저장한 직후 색인된다. (TALK 메시지만, 저장에 실패한 메시지는 색인하지 않음)
+2. 색인한 내용은 채팅방별 파일(room-{roomId}.idx)의 끝에 덧붙이고, 배치마다 마지막으로 색인한 메시지 ID 를 checkpoint 파일에 기록한다.
+3. 서버가 다시 시작되면 파일을 읽어 메모리의 색인을 다시 만들고, checkpoint 이후(1 분 전부터)에 저장된 메시지만 테이블에서 읽어 색인한다.
+   색인 디렉터리가 없으면 (처음 실행) 테이블 전체를 한 번 색인한다.
+
+메시지는 ID 순서대로 도착하지 않을 수 있다. (데이터 베이스 장애로 저장을 재시도한 메시지, 다른 서버가 저장한 메시지)
+그래서 채팅방마다 색인한 메시지 ID 를 정렬된 배열로 두고, 이미 있는 ID 만 무시하며 ID 가 더 작은 메시지도 색인한다.
+checkpoint 는 색인한 메시지 ID 의 최댓값만 기록하므로, 재시작할 때 checkpoint 1 분 전보다 먼저 저장된 메시지는 다시 읽지 않는다.
+
+chat.bus.type=tcp 로 여러 서버를 사용하면 다른 서버가 저장한 메시지는 이 서버의 저장 큐를 거치지 않는다.
+그래서 이 서버가 구독 중인 채팅방의 메시지는 메시지 버스로 받을 때 색인하고(ChatService.handleRemoteBroadcastEvent),
+구독하지 않는 채팅방의 메시지는 주기적으로(chat.search.catch-up-interval-ms) 이전 확인 시각 1 분 전부터 저장된 메시지를 테이블에서 읽어 색인한다.
+메시지 버스로 받은 메시지는 아직 저장되기 전일 수 있으며, 저장에 실패한 메시지는 검색 결과를 조회할 때 걸러진다. (MessageSearchService)
+*/
+@Slf4j
+@Component
+public class MessageSearchIndex implements SmartLifecycle {
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String ROOM_FILE_PREFIX = "room-";
+    private static final String ROOM_FILE_SUFFIX = ".idx";
+    private static final long CATCH_UP_WINDOW_MS = TimeUnit.MINUTES.toMillis(1); // 저장 큐에서 ID 순서가 뒤바뀔 수 있는 시간보다 충분히 길게
+    private static final String CATCH_UP_SQL = "SELECT message_id, room_id, message FROM chat_message " +
+            "WHERE message_id > ? AND type = ? ORDER BY message_id LIMIT ?";
+    // BM25 의 매개 변수 (일반적으로 사용하는 값)
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path directory;
+    private final int catchUpBatchSize;
+    private final boolean catchUpPeriodically; // 다른 서버가 저장한 메시지를 주기적으로 테이블에서 색인할지 여부
+    private long lastCatchUpAt; // 마지막으로 테이블을 확인하기 시작한 시각 (시작할 때와 주기적인 확인에서만 사용)
+    private final Map<Long, RoomIndex> rooms = new ConcurrentHashMap<>();
+    private final Counter indexedCounter;
+    private long checkpoint = Long.MIN_VALUE; // 기록한 checkpoint (저장 스레드와 시작할 때만 사용)
+    private volatile boolean running;
+
+    @Autowired
+    public MessageSearchIndex(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                              @Value("${chat.search.index-dir:./data/search-index}") String directory,
+                              @Value("${chat.search.catch-up-batch-size:1000}") int catchUpBatchSize,
+                              @Value("${chat.bus.type:in-process}") String busType) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.directory = Paths.get(directory);
+        this.catchUpBatchSize = catchUpBatchSize;
+        this.catchUpPeriodically = "tcp".equals(busType);
+        this.indexedCounter = Counter.builder("chat.search.indexed").description("색인한 메시지 수").register(meterRegistry);
+        Gauge.builder("chat.search.rooms", rooms, Map::size).description("색인이 있는 채팅방 수").register(meterRegistry);
+    }
+
+    /*
+    데이터 베이스에 저장된 메시지들을 색인하고 파일에 기록한 뒤, 새로 색인한 메시지 수를 반환한다. (ChatMessageStore 의 저장 스레드에서 배치마다 호출)
+    파일 기록에 실패해도 메모리의 색인은 유지되며, 다음에 다시 시작할 때 checkpoint 이후의 메시지를 테이블에서 다시 색인한다.
+    */
+    public synchronized int add(Collection<ChatMessage> messages) {
+        Map<Long, ByteArrayOutputStream> appends = new LinkedHashMap<>();
+        long maxId = Long.MIN_VALUE;
+        int added = 0;
+        for (ChatMessage message : messages) {
+            maxId = Math.max(maxId, message.getId());
+            if (message.getType() != ChatMessage.MessageType.TALK) {
+                continue;
+            }
+            Long roomId = message.getChatRoom().getId();
+            Map<String, Integer> terms = SearchTokenizer.termFrequencies(message.getMessage());
+            if (add(roomId, message.getId(), terms)) {
+                added++;
+                writeRecord(appends.computeIfAbsent(roomId, id -> new ByteArrayOutputStream()), message.getId(), terms);
+            }
+        }
+        if (maxId == Long.MIN_VALUE) {
+            return 0;
+        }
+        try {
+            for (Map.Entry<Long, ByteArrayOutputStream> append : appends.entrySet()) {
+                try (OutputStream out = Files.newOutputStream(roomFile(append.getKey()),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    append.getValue().writeTo(out);
+                }
+            }
+            if (maxId > checkpoint) {
+                writeCheckpoint(maxId); // 늦게 저장된 메시지의 배치로 checkpoint 가 뒤로 가지 않게 한다.
+                checkpoint = maxId;
+            }
+        } catch (IOException e) {
+            log.error("검색 색인 파일 기록 실패 (재시작 시 다시 색인) : {}", e.getMessage());
+        }
+        return added;
+    }
+
+    // 다른 서버가 메시지 버스로 보낸 메시지를 색인 (채팅방의 이벤트 처리 스레드에서 호출)
+    public int add(Long roomId, ChatMessageHistoryDto history) {
+        ChatMessage message = new ChatMessage();
+        message.setId(history.getId());
+        ChatRoom room = new ChatRoom();
+        room.setId(roomId);
+        message.setChatRoom(room);
+        message.setType(history.getType());
+        message.setMessage(history.getText());
+        return add(Collections.singletonList(message));
+    }
+
+    // 삭제된 채팅방의 색인과 파일을 제거 (파일에 덧붙이는 중인 배치와 겹치지 않도록 add 와 같은 락을 사용)
+    public synchronized void removeRoom(Long roomId) {
+        rooms.remove(roomId);
+        try {
+            Files.deleteIfExists(roomFile(roomId));
+        } catch (IOException e) {
+            log.error("채팅방 {} 의 검색 색인 파일 삭제 실패 : {}", roomId, e.getMessage());
+        }
+    }
+
+    /*
+    채팅방에서 검색어의 모든 색인어가 들어있는 메시지를 점수가 높은 순(같으면 최신순)으로 offset 번째부터 limit 개 찾는다.
+    검색어에 색인어가 없으면 (기호만 있는 경우 등) 결과가 없다.
+    */
+    public Hits search(Long roomId, String query, int offset, int limit) {
+        RoomIndex room = rooms.get(roomId);
+        Set<String> terms = SearchTokenizer.queryTerms(query);
+        if (room == null || terms.isEmpty()) {
+            return Hits.EMPTY;
+        }
+        return room.search(terms, offset, limit);
+    }
+
+    private boolean add(Long roomId, long messageId, Map<String, Integer> terms) {
+        if (terms.isEmpty()) {
+            return false;
+        }
+        boolean added = rooms.computeIfAbsent(roomId, id -> new RoomIndex()).add(messageId, terms);
+        if (added) {
+            indexedCounter.increment();
+        }
+        return added;
+    }
+
+    // 서버가 요청을 받기 전에 파일에서 색인을 읽고, 그 이후에 저장된 메시지를 테이블에서 색인한다.
+    @Override
+    public void start() {
+        try {
+            long startedAt = System.nanoTime();
+            Long checkpoint = readCheckpoint();
+            long afterId;
+            if (checkpoint == null) {
+                Files.createDirectories(directory);
+                afterId = Long.MIN_VALUE; // 처음 실행 : 테이블 전체를 색인
+            } else {
+                loadRoomFiles();
+                this.checkpoint = checkpoint;
+                afterId = MessageIdGenerator.minIdAt(MessageIdGenerator.timestampOf(checkpoint) - CATCH_UP_WINDOW_MS);
+            }
+            lastCatchUpAt = System.currentTimeMillis();
+            int caughtUp = catchUp(afterId);
+            log.info("검색 색인 준비 완료 : 채팅방 {}개, 테이블에서 색인한 메시지 {}건 ({}ms)", rooms.size(), caughtUp,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        } catch (IOException e) {
+            throw new UncheckedIOException("검색 색인을 읽을 수 없습니다 : " + directory.toAbsolutePath(), e);
+        }
+        running = true;
+    }
+
+    // 다른 서버가 저장한 메시지 중 이 서버가 받지 못한 메시지(구독하지 않는 채팅방)를 색인
+    // 다른 서버의 저장 큐에서 늦게 저장된 메시지도 포함되도록 이전 확인 시각 1 분 전부터 다시 읽는다.
+    @Scheduled(fixedDelayString = "${chat.search.catch-up-interval-ms:60000}")
+    public void catchUpRemote() {
+        if (!catchUpPeriodically || !running) {
+            return;
+        }
+        long afterId = MessageIdGenerator.minIdAt(lastCatchUpAt - CATCH_UP_WINDOW_MS);
+        lastCatchUpAt = System.currentTimeMillis();
+        int caughtUp = catchUp(afterId);
+        if (caughtUp > 0) {
+            log.debug("다른 서버가 저장한 메시지 색인 : {}건", caughtUp);
+        }
+    }
+
+    // afterId 이후에 저장된 TALK 메시지를 ID 순서대로 나누어 읽어 색인 (이미 색인한 메시지는 채팅방의 색인한 ID 로 걸러진다)
+    private int catchUp(long afterId) {
+        int total = 0;
+        long lastId = afterId;
+        while (true) {
+            List<ChatMessage> batch = jdbcTemplate.query(CATCH_UP_SQL, (rs, rowNum) -> {
+                ChatMessage message = new ChatMessage();
+                message.setId(rs.getLong(1));
+                ChatRoom room = new ChatRoom();
+                room.setId(rs.getLong(2));
+                message.setChatRoom(room);
+                message.setMessage(rs.getString(3));
+                message.setType(ChatMessage.MessageType.TALK);
+                return message;
+            }, lastId, ChatMessage.MessageType.TALK.getCode(), catchUpBatchSize);
+            if (batch.isEmpty()) {
+                return total;
+            }
+            total += add(batch);
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    private void loadRoomFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, ROOM_FILE_PREFIX + "*" + ROOM_FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Long roomId = Long.valueOf(name.substring(ROOM_FILE_PREFIX.length(), name.length() - ROOM_FILE_SUFFIX.length()));
+                loadRoomFile(roomId, file);
+            }
+        }
+    }
+
+    // 채팅방 파일의 기록을 차례로 읽어 색인, 마지막 기록이 중간에 끊겨 있으면 (기록 중 종료) 그 부분을 잘라낸다.
+    private void loadRoomFile(Long roomId, Path file) throws IOException {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            while (true) {
+                byte[] record;
+                try {
+                    record = new byte[in.readInt()];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+                long messageId = recordIn.readLong();
+                int termCount = recordIn.readInt();
+                Map<String, Integer> terms = new HashMap<>(termCount * 2);
+                for (int i = 0; i < termCount; i++) {
+                    terms.put(recordIn.readUTF(), recordIn.readInt());
+                }
+                add(roomId, messageId, terms);
+                validLength += Integer.BYTES + record.length;
+            }
+        }
+        if (validLength < Files.size(file)) {
+            log.warn("검색 색인 파일의 끊긴 기록을 잘라냄 : {} ({} -> {} 바이트)", file, Files.size(file), validLength);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    // 기록 하나 : [길이][메시지 ID][색인어 수][색인어, 횟수]...
+    private static void writeRecord(ByteArrayOutputStream buffer, long messageId, Map<String, Integer> terms) {
+        try {
+            ByteArrayOutputStream record = new ByteArrayOutputStream(16 + terms.size() * 8);
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeLong(messageId);
+            out.writeInt(terms.size());
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                out.writeUTF(term.getKey());
+                out.writeInt(term.getValue());
+            }
+            new DataOutputStream(buffer).writeInt(record.size());
+            record.writeTo(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // 메모리에 쓰므로 발생하지 않음
+        }
+    }
+
+    private Long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return Long.valueOf(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+    }
+
+    // 임시 파일에 쓴 뒤 이름을 바꾸어, 기록 중에 종료되어도 이전 값이나 새 값 중 하나가 남게 한다.
+    private void writeCheckpoint(long messageId) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temp, Long.toString(messageId).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path roomFile(Long roomId) {
+        return directory.resolve(ROOM_FILE_PREFIX + roomId + ROOM_FILE_SUFFIX);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 메시지 저장(ChatMessageStore)보다 먼저 시작하고 나중에 종료하여, 저장된 메시지가 모두 색인되게 한다.
+    @Override
+    public int getPhase() {
+        return RoomEventDispatcher.PHASE - 2;
+    }
+
+    // 검색 결과 : 조건에 맞는 메시지 수와 요청한 범위의 메시지 ID, 점수 (순위 순)
+    public static final class Hits {
+        static final Hits EMPTY = new Hits(0, new long[0], new double[0]);
+
+        private final int total;
+        private final long[] messageIds;
+        private final double[] scores;
+
+        private Hits(int total, long[] messageIds, double[] scores) {
+            this.total = total;
+            this.messageIds = messageIds;
+            this.scores = scores;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public long[] getMessageIds() {
+            return messageIds;
+        }
+
+        public double[] getScores() {
+            return scores;
+        }
+    }
+
+    /*
+    채팅방 하나의 색인이다. 메시지는 색인된 순서대로 번호(0, 1, 2, ...)를 받고, postings 는 이 번호의 오름차순 배열이다.
+    배열은 끝에 추가만 하고 이미 쓴 값은 바꾸지 않으므로(늘릴 때는 복사), 검색은 락 안에서 배열과 길이만 가져온 뒤 락 밖에서 계산한다.
+    따라서 오래 걸리는 검색이 저장 스레드의 색인을 막지 않는다.
+    번호는 색인된 순서이므로 메시지 ID 순서와 다를 수 있다. 이미 색인한 메시지인지는 ID 를 정렬해 둔 sortedIds 에서 찾고,
+    점수가 같은 결과의 최신순 정렬은 번호가 아닌 메시지 ID 로 한다.
+    */
+    private static final class RoomIndex {
+        private final Map<String, Postings> postings = new HashMap<>();
+        private long[] messageIds = new long[16]; // 번호 -> 메시지 ID
+        private int[] lengths = new int[16]; // 메시지별 색인어 수 (BM25 의 문서 길이)
+        private long[] sortedIds = new long[16]; // 색인한 메시지 ID (오름차순)
+        private int size;
+        private long totalLength;
+
+        // 이미 색인한 메시지이면 무시, ID 가 가장 크면 sortedIds 의 끝에 붙이고 아니면 정렬된 위치에 끼워 넣는다.
+        synchronized boolean add(long messageId, Map<String, Integer> terms) {
+            int position = size == 0 || messageId > sortedIds[size - 1] ? size : Arrays.binarySearch(sortedIds, 0, size, messageId);
+            if (position < 0) {
+                position = -position - 1;
+            } else if (position < size) {
+                return false;
+            }
+            if (size == messageIds.length) {
+                messageIds = Arrays.copyOf(messageIds, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                sortedIds = Arrays.copyOf(sortedIds, size * 2);
+            }
+            System.arraycopy(sortedIds, position, sortedIds, position + 1, size - position);
+            sortedIds[position] = messageId;
+            int doc = size;
+            int length = 0;
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), t -> new Postings()).add(doc, term.getValue());
+                length += term.getValue();
+            }
+            messageIds[doc] = messageId;
+            lengths[doc] = length;
+            totalLength += length;
+            size = doc + 1;
+            return true;
+        }
+
+        Hits search(Set<String> terms, int offset, int limit) {
+            // 락 안에서는 현재 상태의 배열과 길이만 가져온다.
+            List<PostingsView> views = new ArrayList<>(terms.size());
+            long[] docMessageIds;
+            int[] docLengths;
+            int docCount;
+            double averageLength;
+            synchronized (this) {
+                for (String term : terms) {
+                    Postings list = postings.get(term);
+                    if (list == null) {
+                        return Hits.EMPTY; // 모든 색인어가 있어야 하므로 하나라도 없으면 결과가 없다.
+                    }
+                    views.add(new PostingsView(list.docs, list.frequencies, list.size));
+                }
+                docMessageIds = messageIds;
+                docLengths = lengths;
+                docCount = size;
+                averageLength = (double) totalLength / size;
+            }
+            // 가장 짧은 목록을 기준으로 나머지 목록에서 같은 메시지를 찾는다. (교집합)
+            views.sort(Comparator.comparingInt(view -> view.size));
+            double[] idf = new double[views.size()];
+            for (int t = 0; t < views.size(); t++) {
+                int df = views.get(t).size;
+                idf[t] = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+            }
+            int[] positions = new int[views.size()];
+            int window = offset + limit;
+            // 점수가 낮은(같으면 오래된) 결과가 앞에 오는 힙에 상위 window 개만 남긴다.
+            PriorityQueue<double[]> top = new PriorityQueue<>(window + 1,
+                    Comparator.<double[]>comparingDouble(hit -> hit[1]).thenComparingLong(hit -> docMessageIds[(int) hit[0]]));
+            int total = 0;
+            PostingsView shortest = views.get(0);
+            candidates:
+            for (int i = 0; i < shortest.size; i++) {
+                int doc = shortest.docs[i];
+                double score = idf[0] * termScore(shortest.frequencies[i], docLengths[doc], averageLength);
+                for (int t = 1; t < views.size(); t++) {
+                    PostingsView view = views.get(t);
+                    int found = Arrays.binarySearch(view.docs, positions[t], view.size, doc);
+                    if (found < 0) {
+                        positions[t] = -found - 1;
+                        continue candidates;
+                    }
+                    positions[t] = found + 1;
+                    score += idf[t] * termScore(view.frequencies[found], docLengths[doc], averageLength);
+                }
+                total++;
+                top.add(new double[]{doc, score});
+                if (top.size() > window) {
+                    top.poll();
+                }
+            }
+            int count = Math.max(0, top.size() - offset);
+            long[] ids = new long[count];
+            double[] scores = new double[count];
+            // 힙에서는 낮은 순위부터 나오므로 뒤에서부터 채우고, offset 이전의 결과는 버린다.
+            for (int rank = top.size() - 1; rank >= 0; rank--) {
+                double[] hit = top.poll();
+                if (rank >= offset) {
+                    ids[rank - offset] = docMessageIds[(int) hit[0]];
+                    scores[rank - offset] = hit[1];
+                }
+            }
+            return new Hits(total, ids, scores);
+        }
+
+        private static double termScore(int frequency, int length, double averageLength) {
+            return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+        }
+    }
+
+    // 색인어 하나의 postings : 메시지 번호와 그 메시지에서 나온 횟수
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+
+    private static final class PostingsView {
+        private final int[] docs;
+        private final int[] frequencies;
+        private final int size;
+
+        private PostingsView(int[] docs, int[] frequencies, int size) {
+            this.docs = docs;
+            this.frequencies = frequencies;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.dto.ChatMessageSearchHitDto;
+import com.sample.chat.dto.ChatMessageSearchResDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/*
+채팅방의 메시지 검색 요청을 처리하는 클래스이다.
+검색 색인(MessageSearchIndex)에서 관련도 순으로 메시지 ID 를 찾은 뒤, 해당 페이지의 메시지만 ID 로 조회하여 (보관 계층으로 옮겨진 메시지는 세그먼트 파일에서) 검색어와 일치하는 구간을 표시한다.
+*/
+@Service
+public class MessageSearchService {
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_RESULTS = 1000; // 페이지로 볼 수 있는 상위 결과 수 (깊은 페이지는 검색어를 좁혀서 찾는다)
+    private static final int MAX_QUERY_LENGTH = 100;
+
+    private final MessageSearchIndex messageSearchIndex;
+    private final MessageHistoryService messageHistoryService;
+    private final Timer searchTimer;
+
+    @Autowired
+    public MessageSearchService(MessageSearchIndex messageSearchIndex, MessageHistoryService messageHistoryService,
+                                MeterRegistry meterRegistry) {
+        this.messageSearchIndex = messageSearchIndex;
+        this.messageHistoryService = messageHistoryService;
+        this.searchTimer = Timer.builder("chat.search.query").description("색인에서 검색 결과를 찾는 시간").register(meterRegistry);
+    }
+
+    public ChatMessageSearchResDto search(Long roomId, String query, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        long offset = (long) pageNumber * pageSize;
+        String q = query.length() > MAX_QUERY_LENGTH ? query.substring(0, MAX_QUERY_LENGTH) : query;
+        if (offset >= MAX_RESULTS) {
+            // 색인은 상위 MAX_RESULTS 개까지만 순위를 매기므로, 전체 개수만 알려준다.
+            MessageSearchIndex.Hits hits = searchTimer.record(() -> messageSearchIndex.search(roomId, q, 0, 1));
+            return new ChatMessageSearchResDto(hits.getTotal(), pageNumber, pageSize, Collections.emptyList());
+        }
+        int limit = (int) Math.min(pageSize, MAX_RESULTS - offset);
+        MessageSearchIndex.Hits hits = searchTimer.record(() -> messageSearchIndex.search(roomId, q, (int) offset, limit));
+        long[] messageIds = hits.getMessageIds();
+        if (messageIds.length == 0) {
+            return new ChatMessageSearchResDto(hits.getTotal(), pageNumber, pageSize, Collections.emptyList());
+        }
+        List<Long> ids = new ArrayList<>(messageIds.length);
+        for (long id : messageIds) {
+            ids.add(id);
+        }
+        Map<Long, ChatMessageHistoryDto> messages = new HashMap<>();
+        for (ChatMessageHistoryDto message : messageHistoryService.findByIds(roomId, ids)) {
+            messages.put(message.getId(), message);
+        }
+        Set<String> terms = SearchTokenizer.queryTerms(q);
+        List<ChatMessageSearchHitDto> results = new ArrayList<>(messageIds.length);
+        for (int i = 0; i < messageIds.length; i++) {
+            ChatMessageHistoryDto message = messages.get(messageIds[i]);
+            if (message == null) {
+                continue; // 색인된 뒤 삭제된 메시지
+            }
+            results.add(new ChatMessageSearchHitDto(message.getId(), message.getSeq(), message.getText(),
+                    message.getSenderName(), message.getTimestamp(), hits.getScores()[i], highlights(message.getText(), terms)));
+        }
+        return new ChatMessageSearchResDto(hits.getTotal(), pageNumber, pageSize, results);
+    }
+
+    /*
+    메시지에서 검색어의 색인어가 나오는 구간들을 찾아, 겹치거나 이어지는 구간은 하나로 합친다. (예 : "회의", "의록" -> "회의록")
+    영문 단어는 다른 단어의 일부인 경우(예 : "cat" 과 "concat")는 표시하지 않는다.
+    */
+    static List<int[]> highlights(String text, Set<String> terms) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        if (normalized.length() != text.length()) {
+            return Collections.emptyList(); // 소문자로 바꾸면서 길이가 바뀌는 문자가 있으면 위치를 맞출 수 없다.
+        }
+        List<int[]> ranges = new ArrayList<>();
+        for (String term : terms) {
+            boolean bigram = SearchTokenizer.isBigramChar(term.charAt(0));
+            for (int start = normalized.indexOf(term); start >= 0; start = normalized.indexOf(term, start + 1)) {
+                int end = start + term.length();
+                boolean wholeWord = bigram && term.length() == 2
+                        || !isWordChar(normalized, start - 1, bigram)
+                        && (term.length() == SearchTokenizer.MAX_TERM_LENGTH || !isWordChar(normalized, end, bigram));
+                if (wholeWord) {
+                    ranges.add(new int[]{start, end});
+                }
+            }
+        }
+        ranges.sort(Comparator.comparingInt(range -> range[0]));
+        List<int[]> merged = new ArrayList<>(ranges.size());
+        for (int[] range : ranges) {
+            int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    // index 위치의 문자가 색인어와 같은 종류의 단어를 이루는 문자인지 (범위를 벗어나면 false)
+    private static boolean isWordChar(String text, int index, boolean bigram) {
+        if (index < 0 || index >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(index);
+        return bigram ? SearchTokenizer.isBigramChar(c) : Character.isLetterOrDigit(c) && !SearchTokenizer.isBigramChar(c);
+    }
+}
@@ -0,0 +1,337 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.entity.ChatMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+보관(cold) 계층의 세그먼트 파일 하나이다. 채팅방 하나의 한 달 치 메시지를 ID 오름차순으로 담고, 한 번 쓴 뒤에는 바꾸지 않는다.
+
+[블록 0][블록 1]...[블록 n-1][블록 목록][꼬리]
+- 블록 : 메시지 BLOCK_MESSAGES 개를 이어 쓴 뒤 Deflate 로 압축한 것 (채팅 메시지는 비슷한 문자열이 반복되어 압축이 잘 된다)
+- 블록 목록 : 블록마다 [첫 메시지 ID][마지막 메시지 ID][파일 안의 위치][압축된 크기][압축 전 크기][메시지 수]
+- 꼬리 : [블록 목록의 위치][블록 수][MAGIC]
+
+읽을 때는 파일 전체를 메모리 매핑(mmap)하고 블록 목록만 배열로 읽어 둔다.
+이전 메시지를 조회하면 블록 목록에서 ID 로 이진 탐색한 블록만 압축을 풀기 때문에, 세그먼트가 커도 한 페이지에 필요한 블록만 읽는다.
+(매핑한 파일은 운영체제의 페이지 캐시를 그대로 사용하므로, 자주 조회되는 세그먼트는 디스크를 다시 읽지 않는다)
+*/
+final class MessageSegment {
+    static final String SUFFIX = ".seg";
+    private static final int MAGIC = 0x43534731; // "CSG1"
+    private static final int BLOCK_MESSAGES = 256;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES * 3 + Integer.BYTES * 3;
+    private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES * 2;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final long[] firstIds;
+    private final long[] lastIds;
+    private final int[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+
+    private MessageSegment(Path file, MappedByteBuffer buffer, long[] firstIds, long[] lastIds,
+                           int[] offsets, int[] compressedLengths, int[] rawLengths) {
+        this.file = file;
+        this.buffer = buffer;
+        this.firstIds = firstIds;
+        this.lastIds = lastIds;
+        this.offsets = offsets;
+        this.compressedLengths = compressedLengths;
+        this.rawLengths = rawLengths;
+    }
+
+    // 세그먼트 파일을 매핑하고 블록 목록을 읽는다. (ByteBuffer 하나로 매핑하므로 2GB 보다 작은 파일만 가능, 한 달 치 한 채팅방이면 충분하다)
+    static MessageSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < TRAILER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("세그먼트 파일의 크기가 올바르지 않습니다 : " + file + " (" + size + " 바이트)");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int trailer = (int) size - TRAILER_BYTES;
+            long indexOffset = buffer.getLong(trailer);
+            int blockCount = buffer.getInt(trailer + Long.BYTES);
+            if (buffer.getInt(trailer + Long.BYTES + Integer.BYTES) != MAGIC
+                    || indexOffset < 0 || indexOffset + (long) blockCount * INDEX_ENTRY_BYTES != trailer) {
+                throw new IOException("세그먼트 파일이 손상되었습니다 : " + file);
+            }
+            long[] firstIds = new long[blockCount];
+            long[] lastIds = new long[blockCount];
+            int[] offsets = new int[blockCount];
+            int[] compressedLengths = new int[blockCount];
+            int[] rawLengths = new int[blockCount];
+            int position = (int) indexOffset;
+            for (int i = 0; i < blockCount; i++) {
+                firstIds[i] = buffer.getLong(position);
+                lastIds[i] = buffer.getLong(position + 8);
+                offsets[i] = (int) buffer.getLong(position + 16);
+                compressedLengths[i] = buffer.getInt(position + 24);
+                rawLengths[i] = buffer.getInt(position + 28);
+                position += INDEX_ENTRY_BYTES;
+            }
+            // 채널을 닫아도 매핑은 유지되며, 버퍼가 GC 될 때 해제된다.
+            return new MessageSegment(file, buffer, firstIds, lastIds, offsets, compressedLengths, rawLengths);
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int blockCount() {
+        return firstIds.length;
+    }
+
+    long firstId() {
+        return firstIds.length > 0 ? firstIds[0] : Long.MAX_VALUE;
+    }
+
+    long lastId() {
+        return lastIds.length > 0 ? lastIds[lastIds.length - 1] : Long.MIN_VALUE;
+    }
+
+    long lastId(int block) {
+        return lastIds[block];
+    }
+
+    // id 보다 작은 메시지가 있는 마지막 블록의 번호 (없으면 -1)
+    int lastBlockBefore(long id) {
+        int low = 0;
+        int high = firstIds.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstIds[mid] < id) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // id 가 들어있을 수 있는 블록의 번호 (없으면 -1)
+    int blockOf(long id) {
+        int block = lastBlockBefore(id + 1);
+        return block >= 0 && lastIds[block] >= id ? block : -1;
+    }
+
+    // 블록 하나의 압축을 풀어 메시지들을 ID 오름차순으로 반환
+    List<ChatMessageHistoryDto> readBlock(int block) throws IOException {
+        ByteBuffer compressed = buffer.slice(offsets[block], compressedLengths[block]);
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != raw.length) {
+                throw new IOException("세그먼트 블록이 손상되었습니다 : " + file + " #" + block);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("세그먼트 블록이 손상되었습니다 : " + file + " #" + block, e);
+        } finally {
+            inflater.end();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        List<ChatMessageHistoryDto> messages = new ArrayList<>(BLOCK_MESSAGES);
+        while (in.available() > 0) {
+            messages.add(readMessage(in));
+        }
+        return messages;
+    }
+
+    // 메시지 하나 : [ID][순번][종류][보낸 사용자 ID, 이메일, 이름][전송 시각][내용], 값이 없는 항목은 앞에 false 를 쓴다.
+    private static void writeMessage(DataOutputStream out, ChatMessageHistoryDto message) throws IOException {
+        out.writeLong(message.getId());
+        writeNullableLong(out, message.getSeq());
+        out.writeByte(message.getType().getCode());
+        writeNullableLong(out, message.getSenderId());
+        writeString(out, message.getSenderEmail());
+        writeString(out, message.getSenderName());
+        LocalDateTime timestamp = message.getTimestamp();
+        out.writeBoolean(timestamp != null);
+        if (timestamp != null) {
+            out.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC)); // 시간대 변환 없이 저장된 값 그대로
+            out.writeInt(timestamp.getNano());
+        }
+        writeString(out, message.getText());
+    }
+
+    private static ChatMessageHistoryDto readMessage(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        Long seq = readNullableLong(in);
+        ChatMessage.MessageType type = readType(in);
+        Long senderId = readNullableLong(in);
+        String senderEmail = readString(in);
+        String senderName = readString(in);
+        LocalDateTime timestamp = in.readBoolean()
+                ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+        String text = readString(in);
+        return new ChatMessageHistoryDto(id, seq, type, text, senderId, senderEmail, senderName, timestamp);
+    }
+
+    private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    // 알 수 없는 종류는 손상되었거나 더 새로운 형식의 세그먼트이므로 읽기를 중단
+    private static ChatMessage.MessageType readType(DataInputStream in) throws IOException {
+        int code = in.readUnsignedByte();
+        try {
+            return ChatMessage.MessageType.fromCode(code);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("세그먼트에 알 수 없는 메시지 종류가 있습니다 : " + code, e);
+        }
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    // writeUTF 는 64KB 까지만 쓸 수 있으므로 길이(null 이면 -1)와 UTF-8 바이트를 직접 쓴다.
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*
+    세그먼트 파일을 만드는 클래스이다. 메시지를 ID 오름차순으로 add 하고 commit 하면 블록 목록과 꼬리를 쓴 뒤 임시 파일의 이름을 바꾼다.
+    따라서 쓰는 중에 종료되어도 완성되지 않은 세그먼트가 조회되지 않는다. (같은 이름의 세그먼트가 있으면 새 파일로 바뀐다)
+    */
+    static final class Writer implements AutoCloseable {
+        private final Path target;
+        private final Path temp;
+        private final OutputStream out;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(64 * 1024);
+        private final DataOutputStream blockOut = new DataOutputStream(block);
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        private final DataOutputStream indexOut = new DataOutputStream(index);
+        private final byte[] chunk = new byte[16 * 1024];
+        private long position;
+        private int blockCount;
+        private int blockMessages;
+        private long blockFirstId;
+        private long lastId = Long.MIN_VALUE;
+        private boolean committed;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.out = Files.newOutputStream(temp);
+        }
+
+        void add(ChatMessageHistoryDto message) throws IOException {
+            if (message.getId() <= lastId) {
+                throw new IllegalArgumentException("세그먼트의 메시지는 ID 오름차순이어야 합니다 : " + message.getId());
+            }
+            if (blockMessages == 0) {
+                blockFirstId = message.getId();
+            }
+            writeMessage(blockOut, message);
+            lastId = message.getId();
+            if (++blockMessages == BLOCK_MESSAGES) {
+                flushBlock();
+            }
+        }
+
+        // 지금까지 추가한 메시지 수가 0 이면 파일을 만들지 않는다.
+        boolean commit() throws IOException {
+            if (blockMessages > 0) {
+                flushBlock();
+            }
+            if (blockCount == 0) {
+                return false;
+            }
+            DataOutputStream trailer = new DataOutputStream(out);
+            index.writeTo(out);
+            trailer.writeLong(position);
+            trailer.writeInt(blockCount);
+            trailer.writeInt(MAGIC);
+            out.close();
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return true;
+        }
+
+        private void flushBlock() throws IOException {
+            deflater.reset();
+            deflater.setInput(block.toByteArray());
+            deflater.finish();
+            long start = position;
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                out.write(chunk, 0, length);
+                position += length;
+            }
+            indexOut.writeLong(blockFirstId);
+            indexOut.writeLong(lastId);
+            indexOut.writeLong(start);
+            indexOut.writeInt((int) (position - start));
+            indexOut.writeInt(block.size());
+            indexOut.writeInt(blockMessages);
+            blockCount++;
+            blockMessages = 0;
+            block.reset();
+        }
+
+        // commit 하지 않고 닫으면 임시 파일을 지운다.
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
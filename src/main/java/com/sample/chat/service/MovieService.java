@@ -1,68 +1,287 @@
 package com.sample.chat.service;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sample.chat.dto.MovieDto;
 import com.sample.chat.entity.Movie;
+import com.sample.chat.entity.MovieSnapshot;
 import com.sample.chat.repository.MovieRepository;
-import lombok.RequiredArgsConstructor;
+import com.sample.chat.repository.MovieSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class MovieService {
     private final MovieRepository movieRepository;
+    private final MovieSnapshotRepository movieSnapshotRepository;
+    private final MovieSnapshotCache movieSnapshotCache;
+    private final EntityManager entityManager;
+    private final JsonFactory jsonFactory;
+    private final int batchSize; // 한 번에 조회하고 flush 하는 영화 수 (Hibernate 의 JDBC 배치 크기와 같게 사용)
+    private final int retainedSnapshots; // 현재 스냅샷을 포함하여 남겨 둘 스냅샷 수
 
-    // 영화 저장
-    public void saveMovie(Movie movie) {
-        movieRepository.save(movie);
+    @Autowired
+    public MovieService(MovieRepository movieRepository, MovieSnapshotRepository movieSnapshotRepository,
+                        MovieSnapshotCache movieSnapshotCache, EntityManager entityManager, ObjectMapper objectMapper,
+                        @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize,
+                        @Value("${movie.snapshot.retain:2}") int retainedSnapshots) {
+        this.movieRepository = movieRepository;
+        this.movieSnapshotRepository = movieSnapshotRepository;
+        this.movieSnapshotCache = movieSnapshotCache;
+        this.entityManager = entityManager;
+        this.jsonFactory = objectMapper.getFactory();
+        this.batchSize = batchSize;
+        this.retainedSnapshots = Math.max(1, retainedSnapshots);
     }
 
-    // 영화 전체 삭제
-    public void deleteAll() {
-        movieRepository.deleteAll();
+    /*
+    크롤러가 보낸 영화 목록(JSON 배열)을 새 스냅샷으로 저장한다. 한 목록 안에서 같은 제목과 개봉일의 영화가 다시 오면 수정하고, 없으면 추가한다. (upsert)
+    목록 전체를 List 로 읽지 않고 스트림에서 한 건씩 읽으며, batchSize 건이 모일 때마다
+    이미 있는 영화를 한 번에 조회하고 변경 내용을 JDBC 배치로 flush 한 뒤 영속성 컨텍스트를 비운다.
+    따라서 목록의 크기와 관계없이 메모리에는 배치 하나만큼의 영화만 남는다.
+
+    스냅샷과 영화는 하나의 트랜잭션으로 저장되므로, 커밋되는 순간 새 스냅샷이 현재 스냅샷이 된다. (커밋 전에는 이전 스냅샷이 그대로 제공된다)
+    JSON 형식이 잘못되었으면 그때까지 저장한 영화도 모두 롤백되고 이전 스냅샷이 유지된다.
+    저장할 영화가 하나도 없으면(빈 배열, 제목이 없는 항목뿐) 크롤링이 실패한 것으로 보고 스냅샷을 지워서 이전 스냅샷을 계속 제공한다.
+    새 스냅샷이 저장되면 스냅샷을 도입하기 전에 저장된 영화(snapshot_id 가 없음)도 함께 지운다.
+    도입 전의 영화는 다른 ID 발급기(hibernate_sequence)로 저장되어 movie_seq 가 발급하는 ID 와 겹칠 수 있으므로, 첫 영화를 INSERT 하기 전에 지운다.
+    (같은 트랜잭션이므로 저장이 실패하여 롤백되면 그대로 남는다)
+    */
+    @Transactional(rollbackFor = IOException.class)
+    public int ingest(InputStream body) throws IOException {
+        MovieSnapshot snapshot = new MovieSnapshot();
+        snapshot.setRegDate(LocalDateTime.now());
+        movieSnapshotRepository.save(snapshot);
+        Long snapshotId = snapshot.getId();
+        int inserted = 0;
+        int updated = 0;
+        int skipped = 0;
+        int legacy = -1; // 삭제한 도입 전 영화 수 (저장할 첫 영화를 읽기 전에는 -1)
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "영화 목록은 JSON 배열이어야 합니다.");
+            }
+            List<Movie> batch = new ArrayList<>(batchSize);
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                Movie movie = readMovie(parser);
+                if (movie.getTitle() == null) {
+                    skipped++; // 제목이 없으면 같은 영화인지 알 수 없으므로 저장하지 않는다.
+                    continue;
+                }
+                movie.setSnapshotId(snapshotId);
+                if (legacy < 0) {
+                    legacy = movieRepository.deleteLegacy(); // 빈 목록이면 지우지 않도록 저장할 영화가 있을 때 지운다.
+                }
+                batch.add(movie);
+                if (batch.size() == batchSize) {
+                    int added = upsert(snapshotId, batch);
+                    inserted += added;
+                    updated += batch.size() - added;
+                    batch.clear();
+                }
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "영화 목록의 항목은 JSON 객체여야 합니다.");
+            }
+            int added = upsert(snapshotId, batch);
+            inserted += added;
+            updated += batch.size() - added;
+        }
+        if (inserted == 0) {
+            movieSnapshotRepository.deleteById(snapshotId);
+            log.warn("저장할 영화가 없어 스냅샷 {} 을 만들지 않음 (제목 없음 {}건), 이전 스냅샷을 계속 제공", snapshotId, skipped);
+            return 0;
+        }
+        // 저장한 영화 수를 기록 (영속성 컨텍스트를 비웠으므로 UPDATE 문으로 직접 반영)
+        entityManager.createQuery("UPDATE MovieSnapshot s SET s.movieCount = :count WHERE s.id = :id")
+                .setParameter("count", inserted)
+                .setParameter("id", snapshotId)
+                .executeUpdate();
+        pruneSnapshotsBefore(snapshotId, retainedSnapshots - 1);
+        if (legacy > 0) {
+            log.info("스냅샷 도입 전에 저장된 영화 삭제 : {}건", legacy);
+        }
+        refreshCacheAfterCommit();
+        log.info("영화 스냅샷 {} 저장 : 추가 {}건, 수정 {}건, 제목 없음 {}건", snapshotId, inserted, updated, skipped);
+        return inserted + updated;
     }
 
-    // 영화 전체 조회
-    public List<MovieDto> getMovieList() {
-        List<Movie> movies = movieRepository.findAll();
-        List<MovieDto> movieDtos = new ArrayList<>();
-        for (Movie movie : movies) {
-            movieDtos.add(convertEntityToDto(movie));
+    // 현재 스냅샷 이전의 스냅샷들은 남겨 둘 개수(keep)만 남기고 삭제
+    private void pruneSnapshotsBefore(Long snapshotId, int keep) {
+        // 최신 스냅샷(snapshotId 자신)과 남겨 둘 스냅샷, 삭제할 첫 스냅샷까지 조회
+        List<Long> older = movieSnapshotRepository.findIdsNewestFirst(PageRequest.of(0, keep + 2)).stream()
+                .filter(id -> id < snapshotId)
+                .collect(Collectors.toList());
+        if (older.size() <= keep) {
+            return;
         }
-        return movieDtos;
+        Long cutoff = older.get(keep); // 이 스냅샷과 그 이전의 스냅샷들을 삭제
+        int deleted = movieRepository.deleteUpToSnapshot(cutoff);
+        movieSnapshotRepository.deleteUpTo(cutoff);
+        log.info("오래된 영화 스냅샷 삭제 : {} 이하 ({}건)", cutoff, deleted);
     }
 
-    // 페이지네이션
-    public List<MovieDto> getMovieList(int page, int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        List<Movie> movies = movieRepository.findAll(pageable).getContent();
-        List<MovieDto> movieDtos = new ArrayList<>();
-        for (Movie movie : movies) {
-            movieDtos.add(convertEntityToDto(movie));
+    // 트랜잭션이 커밋된 뒤에 메모리의 스냅샷을 교체 (롤백되면 교체하지 않음)
+    // 저장은 이미 커밋되었으므로 교체에 실패해도 요청은 성공으로 응답하고, 스냅샷은 다음 주기적인 확인에서 교체된다.
+    private void refreshCacheAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    movieSnapshotCache.refresh();
+                } catch (RuntimeException e) {
+                    log.error("영화 스냅샷 교체 실패, 다음 주기에 다시 시도 : {}", e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    // 배치 하나를 저장하고 새로 추가한 영화 수를 반환 (같은 배치에 같은 영화가 여러 번 있으면 마지막 것을 사용하며, 수정한 것으로 센다)
+    // 제목 조회(IN)는 데이터 베이스의 collation 으로 비교되므로 대소문자만 다른 영화도 찾아지고, 찾은 영화와의 비교는 key 로 한다.
+    private int upsert(Long snapshotId, List<Movie> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<List<String>, Movie> rows = new LinkedHashMap<>();
+        Set<String> titles = new HashSet<>();
+        for (Movie movie : batch) {
+            rows.put(key(movie), movie);
+            titles.add(movie.getTitle());
+        }
+        for (Movie existing : movieRepository.findBySnapshotIdAndTitleIn(snapshotId, titles)) {
+            Movie row = rows.remove(key(existing));
+            if (row != null) {
+                // 조회한 엔티티의 값만 바꾸면 flush 시점에 변경 감지로 UPDATE 된다. (값이 같으면 UPDATE 하지 않음)
+                existing.setMovieRank(row.getMovieRank());
+                existing.setImage(row.getImage());
+                existing.setScore(row.getScore());
+                existing.setRate(row.getRate());
+                existing.setReservation(row.getReservation());
+            }
+        }
+        for (Movie row : rows.values()) {
+            entityManager.persist(row);
         }
-        return movieDtos;
+        entityManager.flush();
+        entityManager.clear();
+        return rows.size();
     }
 
-    // 페이지 수 조회
-    public int getMoviePage(Pageable pageable) {
-        return movieRepository.findAll(pageable).getTotalPages();
+    /*
+    같은 영화인지 비교하는 키, movie 테이블의 유니크 키(snapshot_id, title, date)와 같은 기준으로 비교해야 한다.
+    MySQL 의 기본 collation(utf8mb4_0900_ai_ci)은 대소문자와 악센트를 구분하지 않으므로 제목에서 악센트를 떼고 소문자로 바꾸며,
+    앞뒤 공백은 읽을 때 제거한다. (readMovie)
+    키가 더 엄격하면 데이터 베이스에는 이미 있는 영화를 새 영화로 보고 INSERT 하여 유니크 키 위반으로 수집 전체가 실패한다.
+    */
+    private static List<String> key(Movie movie) {
+        String title = Normalizer.normalize(movie.getTitle(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return Arrays.asList(title.toLowerCase(Locale.ROOT), movie.getDate());
+    }
+
+    // 영화 객체 하나를 읽는다. 크롤러가 보내는 필드 이름을 엔티티의 필드에 맞추고, 알 수 없는 필드와 중첩된 값은 무시한다.
+    private static Movie readMovie(JsonParser parser) throws IOException {
+        Movie movie = new Movie();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            String text = value == JsonToken.VALUE_NULL ? null : parser.getText();
+            switch (fieldName) {
+                case "rank":
+                    movie.setMovieRank(text);
+                    break;
+                case "image":
+                    movie.setImage(text);
+                    break;
+                case "title":
+                    movie.setTitle(trimToNull(text));
+                    break;
+                case "score":
+                    movie.setScore(text);
+                    break;
+                case "eval_num":
+                    movie.setRate(text);
+                    break;
+                case "reservation":
+                    movie.setReservation(text);
+                    break;
+                case "open_date":
+                    movie.setDate(trimToNull(text));
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "영화 항목이 끝나지 않았습니다.");
+        }
+        return movie;
+    }
+
+    private static String trimToNull(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        return trimmed.isEmpty() ? null : trimmed;
     }
 
-    // DTO 변환
-    private MovieDto convertEntityToDto(Movie movie) {
-        MovieDto movieDto = new MovieDto();
-        movieDto.setRank(movie.getMovieRank());
-        movieDto.setImage(movie.getImage());
-        movieDto.setTitle(movie.getTitle());
-        movieDto.setScore(movie.getScore());
-        movieDto.setRate(movie.getRate());
-        movieDto.setReservation(movie.getReservation());
-        movieDto.setDate(movie.getDate());
-        return movieDto;
+    /*
+    이전 방식(전체 삭제 후 다시 저장)을 사용하는 크롤러와의 호환을 위해 남겨 둔 기능으로, 현재 스냅샷은 지우지 않고 이전 스냅샷들만 삭제한다.
+    현재 스냅샷까지 지우면 크롤러가 새 목록을 저장할 때까지 조회하는 쪽이 빈 목록을 보게 되기 때문이다.
+    */
+    @Transactional
+    public void deleteAll() {
+        Long activeId = movieSnapshotRepository.findActiveId();
+        if (activeId != null) {
+            pruneSnapshotsBefore(activeId, 0);
+        }
     }
 
-}
\ No newline at end of file
+    // 영화 전체 조회 (메모리의 현재 스냅샷)
+    public List<MovieDto> getMovieList() {
+        return movieSnapshotCache.getMovies();
+    }
+
+    // 페이지네이션 (메모리의 현재 스냅샷)
+    public List<MovieDto> getMovieList(int page, int size) {
+        Pageable pageable = PageRequest.of(page, size); // 페이지 번호와 크기 검사
+        return movieSnapshotCache.getPage(pageable.getPageNumber(), pageable.getPageSize());
+    }
+
+    // 페이지 수 조회 (메모리의 현재 스냅샷)
+    public int getMoviePage(Pageable pageable) {
+        return movieSnapshotCache.getPageCount(pageable.getPageSize());
+    }
+}
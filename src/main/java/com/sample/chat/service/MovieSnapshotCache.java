@@ -0,0 +1,145 @@
+package com.sample.chat.service;
+
+import com.sample.chat.config.RoomEventDispatcher;
+import com.sample.chat.dto.MovieDto;
+import com.sample.chat.entity.Movie;
+import com.sample.chat.repository.MovieRepository;
+import com.sample.chat.repository.MovieSnapshotRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+현재 제공 중인 영화 순위 스냅샷을 메모리에 보관하는 클래스이다.
+영화 목록, 페이지, 페이지 수 조회는 모두 이 클래스의 불변 목록에서 처리되므로 데이터 베이스를 조회하지 않는다.
+
+새 스냅샷이 커밋되면 전체를 읽어 새 불변 목록을 만든 뒤 참조 하나를 바꿔서(volatile) 교체한다.
+따라서 조회하는 쪽은 항상 이전 스냅샷 전체 또는 새 스냅샷 전체만 보게 되고, 비어 있거나 절반만 저장된 목록은 보지 않는다.
+다른 서버에서 저장한 스냅샷은 일정 간격으로 현재 스냅샷 ID 만 확인하여, 바뀐 경우에만 다시 읽는다.
+스냅샷이 하나도 없으면 스냅샷을 도입하기 전에 저장된 영화(snapshot_id 가 없음)를 제공하여, 배포 직후 첫 크롤링 전까지 목록이 비지 않게 한다.
+(이 영화들은 이전 방식의 크롤러가 바꿀 수 있으므로 첫 스냅샷이 저장될 때까지 매번 다시 읽는다)
+*/
+@Slf4j
+@Component
+public class MovieSnapshotCache implements SmartLifecycle {
+    private static final Snapshot EMPTY = new Snapshot(null, Collections.emptyList());
+
+    private final MovieRepository movieRepository;
+    private final MovieSnapshotRepository movieSnapshotRepository;
+    private volatile Snapshot current = EMPTY;
+    private volatile boolean running;
+
+    @Autowired
+    public MovieSnapshotCache(MovieRepository movieRepository, MovieSnapshotRepository movieSnapshotRepository,
+                              MeterRegistry meterRegistry) {
+        this.movieRepository = movieRepository;
+        this.movieSnapshotRepository = movieSnapshotRepository;
+        Gauge.builder("movie.snapshot.size", this, cache -> cache.current.movies.size())
+                .description("현재 제공 중인 스냅샷의 영화 수").register(meterRegistry);
+    }
+
+    // 현재 스냅샷의 영화 전체 (읽기 전용)
+    public List<MovieDto> getMovies() {
+        return current.movies;
+    }
+
+    // 현재 스냅샷의 page 번째 페이지, 불변 목록의 구간(subList)이므로 복사하지 않는다. (범위를 벗어나면 빈 목록)
+    public List<MovieDto> getPage(int page, int size) {
+        List<MovieDto> movies = current.movies;
+        long from = (long) page * size;
+        if (from >= movies.size()) {
+            return Collections.emptyList();
+        }
+        return movies.subList((int) from, (int) Math.min(from + size, movies.size()));
+    }
+
+    // 현재 스냅샷의 페이지 수
+    public int getPageCount(int size) {
+        return (current.movies.size() + size - 1) / size;
+    }
+
+    /*
+    가장 최근에 커밋된 스냅샷이 메모리의 스냅샷과 다르면 새로 읽어서 교체한다.
+    새 스냅샷을 저장한 트랜잭션이 커밋된 직후에도 호출되므로, 그 트랜잭션과 분리된 새 읽기 전용 트랜잭션에서 실행한다.
+    */
+    @Scheduled(fixedDelayString = "${movie.snapshot.refresh-interval-ms:10000}")
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public synchronized void refresh() {
+        Long activeId = movieSnapshotRepository.findActiveId();
+        Snapshot snapshot = current;
+        if (activeId == null) {
+            current = new Snapshot(null, toDtos(movieRepository.findBySnapshotIdIsNullOrderByIdAsc()));
+            return;
+        }
+        if (activeId.equals(snapshot.id)) {
+            return;
+        }
+        List<MovieDto> movieDtos = toDtos(movieRepository.findBySnapshotIdOrderByIdAsc(activeId));
+        current = new Snapshot(activeId, movieDtos);
+        log.info("영화 스냅샷 교체 : {} -> {} ({}건)", snapshot.id, activeId, movieDtos.size());
+    }
+
+    private static List<MovieDto> toDtos(List<Movie> movies) {
+        List<MovieDto> movieDtos = new ArrayList<>(movies.size());
+        for (Movie movie : movies) {
+            movieDtos.add(convertEntityToDto(movie));
+        }
+        return Collections.unmodifiableList(movieDtos);
+    }
+
+    // DTO 변환 (성능 측정(MovieMappingBenchmark)에서도 사용하므로 package-private)
+    static MovieDto convertEntityToDto(Movie movie) {
+        MovieDto movieDto = new MovieDto();
+        movieDto.setRank(movie.getMovieRank());
+        movieDto.setImage(movie.getImage());
+        movieDto.setTitle(movie.getTitle());
+        movieDto.setScore(movie.getScore());
+        movieDto.setRate(movie.getRate());
+        movieDto.setReservation(movie.getReservation());
+        movieDto.setDate(movie.getDate());
+        return movieDto;
+    }
+
+    // 웹 서버가 요청을 받기 전에 현재 스냅샷을 읽어 둔다.
+    @Override
+    public void start() {
+        refresh();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return RoomEventDispatcher.PHASE;
+    }
+
+    // 스냅샷 하나 (ID 와 불변 영화 목록)
+    private static final class Snapshot {
+        private final Long id;
+        private final List<MovieDto> movies;
+
+        private Snapshot(Long id, List<MovieDto> movies) {
+            this.id = id;
+            this.movies = movies;
+        }
+    }
+}
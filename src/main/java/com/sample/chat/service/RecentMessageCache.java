@@ -0,0 +1,263 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/*
+채팅방별 최근 메시지를 메모리에 보관하는 캐시이다.
+채팅방에 입장하면 클라이언트가 곧바로 이전 채팅 로그를 요청하기 때문에, 사람이 많은 방일수록 같은 첫 페이지 조회가 반복된다.
+방마다 최근 N 개의 메시지를 고정 크기의 링 버퍼에 담아두고 첫 페이지는 메모리에서 응답하며, 그보다 오래된 페이지만 데이터 베이스에서 조회한다.
+재연결한 클라이언트가 놓친 메시지(getAfter)도 버퍼가 그 범위를 담고 있으면 메모리에서 응답한다.
+
+다른 노드의 메시지는 이 노드가 구독 중인 채팅방만 전달되므로, 버퍼는 이 노드의 세션이 입장해 있는 동안에만 최신 상태이다.
+구독이 바뀌면(RoomSubscriptionListener) 채팅방의 버퍼를 버리며, 구독하지 않는 채팅방은 ChatService 가 캐시를 거치지 않고 데이터 베이스에서 읽는다.
+
+링 버퍼에 쓰는 쪽은 방송 경로(ChatService)이며, 같은 채팅방의 이벤트는 항상 하나의 샤드 스레드에서 처리되므로(RoomEventDispatcher) 방마다 쓰는 스레드는 하나이다.
+따라서 쓰기는 배열에 값을 넣은 뒤 head 를 증가시키는 것으로 끝나고, 읽는 쪽은 락 없이 읽은 뒤 그 사이에 덮어써진 칸만 버린다.
+*/
+@Slf4j
+@Component
+public class RecentMessageCache implements RoomSubscriptionListener {
+    private static final long EVICTED = -1L;
+
+    private final Map<Long, RoomBuffer> buffers = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final long idleMillis;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter replayMemoryCounter;
+    private final Counter replayDatabaseCounter;
+
+    @Autowired
+    public RecentMessageCache(MeterRegistry meterRegistry,
+                              @Value("${chat.history-cache.capacity:100}") int capacity,
+                              @Value("${chat.history-cache.idle-evict-ms:600000}") long idleMillis) {
+        this.capacity = capacity;
+        this.idleMillis = idleMillis;
+        this.hitCounter = Counter.builder("chat.history.cache").tag("result", "hit")
+                .description("메모리에서 응답한 이전 채팅 로그 첫 페이지 요청 수").register(meterRegistry);
+        this.missCounter = Counter.builder("chat.history.cache").tag("result", "miss")
+                .description("데이터 베이스를 조회한 이전 채팅 로그 첫 페이지 요청 수").register(meterRegistry);
+        this.replayMemoryCounter = Counter.builder("chat.resume.replay").tag("source", "memory")
+                .description("메모리에서 응답한 재연결 시 놓친 메시지 요청 수").register(meterRegistry);
+        this.replayDatabaseCounter = Counter.builder("chat.resume.replay").tag("source", "database")
+                .description("데이터 베이스를 조회한 재연결 시 놓친 메시지 요청 수").register(meterRegistry);
+        Gauge.builder("chat.history.cache.rooms", buffers, Map::size)
+                .description("최근 메시지를 보관 중인 채팅방 수").register(meterRegistry);
+    }
+
+    // 방송된 메시지를 해당 채팅방의 링 버퍼에 추가 (채팅방의 이벤트 처리 스레드에서만 호출)
+    public void add(Long roomId, ChatMessageHistoryDto message) {
+        while (true) {
+            RoomBuffer buffer = buffers.computeIfAbsent(roomId, id -> new RoomBuffer(capacity));
+            if (buffer.touch()) {
+                buffer.add(message);
+                return;
+            }
+            buffers.remove(roomId, buffer); // 방금 제거된 버퍼를 받은 경우, 새 버퍼로 다시 시도
+        }
+    }
+
+    /*
+    채팅방의 최근 메시지 limit 개를 최신순으로 반환한다.
+    메모리에 충분한 메시지가 있으면 그대로 응답하고, 부족하면 loader 로 데이터 베이스에서 최근 메시지를 읽어 버퍼를 채운 뒤 응답한다.
+    loader 는 주어진 개수만큼의 최근 메시지를 최신순으로 반환해야 한다.
+    */
+    public List<ChatMessageHistoryDto> getRecent(Long roomId, int limit, IntFunction<List<ChatMessageHistoryDto>> loader) {
+        if (limit > capacity) {
+            missCounter.increment();
+            return merge(buffers.get(roomId), loader.apply(limit), limit);
+        }
+        RoomBuffer buffer = buffers.computeIfAbsent(roomId, id -> new RoomBuffer(capacity));
+        if (buffer.touch()) {
+            List<ChatMessageHistoryDto> page = buffer.snapshot(limit);
+            if (page.size() >= limit || buffer.isComplete()) {
+                hitCounter.increment();
+                return page;
+            }
+        }
+        missCounter.increment();
+        List<ChatMessageHistoryDto> loaded = loader.apply(capacity);
+        buffer.warm(loaded, loaded.size() < capacity);
+        return merge(buffer, loaded, limit);
+    }
+
+    /*
+    채팅방에서 순번이 afterSeq 보다 큰 메시지를 최신순으로 최대 limit 개 반환한다. (재연결한 클라이언트가 놓친 메시지)
+    버퍼에 afterSeq 이하의 메시지가 남아 있으면 놓친 메시지가 모두 버퍼에 있는 것이므로 메모리에서 응답하고,
+    그렇지 않으면 loader 로 데이터 베이스에서 읽어 아직 저장되지 않은 버퍼의 최신 메시지와 합친다.
+    loader 는 순번이 afterSeq 보다 큰 메시지를 주어진 개수만큼 최신순으로 반환해야 한다.
+    */
+    public List<ChatMessageHistoryDto> getAfter(Long roomId, long afterSeq, int limit, IntFunction<List<ChatMessageHistoryDto>> loader) {
+        RoomBuffer buffer = buffers.get(roomId);
+        List<ChatMessageHistoryDto> cached = buffer != null && buffer.touch() ? buffer.snapshot(capacity) : Collections.emptyList();
+        List<ChatMessageHistoryDto> missed = new ArrayList<>();
+        boolean reached = false;
+        for (ChatMessageHistoryDto message : cached) {
+            if (message.getSeq() == null || message.getSeq() <= afterSeq) {
+                reached = true;
+                break;
+            }
+            if (missed.size() < limit) {
+                missed.add(message);
+            }
+        }
+        if (reached || missed.size() >= limit || (buffer != null && buffer.isComplete())) {
+            replayMemoryCounter.increment();
+            return missed;
+        }
+        replayDatabaseCounter.increment();
+        return merge(missed, loader.apply(limit), limit);
+    }
+
+    // 버퍼의 메시지(아직 저장되지 않은 최신 메시지 포함)와 데이터 베이스에서 읽은 메시지를 합친다.
+    private static List<ChatMessageHistoryDto> merge(RoomBuffer buffer, List<ChatMessageHistoryDto> loaded, int limit) {
+        List<ChatMessageHistoryDto> live = buffer != null ? buffer.liveSnapshot(limit) : Collections.emptyList();
+        return merge(live, loaded, limit);
+    }
+
+    // 최신순인 두 목록을 ID 기준으로 중복 없이 이어 붙인다. (older 에서는 live 의 가장 오래된 메시지보다 오래된 것만 사용)
+    private static List<ChatMessageHistoryDto> merge(List<ChatMessageHistoryDto> live, List<ChatMessageHistoryDto> older, int limit) {
+        if (live.size() >= limit || older.isEmpty()) {
+            return live;
+        }
+        List<ChatMessageHistoryDto> result = new ArrayList<>(limit);
+        result.addAll(live);
+        long oldestLiveId = live.isEmpty() ? Long.MAX_VALUE : live.get(live.size() - 1).getId();
+        for (ChatMessageHistoryDto message : older) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (message.getId() < oldestLiveId) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    // 채팅방의 버퍼를 제거 (제거 표시를 하므로 이 버퍼를 이미 받아간 쓰기는 새 버퍼에서 다시 시도한다)
+    public void removeRoom(Long roomId) {
+        RoomBuffer buffer = buffers.remove(roomId);
+        if (buffer != null) {
+            buffer.lastAccess.set(EVICTED);
+        }
+    }
+
+    // 구독을 해지한 뒤에는 다른 노드의 메시지가 빠지고, 구독을 시작할 때 남아 있는 버퍼는 그 사이의 메시지가 빠져 있으므로 모두 버린다.
+    @Override
+    public void subscriptionChanged(Long roomId, boolean subscribed) {
+        removeRoom(roomId);
+    }
+
+    // 일정 시간 동안 읽기와 쓰기가 없었던 채팅방의 버퍼를 제거
+    @Scheduled(fixedDelayString = "${chat.history-cache.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - idleMillis;
+        int evicted = 0;
+        for (Map.Entry<Long, RoomBuffer> entry : buffers.entrySet()) {
+            RoomBuffer buffer = entry.getValue();
+            if (buffer.evictIfIdle(threshold)) {
+                buffers.remove(entry.getKey(), buffer);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("유휴 채팅방의 최근 메시지 버퍼 제거 : {}개", evicted);
+        }
+    }
+
+    // 채팅방 하나의 링 버퍼
+    private static final class RoomBuffer {
+        private final AtomicReferenceArray<ChatMessageHistoryDto> slots;
+        private final int capacity;
+        private final AtomicLong head = new AtomicLong(); // 지금까지 추가된 메시지 수 (다음에 쓸 위치)
+        private final AtomicLong lastAccess = new AtomicLong(System.currentTimeMillis()); // EVICTED 이면 제거된 버퍼
+
+        private volatile Warmed warmed = Warmed.EMPTY; // 버퍼가 생기기 전의 메시지 (데이터 베이스에서 읽은 값)
+
+        private RoomBuffer(int capacity) {
+            this.capacity = capacity;
+            this.slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        // 접근 시각을 갱신, 이미 제거된 버퍼이면 false
+        private boolean touch() {
+            return lastAccess.getAndSet(System.currentTimeMillis()) != EVICTED;
+        }
+
+        // 마지막 접근이 threshold 이전이면 제거 표시, 표시와 동시에 접근이 일어나면 CAS 가 실패하여 제거하지 않는다.
+        private boolean evictIfIdle(long threshold) {
+            long last = lastAccess.get();
+            return last != EVICTED && last < threshold && lastAccess.compareAndSet(last, EVICTED);
+        }
+
+        private void add(ChatMessageHistoryDto message) {
+            long next = head.get();
+            slots.set((int) (next % capacity), message);
+            head.set(next + 1); // 값을 넣은 뒤에 증가시키므로, 읽는 쪽은 head 이전의 칸만 읽으면 된다.
+            if (next + 1 >= capacity && warmed != Warmed.EMPTY) {
+                warmed = Warmed.EMPTY; // 버퍼가 한 바퀴 찼으면 미리 읽어둔 메시지는 더 이상 필요 없음
+            }
+        }
+
+        // 버퍼에 추가된 메시지를 최신순으로 최대 limit 개 읽는다.
+        private List<ChatMessageHistoryDto> liveSnapshot(int limit) {
+            long end = head.get();
+            long start = Math.max(0, Math.max(end - capacity, end - limit));
+            List<ChatMessageHistoryDto> result = new ArrayList<>((int) (end - start));
+            for (long i = end - 1; i >= start; i--) {
+                result.add(slots.get((int) (i % capacity)));
+            }
+            // 읽는 동안 덮어써졌거나 덮어쓰는 중이었을 수 있는 칸은 버린다. (쓰는 쪽은 칸을 먼저 바꾼 뒤 head 를 증가시킨다)
+            long overwritten = head.get() - capacity + 1;
+            if (overwritten > start) {
+                result = result.subList(0, (int) Math.max(0, end - overwritten));
+            }
+            return result;
+        }
+
+        // 버퍼의 메시지 뒤에 미리 읽어둔 더 오래된 메시지를 이어서 최대 limit 개를 반환
+        private List<ChatMessageHistoryDto> snapshot(int limit) {
+            return RecentMessageCache.merge(liveSnapshot(limit), warmed.messages, limit);
+        }
+
+        private void warm(List<ChatMessageHistoryDto> loaded, boolean complete) {
+            if (head.get() < capacity) {
+                warmed = new Warmed(loaded, complete);
+            }
+        }
+
+        private boolean isComplete() {
+            return warmed.complete;
+        }
+    }
+
+    // 데이터 베이스에서 미리 읽어둔 메시지 (최신순), 두 값을 함께 바꾸기 위해 불변 객체로 관리
+    private static final class Warmed {
+        private static final Warmed EMPTY = new Warmed(Collections.emptyList(), false);
+
+        private final List<ChatMessageHistoryDto> messages;
+        private final boolean complete; // 데이터 베이스에 더 오래된 메시지가 없는지 여부
+
+        private Warmed(List<ChatMessageHistoryDto> messages, boolean complete) {
+            this.messages = messages;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.RoomBroadcast;
+import org.springframework.context.ApplicationEvent;
+
+// 다른 노드에서 RoomBroadcastBus 로 전달된 메시지 이벤트, 채팅방의 이벤트 처리 스레드에서 ChatService 가 처리한다.
+public class RemoteBroadcastEvent extends ApplicationEvent {
+    private final RoomBroadcast broadcast;
+
+    public RemoteBroadcastEvent(RoomBroadcast broadcast) {
+        super(broadcast);
+        this.broadcast = broadcast;
+    }
+
+    public RoomBroadcast getBroadcast() {
+        return broadcast;
+    }
+}
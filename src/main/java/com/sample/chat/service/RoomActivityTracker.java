@@ -0,0 +1,170 @@
+package com.sample.chat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.chat.dto.ChatMessageDto;
+import com.sample.chat.dto.RoomActivityDto;
+import com.sample.chat.dto.RoomBroadcast;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+채팅방의 입력 중 표시(TYPING)와 접속 상태(PRESENCE)를 관리하는 클래스이다.
+이 이벤트들은 저장하지 않는 일시적인 상태이므로, 이벤트 처리 스레드와 데이터 베이스를 거치지 않고 웹소켓 스레드에서 메모리의 상태만 바꾼다.
+
+- 세션별 상태 : 한 회원이 여러 기기(세션)로 접속할 수 있으므로 상태는 세션마다 기록하고, 방송할 때 회원별로 합친다.
+  (세션 중 하나라도 입력 중이면 입력 중, 하나라도 ONLINE 이면 ONLINE) 따라서 한 기기의 퇴장이 다른 기기의 상태를 지우지 않는다.
+- 세션별 디바운스 : 이미 입력 중인 세션의 TYPING 은 만료 시각만 늦추고, 같은 접속 상태로의 변경은 무시한다. (상태가 바뀐 경우에만 방송 대상)
+- 채팅방별 병합 : 상태가 바뀐 채팅방은 chat.activity.interval-ms 마다 한 번, 현재 상태 전체를 ACTIVITY 메시지 하나로 방송한다.
+빈 채팅방의 상태는 방송 스레드가 제거하는데, 상태 변경과 제거는 모두 채팅방 키의 compute 안에서 하므로 제거되는 상태에 쓰는 일이 없다.
+ACTIVITY 는 병합 키가 있는 메시지로 전송되므로, 세션의 전송 큐에서 채팅 메시지보다 나중에 전송되고 아직 보내지 않은 이전 ACTIVITY 는 새 것으로 교체된다.
+따라서 사람이 많은 채팅방에서도 입력 중 표시가 채팅 메시지의 전송을 밀어내지 않는다.
+*/
+@Slf4j
+@Component
+public class RoomActivityTracker {
+    public static final String ONLINE = "ONLINE";
+    public static final String AWAY = "AWAY";
+
+    // 채팅방 하나의 상태, 여러 웹소켓 스레드가 바꾸고 방송 스레드가 읽는다.
+    private static final class RoomActivity {
+        private final Map<String, Long> typingUntil = new ConcurrentHashMap<>(); // 세션 ID -> 입력 중 표시가 만료되는 시각 (nanoTime)
+        private final Map<String, String> presence = new ConcurrentHashMap<>(); // 세션 ID -> 접속 상태
+        private final Map<String, String> emails = new ConcurrentHashMap<>(); // 세션 ID -> 회원 이메일
+        private final AtomicBoolean dirty = new AtomicBoolean(); // 마지막 방송 이후 상태가 바뀌었는지 여부
+
+        private boolean isEmpty() {
+            return typingUntil.isEmpty() && presence.isEmpty() && !dirty.get();
+        }
+    }
+
+    private final ChatService chatService;
+    private final ObjectMapper objectMapper;
+    private final long nodeId;
+    private final long typingTimeoutNanos;
+    private final Map<Long, RoomActivity> rooms = new ConcurrentHashMap<>();
+    private final Counter broadcastCounter;
+
+    @Autowired
+    public RoomActivityTracker(ChatService chatService, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                               @Value("${chat.node-id:0}") long nodeId,
+                               @Value("${chat.activity.typing-timeout-ms:5000}") long typingTimeoutMs) {
+        this.chatService = chatService;
+        this.objectMapper = objectMapper;
+        this.nodeId = nodeId;
+        this.typingTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(typingTimeoutMs);
+        this.broadcastCounter = Counter.builder("chat.activity.broadcasts")
+                .description("방송한 ACTIVITY 메시지 수 (채팅방별 병합 후)").register(meterRegistry);
+    }
+
+    // 세션의 입력 시작(typing = true)이나 중지, 클라이언트는 입력하는 동안 typing-timeout 보다 짧은 간격으로 다시 보내야 한다.
+    public void typing(Long roomId, String sessionId, String email, boolean typing) {
+        if (typing) {
+            rooms.compute(roomId, (id, room) -> {
+                RoomActivity activity = room != null ? room : new RoomActivity();
+                activity.emails.put(sessionId, email);
+                if (activity.typingUntil.put(sessionId, System.nanoTime() + typingTimeoutNanos) == null) {
+                    activity.dirty.set(true);
+                }
+                return activity;
+            });
+        } else {
+            rooms.computeIfPresent(roomId, (id, room) -> {
+                if (room.typingUntil.remove(sessionId) != null) {
+                    room.dirty.set(true);
+                }
+                return room;
+            });
+        }
+    }
+
+    // 세션의 접속 상태 변경 (ONLINE / AWAY)
+    public void presence(Long roomId, String sessionId, String email, String status) {
+        rooms.compute(roomId, (id, room) -> {
+            RoomActivity activity = room != null ? room : new RoomActivity();
+            activity.emails.put(sessionId, email);
+            if (!status.equals(activity.presence.put(sessionId, status))) {
+                activity.dirty.set(true);
+            }
+            return activity;
+        });
+    }
+
+    // 채팅방에서 퇴장하거나 연결이 끊긴 세션의 상태를 제거 (같은 회원의 다른 세션은 그대로)
+    public void leave(Long roomId, String sessionId) {
+        rooms.computeIfPresent(roomId, (id, room) -> {
+            boolean typed = room.typingUntil.remove(sessionId) != null;
+            boolean present = room.presence.remove(sessionId) != null;
+            room.emails.remove(sessionId);
+            if (typed || present) {
+                room.dirty.set(true);
+            }
+            return room;
+        });
+    }
+
+    // 상태가 바뀐 채팅방마다 현재 상태를 한 번씩 방송
+    @Scheduled(fixedDelayString = "${chat.activity.interval-ms:250}")
+    public void flush() {
+        long now = System.nanoTime();
+        for (Map.Entry<Long, RoomActivity> entry : rooms.entrySet()) {
+            Long roomId = entry.getKey();
+            RoomActivity room = entry.getValue();
+            // 다시 보내지 않아 만료된 입력 중 표시를 제거
+            if (room.typingUntil.values().removeIf(until -> until - now < 0)) {
+                room.dirty.set(true);
+            }
+            // 상태를 읽기 전에 dirty 를 내리므로, 읽는 동안 바뀐 상태는 다음 간격에 방송된다.
+            if (room.dirty.compareAndSet(true, false)) {
+                broadcast(roomId, room);
+            } else if (room.isEmpty()) {
+                // 비어 있는지는 compute 안에서 다시 확인한다. (그 사이에 상태가 바뀐 채팅방은 제거하지 않음)
+                rooms.computeIfPresent(roomId, (id, current) -> current == room && room.isEmpty() ? null : current);
+            }
+        }
+    }
+
+    // 세션별 상태를 회원별로 합쳐서 방송 (입력 중인 세션이 하나라도 있으면 입력 중, ONLINE 인 세션이 하나라도 있으면 ONLINE)
+    private void broadcast(Long roomId, RoomActivity room) {
+        Set<String> typing = new LinkedHashSet<>();
+        for (String sessionId : room.typingUntil.keySet()) {
+            String email = room.emails.get(sessionId);
+            if (email != null) {
+                typing.add(email);
+            }
+        }
+        Map<String, String> presence = new HashMap<>();
+        for (Map.Entry<String, String> entry : room.presence.entrySet()) {
+            String email = room.emails.get(entry.getKey());
+            if (email != null) {
+                presence.merge(email, entry.getValue(), (a, b) -> ONLINE.equals(a) || ONLINE.equals(b) ? ONLINE : a);
+            }
+        }
+        RoomActivityDto activity = new RoomActivityDto(nodeId, new ArrayList<>(typing), presence);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(activity);
+        } catch (JsonProcessingException e) {
+            log.error(e.getMessage(), e);
+            return;
+        }
+        ChatMessageDto message = new ChatMessageDto(ChatMessageDto.MessageType.ACTIVITY, String.valueOf(roomId), null, json);
+        // 노드마다 자신의 상태 전체를 보내므로, 같은 노드의 이전 ACTIVITY 만 교체되도록 병합 키에 노드를 포함
+        chatService.sendMessageToAll(new RoomBroadcast(roomId, message, 0L, null, "activity:" + roomId + ":" + nodeId));
+        broadcastCounter.increment();
+    }
+}
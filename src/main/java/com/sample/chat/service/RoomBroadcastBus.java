@@ -0,0 +1,23 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.RoomBroadcast;
+
+/*
+여러 서버(노드)가 채팅방 메시지를 서로 전달하기 위한 메시지 버스이다.
+채팅방의 세션은 각 노드의 ChatRoomRegistry 에만 있기 때문에, 로드 밸런서 뒤에 여러 노드를 두면 다른 노드에 접속한 회원에게는 메시지를 전달할 수 없다.
+각 노드는 자신의 세션에는 직접 전송하고(ChatService), 버스에는 다른 노드에 전달할 메시지를 발행한다.
+다른 노드에서 온 메시지는 해당 채팅방의 이벤트 처리 스레드(RoomEventDispatcher)에서 RemoteBroadcastEvent 로 처리된다.
+
+노드는 자신에게 세션이 있는 채팅방만 구독하며(ChatRoomRegistry 가 첫 세션 입장, 마지막 세션 퇴장 시 호출), 메시지는 구독 중인 노드에만 전달된다.
+구현 : InProcessRoomBroadcastBus (같은 JVM 안의 노드, 기본값), TcpRoomBroadcastBus (TCP 로 연결된 노드)
+*/
+public interface RoomBroadcastBus {
+    // 채팅방을 구독 중인 다른 노드들에 메시지를 전달 (자기 자신에게는 전달하지 않는다)
+    void publish(RoomBroadcast broadcast);
+
+    // 이 노드에 채팅방의 첫 세션이 입장했을 때 호출
+    void subscribe(Long roomId);
+
+    // 이 노드에서 채팅방의 마지막 세션이 퇴장했을 때 호출
+    void unsubscribe(Long roomId);
+}
@@ -0,0 +1,185 @@
+package com.sample.chat.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+채팅방별로 1 씩 증가하는 메시지 순번(seq)을 발급하는 클래스이다.
+메시지 ID(MessageIdGenerator)는 모든 채팅방이 공유하는 값이라 클라이언트가 "몇 개를 놓쳤는지" 알 수 없지만,
+순번은 채팅방마다 따로 증가하므로 재연결한 클라이언트가 마지막으로 받은 순번만 보내면 그 이후의 메시지를 바로 찾을 수 있다.
+
+순번은 채팅 기록을 남기는 채팅방의 이벤트 처리 스레드(RoomEventDispatcher)에서만 발급되므로, 방마다 발급하는 스레드는 하나이다.
+채팅방의 마지막 순번은 처음 사용할 때 데이터 베이스(MAX(seq))에서 읽고, 일정 시간 사용되지 않은 채팅방은 메모리에서 제거한다.
+지연 저장(ChatMessageStore) 중인 메시지가 남아 있는 동안에는 제거하지 않는다. (데이터 베이스 장애로 저장을 재시도하는 중에
+제거하면 MAX(seq) 가 실제로 발급한 순번보다 작아서, 다시 읽은 뒤 이미 사용한 순번을 또 발급하게 된다)
+
+여러 노드(chat.bus.type=tcp)가 같은 채팅방의 순번을 발급하는 경우에는 노드마다 메모리의 값만 증가시키면 같은 순번이 나올 수 있으므로,
+데이터 베이스의 chat_room.last_seq 를 UPDATE 로 1 씩 증가시켜 발급한다. UPDATE 는 행에 락을 잡으므로 동시에 발급해도 순번이 겹치지 않는다.
+대신 메시지마다 짧은 트랜잭션 하나가 추가되며, 데이터 베이스에 연결할 수 없으면 순번을 발급하지 못해 메시지를 처리하지 않는다.
+last_seq 는 이 기능 이전의 메시지(서버 한 대로 발급)를 모르므로, 발급할 때 이 노드가 아는 마지막 순번(MAX(seq), observe)보다 작으면 그 값부터 증가시킨다.
+서버가 한 대이면(in-process) 이 노드만 발급하므로 데이터 베이스를 거치지 않고 메모리에서 발급한다.
+
+다른 노드의 메시지는 구독 중인 채팅방만 전달되므로, 구독이 바뀌면(RoomSubscriptionListener) 채팅방의 순번을 오래된 값으로 표시한다.
+오래된 순번은 다음에 사용할 때 데이터 베이스에서 다시 읽은 값과 비교해 큰 값을 사용하고(아직 저장되지 않은 이 노드의 순번을 잃지 않도록),
+저장되지 않은 메시지가 없으면 다음 제거 주기에 유휴 시간과 관계없이 제거한다.
+*/
+@Slf4j
+@Component
+public class RoomSequencer implements RoomSubscriptionListener {
+    private static final long EVICTED = -1L;
+    private static final String ALLOCATE_SQL = "UPDATE chat_room SET last_seq = GREATEST(last_seq, ?) + 1 WHERE room_id = ?";
+    private static final String LAST_SEQ_SQL = "SELECT last_seq FROM chat_room WHERE room_id = ?";
+
+    private final MessageHistoryService messageHistoryService;
+    private final ChatMessageStore chatMessageStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean allocateInDatabase; // 여러 노드가 발급하는 경우 데이터 베이스에서 발급
+    private final Map<Long, Sequence> sequences = new ConcurrentHashMap<>();
+    private final long idleMillis;
+
+    @Autowired
+    public RoomSequencer(MessageHistoryService messageHistoryService, ChatMessageStore chatMessageStore, JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                         @Value("${chat.bus.type:in-process}") String busType,
+                         @Value("${chat.resume.sequence-idle-evict-ms:600000}") long idleMillis) {
+        this.messageHistoryService = messageHistoryService;
+        this.chatMessageStore = chatMessageStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.allocateInDatabase = "tcp".equals(busType);
+        this.idleMillis = idleMillis;
+        Gauge.builder("chat.sequence.rooms", sequences, Map::size)
+                .description("마지막 순번을 메모리에 보관 중인 채팅방 수").register(meterRegistry);
+    }
+
+    // 채팅방의 다음 순번을 발급 (채팅방의 이벤트 처리 스레드에서만 호출)
+    public long next(Long roomId) {
+        Sequence sequence = sequence(roomId);
+        if (!allocateInDatabase) {
+            return sequence.value.incrementAndGet();
+        }
+        // 증가시킨 값을 같은 트랜잭션에서 읽는다. (커밋 전까지 행의 락을 잡고 있으므로 다른 노드의 발급이 끼어들지 않는다)
+        Long allocated = transactionTemplate.execute(status -> jdbcTemplate.update(ALLOCATE_SQL, sequence.value.get(), roomId) == 1
+                ? jdbcTemplate.queryForObject(LAST_SEQ_SQL, Long.class, roomId)
+                : null);
+        if (allocated == null) {
+            log.debug("순번을 발급할 채팅방이 없음 (삭제된 채팅방) : {}", roomId);
+            return sequence.value.incrementAndGet();
+        }
+        sequence.value.accumulateAndGet(allocated, Math::max);
+        return allocated;
+    }
+
+    // 채팅방에서 마지막으로 발급된 순번 (메시지가 없으면 0), 여러 노드가 발급하는 경우 데이터 베이스의 값도 확인한다.
+    public long current(Long roomId) {
+        Sequence sequence = sequence(roomId);
+        if (allocateInDatabase) {
+            for (Long lastSeq : jdbcTemplate.queryForList(LAST_SEQ_SQL, Long.class, roomId)) {
+                sequence.value.accumulateAndGet(lastSeq, Math::max);
+            }
+        }
+        return sequence.value.get();
+    }
+
+    // 다른 노드에서 발급된 순번을 반영, 이후 이 노드가 발급하는 순번은 항상 그보다 크다.
+    public void observe(Long roomId, long seq) {
+        sequence(roomId).value.accumulateAndGet(seq, Math::max);
+    }
+
+    private Sequence sequence(Long roomId) {
+        while (true) {
+            Sequence sequence = sequences.get(roomId);
+            if (sequence == null) {
+                // 데이터 베이스 조회는 computeIfAbsent 밖에서 수행 (조회하는 동안 같은 버킷의 다른 채팅방을 막지 않도록)
+                Long max = messageHistoryService.findMaxSeq(roomId); // 메시지가 모두 보관 계층으로 옮겨진 채팅방은 세그먼트에서 찾는다.
+                Sequence loaded = new Sequence(max != null ? max : 0L);
+                sequence = sequences.computeIfAbsent(roomId, id -> loaded);
+            }
+            if (sequence.touch()) {
+                if (sequence.stale) {
+                    sequence.stale = false; // 다시 읽는 동안 구독이 또 바뀌면 다음 사용 때 다시 읽는다.
+                    Long max = messageHistoryService.findMaxSeq(roomId);
+                    if (max != null) {
+                        sequence.value.accumulateAndGet(max, Math::max);
+                    }
+                }
+                return sequence;
+            }
+            sequences.remove(roomId, sequence); // 방금 제거된 순번을 받은 경우, 데이터 베이스에서 다시 읽는다.
+        }
+    }
+
+    // 삭제된 채팅방의 순번을 제거 (제거 표시를 하므로 이 순번을 이미 받아간 발급은 다시 읽은 순번을 사용한다)
+    public void removeRoom(Long roomId) {
+        Sequence sequence = sequences.remove(roomId);
+        if (sequence != null) {
+            sequence.lastAccess.set(EVICTED);
+        }
+    }
+
+    // 구독이 바뀐 채팅방의 순번을 오래된 값으로 표시 (바로 제거하면 저장되지 않은 메시지의 순번을 잃을 수 있다)
+    @Override
+    public void subscriptionChanged(Long roomId, boolean subscribed) {
+        Sequence sequence = sequences.get(roomId);
+        if (sequence != null) {
+            sequence.stale = true;
+        }
+    }
+
+    // 일정 시간 동안 사용되지 않은 채팅방과 오래된 값으로 표시된 채팅방의 순번을 제거
+    // 저장되지 않은 메시지가 있으면 이번에는 건너뛴다. 제거할 채팅방의 메시지는 이 확인 전에 발급된 것이므로
+    // 확인 후 제거한 채팅방은 발급한 순번이 모두 테이블에 있고, 확인 후 발급이 있었다면 touch 때문에 제거되지 않는다.
+    @Scheduled(fixedDelayString = "${chat.resume.sequence-evict-interval-ms:60000}")
+    public void evictIdle() {
+        long checked = System.currentTimeMillis();
+        if (chatMessageStore.hasUnflushed()) {
+            log.debug("저장되지 않은 메시지가 있어 순번 제거를 건너뜀");
+            return;
+        }
+        long threshold = checked - idleMillis;
+        int evicted = 0;
+        for (Map.Entry<Long, Sequence> entry : sequences.entrySet()) {
+            Sequence sequence = entry.getValue();
+            if (sequence.evictIfIdle(sequence.stale ? checked : threshold)) {
+                sequences.remove(entry.getKey(), sequence);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("유휴 채팅방의 순번 제거 : {}개", evicted);
+        }
+    }
+
+    // 채팅방 하나의 순번, 제거 표시는 RecentMessageCache 의 버퍼와 같은 방식으로 한다.
+    private static final class Sequence {
+        private final AtomicLong value;
+        private final AtomicLong lastAccess = new AtomicLong(System.currentTimeMillis()); // EVICTED 이면 제거된 순번
+        private volatile boolean stale; // 구독이 바뀌어 다른 노드의 순번을 놓쳤을 수 있는지 여부
+
+        private Sequence(long value) {
+            this.value = new AtomicLong(value);
+        }
+
+        private boolean touch() {
+            return lastAccess.getAndSet(System.currentTimeMillis()) != EVICTED;
+        }
+
+        private boolean evictIfIdle(long threshold) {
+            long last = lastAccess.get();
+            return last != EVICTED && last < threshold && lastAccess.compareAndSet(last, EVICTED);
+        }
+    }
+}
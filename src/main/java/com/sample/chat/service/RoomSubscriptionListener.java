@@ -0,0 +1,11 @@
+package com.sample.chat.service;
+
+/*
+이 노드가 채팅방의 메시지를 받기 시작하거나(첫 세션 입장) 그만둘 때(마지막 세션 퇴장) ChatRoomRegistry 가 호출하는 콜백이다.
+다른 노드의 메시지는 구독 중인 채팅방만 전달되므로(RoomBroadcastBus), 구독하지 않는 동안 채팅방별로 메모리에 쌓아둔 값은 다른 노드가 보낸 메시지를 반영하지 못한다.
+이런 값을 보관하는 클래스(RecentMessageCache, RoomSequencer)가 구현하여 구독이 바뀔 때 채팅방의 값을 버린다.
+*/
+public interface RoomSubscriptionListener {
+    // 채팅방의 구독이 바뀐 직후 호출 (subscribed : 구독을 시작했으면 true), 채팅방 샤드의 락 안에서 호출되므로 가볍게 처리해야 한다.
+    void subscriptionChanged(Long roomId, boolean subscribed);
+}
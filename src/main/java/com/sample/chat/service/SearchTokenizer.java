@@ -0,0 +1,78 @@
+package com.sample.chat.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/*
+메시지 검색(MessageSearchIndex)에서 메시지와 검색어를 색인어(term)로 나누는 클래스이다.
+한글은 띄어쓰기만으로는 조사가 붙은 단어(예 : "회의는", "회의를")를 같은 단어로 찾을 수 없기 때문에,
+형태소 분석 대신 연속된 두 글자씩(bigram) 나누어 색인한다. (예 : "회의는" -> "회의", "의는")
+검색어도 같은 방식으로 나누어 모든 색인어가 들어있는 메시지를 찾으므로, "회의" 로 "회의는", "회의를" 이 모두 검색된다.
+영문과 숫자는 공백과 기호로 나눈 단어 단위로 색인하고, 대소문자는 구분하지 않는다.
+*/
+final class SearchTokenizer {
+    static final int MAX_TERM_LENGTH = 32; // 이보다 긴 단어는 앞부분만 색인 (URL 등)
+
+    private SearchTokenizer() {
+    }
+
+    // 메시지의 색인어와 각 색인어가 나온 횟수
+    static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (String term : tokenize(text)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    // 검색어의 색인어 (중복 제거)
+    static Set<String> queryTerms(String query) {
+        return new LinkedHashSet<>(tokenize(query));
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            char c = normalized.charAt(i);
+            if (isBigramChar(c)) {
+                int start = i;
+                while (i < length && isBigramChar(normalized.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1) {
+                    terms.add(normalized.substring(start, i)); // 한 글자 단어는 그대로 색인
+                }
+                for (int j = start; j + 1 < i; j++) {
+                    terms.add(normalized.substring(j, j + 2));
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                while (i < length && Character.isLetterOrDigit(normalized.charAt(i)) && !isBigramChar(normalized.charAt(i))) {
+                    i++;
+                }
+                terms.add(normalized.substring(start, Math.min(i, start + MAX_TERM_LENGTH)));
+            } else {
+                i++;
+            }
+        }
+        return terms;
+    }
+
+    // 띄어쓰기로 단어를 나눌 수 없는 문자 (한글, 한자, 일본어)
+    static boolean isBigramChar(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HANGUL || script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA || script == Character.UnicodeScript.KATAKANA;
+    }
+}
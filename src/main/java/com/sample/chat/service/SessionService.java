@@ -2,45 +2,145 @@ package com.sample.chat.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.socket.WebSocketSession;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /*
 웹소켓 세션을 관리하는 클래스이다.
 웹소켓 세션은 클라이언트아 서버 간의 실시간 양방향 통신을 가능하게 하는 연결을 나타낸다.
-해당 클래스에서 웹소켓 세션과 해당 세션이 연결된 채팅방의 ID 를 관리한다.
+해당 클래스에서 웹소켓 세션과 회원 ID, 그리고 해당 세션이 입장한 채팅방 ID 들을 양방향으로 색인하여 관리한다.
+모든 조회는 Map 한 번의 접근으로 끝나기 때문에, 접속 중인 세션의 수와 무관하게 일정한 비용이 든다.
 */
 @Slf4j
-@Transactional(readOnly = true)
 @Service // 웹소켓 세션 관련 로직을 수행
 public class SessionService {
-    private final Map<WebSocketSession, String> sessionRoomIdMap = new ConcurrentHashMap<>();
+    // 세션 ID -> 세션
+    private final Map<String, WebSocketSession> sessionMap = new ConcurrentHashMap<>();
+    // 세션 ID -> 회원 ID
+    private final Map<String, Long> sessionMemberMap = new ConcurrentHashMap<>();
+    // 세션 ID -> 입장한 채팅방 ID 들
+    private final Map<String, Set<Long>> sessionRoomMap = new ConcurrentHashMap<>();
+    // 회원 ID -> 세션들 (한 회원이 여러 기기에서 동시에 접속할 수 있기 때문에 Set 으로 관리)
+    private final Map<Long, Set<WebSocketSession>> memberSessionMap = new ConcurrentHashMap<>();
 
-    // 사용자가 채팅방에 입장할 때 호출, 새로운 웹소켓 세션을 생성하고, 해당 세션을 특정 채팅방 ID와 연결
-    @Transactional
+    // 웹소켓 연결이 수립되었을 때 호출, 새로운 세션을 등록
+    public void putSession(WebSocketSession session) {
+        sessionMap.put(session.getId(), session);
+    }
+
+    // 사용자가 채팅방에 입장할 때 호출, 해당 세션을 특정 채팅방 ID와 연결
     public void putSession(WebSocketSession session, String roomId) {
-        sessionRoomIdMap.put(session, roomId);
+        putSession(session);
+        sessionRoomMap.computeIfAbsent(session.getId(), id -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
+                .add(Long.valueOf(roomId));
+    }
+
+    // 세션의 회원을 확인했을 때 호출, 세션과 회원 ID를 서로 연결
+    public void bindMember(WebSocketSession session, Long memberId) {
+        Long previous = sessionMemberMap.put(session.getId(), memberId);
+        if (previous != null && !previous.equals(memberId)) {
+            // 같은 세션에서 다른 회원으로 바뀐 경우, 이전 회원의 색인에서 세션을 제거
+            unbindMember(previous, session);
+        }
+        memberSessionMap.compute(memberId, (id, sessions) -> {
+            if (sessions == null) {
+                sessions = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            }
+            sessions.add(session);
+            return sessions;
+        });
+        // 연결이 종료된 이후에도 퇴장 처리에서 회원을 알 수 있도록 세션의 속성에도 저장
+        session.getAttributes().put("memberId", memberId);
+    }
+
+    // 사용자가 채팅방에서 퇴장할 때 호출, 세션과 해당 채팅방 ID의 연결을 제거
+    public void exitRoom(WebSocketSession session, String roomId) {
+        sessionRoomMap.computeIfPresent(session.getId(), (id, rooms) -> {
+            rooms.remove(Long.valueOf(roomId));
+            return rooms.isEmpty() ? null : rooms;
+        });
+    }
+
+    // 웹소켓 연결이 종료될 때 호출, 주어진 세션의 모든 색인을 제거하고 세션이 입장해 있던 채팅방 ID 들을 반환
+    public Set<Long> removeSession(WebSocketSession session) {
+        String sessionId = session.getId();
+        // 색인에는 등록 시점의 세션 객체(데코레이터)가 들어있으므로, 세션 ID 로 찾은 객체를 기준으로 제거
+        WebSocketSession stored = sessionMap.remove(sessionId);
+        Long memberId = sessionMemberMap.remove(sessionId);
+        if (memberId != null) {
+            unbindMember(memberId, stored != null ? stored : session);
+        }
+        Set<Long> rooms = sessionRoomMap.remove(sessionId);
+        return rooms != null ? rooms : Collections.emptySet();
     }
 
-    // 사용자가 채팅방에서 퇴장할 때 호출, 주어진 웹소켓 세션을 제거
-    @Transactional
-    public String removeSession(WebSocketSession session) {
-        return sessionRoomIdMap.remove(session);
+    private void unbindMember(Long memberId, WebSocketSession session) {
+        memberSessionMap.computeIfPresent(memberId, (id, sessions) -> {
+            sessions.remove(session);
+            return sessions.isEmpty() ? null : sessions;
+        });
     }
 
-    // 특정 사용자의 웹소켓 세션을 조회할 때 사용, 주어진 사용자 ID 에 해당하는 웹소켓 세션을 탐색
+    // 특정 사용자의 웹소켓 세션을 조회할 때 사용, 여러 기기로 접속한 경우 그 중 하나를 반환
     public WebSocketSession findSessionByMemberId(Long memberId) {
-        for (Map.Entry<WebSocketSession, String> entry : sessionRoomIdMap.entrySet()) {
-            WebSocketSession session = entry.getKey();
-            Long sessionId = (Long) session.getAttributes().get("memberId");
-            if (memberId.equals(sessionId)) {
+        Set<WebSocketSession> sessions = memberSessionMap.get(memberId);
+        if (sessions != null) {
+            for (WebSocketSession session : sessions) {
                 return session;
             }
         }
         return null;
     }
-}
 
+    // 특정 사용자의 모든 웹소켓 세션을 조회
+    public Set<WebSocketSession> findSessionsByMemberId(Long memberId) {
+        Set<WebSocketSession> sessions = memberSessionMap.get(memberId);
+        return sessions != null ? Collections.unmodifiableSet(sessions) : Collections.emptySet();
+    }
+
+    // 여러 사용자의 웹소켓 세션을 한 번에 조회 (방송 시 수신자 전체를 한 번의 순회로 결정)
+    public List<WebSocketSession> findSessionsByMemberIds(Collection<Long> memberIds) {
+        List<WebSocketSession> result = new ArrayList<>(memberIds.size());
+        for (Long memberId : memberIds) {
+            Set<WebSocketSession> sessions = memberSessionMap.get(memberId);
+            if (sessions != null) {
+                result.addAll(sessions);
+            }
+        }
+        return result;
+    }
+
+    // 세션 ID 로 세션을 조회
+    public WebSocketSession findSessionById(String sessionId) {
+        return sessionMap.get(sessionId);
+    }
+
+    // 세션에 연결된 회원 ID 를 조회 (연결 종료 후에는 세션 속성에 남아있는 값을 사용)
+    public Long findMemberId(WebSocketSession session) {
+        Long memberId = sessionMemberMap.get(session.getId());
+        return memberId != null ? memberId : (Long) session.getAttributes().get("memberId");
+    }
+
+    // 세션이 입장해 있는 채팅방 ID 들을 조회
+    public Set<Long> findRoomIds(WebSocketSession session) {
+        Set<Long> rooms = sessionRoomMap.get(session.getId());
+        return rooms != null ? Collections.unmodifiableSet(rooms) : Collections.emptySet();
+    }
+
+    // 현재 연결된 모든 세션
+    public Collection<WebSocketSession> getSessions() {
+        return Collections.unmodifiableCollection(sessionMap.values());
+    }
+
+    // 현재 연결된 세션의 수
+    public int getSessionCount() {
+        return sessionMap.size();
+    }
+}
@@ -0,0 +1,591 @@
+package com.sample.chat.service;
+
+import com.sample.chat.config.RoomEventDispatcher;
+import com.sample.chat.dto.ChatMessageDto;
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.dto.RoomBroadcast;
+import com.sample.chat.entity.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+노드끼리 TCP 로 직접 연결하는 RoomBroadcastBus 구현이다. (chat.bus.type=tcp)
+별도의 브로커 없이 각 노드가 chat.bus.tcp.port 로 연결을 받고, chat.bus.tcp.peers 의 노드들에 연결한다. (한 대의 PC 에서 포트만 다르게 하여 실행 가능)
+
+노드 A 가 노드 B 에 맺은 연결로는 A 의 구독 변경(채팅방 ID)과 A 가 발행한 메시지가 전달된다.
+B 는 그 연결로 받은 A 의 구독 목록을 기억해 두었다가, A 가 구독 중인 채팅방의 메시지만 B 가 A 에 맺은 연결로 보낸다.
+연결이 끊기면 받은 쪽은 해당 노드의 구독 목록을 지우고, 다시 연결되면 보내는 쪽이 현재 구독 목록 전체를 다시 보낸다.
+
+연결마다 하나의 전송 스레드가 대기열을 비우는데, 대기열에 쌓인 메시지는 한 번에 꺼내 하나의 프레임으로 묶어 보낸다. (batching)
+또한 묶은 메시지 중 coalesceKey 가 같은 메시지는 마지막 것만 보낸다. (coalescing, 입력 중 표시처럼 최신 상태만 의미 있는 메시지)
+대기열이 가득 차면 발행하는 쪽(채팅방의 이벤트 처리 스레드)을 멈추지 않고 메시지를 버린다.
+
+연결은 chat.bus.tcp.bind-address 의 주소로만 받고, chat.bus.tcp.peers 에 적힌 호스트가 아닌 곳의 연결은 바로 끊는다.
+연결을 받은 노드는 임의의 값(challenge)을 먼저 보내고, 연결한 노드는 HELLO 에 그 값과 노드 ID 를 공유 비밀 키(chat.bus.tcp.secret)로 계산한 HMAC 을 담는다.
+서명이 맞지 않는 연결은 끊으므로, 비밀 키를 모르는 곳에서는 메시지를 넣을 수 없고 엿들은 HELLO 를 다시 보내도 통하지 않는다.
+HELLO 에는 프레임 형식의 버전(PROTOCOL_VERSION)도 담는다. 순차 배포 중에 버전이 다른 노드와 연결되면 서로의 프레임을 잘못 읽게 되므로,
+받는 쪽은 버전이 다르면 연결을 끊는다. (배포가 끝나 양쪽 버전이 같아지면 다시 연결된다) 프레임 형식을 바꿀 때는 버전을 올려야 한다.
+
+프레임 (DataOutputStream, 빅 엔디언)
+받는 쪽 -> 연결한 쪽 : [challenge 16 바이트]
+HELLO 'H' [버전 1 바이트] [노드 ID] [HMAC 32 바이트] / SUBSCRIBE 'S' [채팅방 ID] / UNSUBSCRIBE 'U' [채팅방 ID] / BATCH 'B' [메시지 수] [메시지]...
+알 수 없는 메시지 종류가 담긴 메시지는 버리고(형식은 같으므로 다음 메시지부터 계속 읽는다), 알 수 없는 프레임을 받으면 연결을 끊는다.
+*/
+@Slf4j
+public class TcpRoomBroadcastBus implements RoomBroadcastBus, SmartLifecycle {
+    static final byte PROTOCOL_VERSION = 2; // 2 : 메시지에 순번과 보낸 회원의 이메일 추가
+    private static final byte HELLO = 'H';
+    private static final byte SUBSCRIBE = 'S';
+    private static final byte UNSUBSCRIBE = 'U';
+    private static final byte BATCH = 'B';
+    private static final int MAX_STRING_BYTES = 1 << 20; // 잘못된 데이터로 큰 배열을 만들지 않도록 문자열 길이를 제한
+    private static final long RECONNECT_DELAY_MS = 1000;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000; // challenge 와 HELLO 를 기다리는 최대 시간
+    private static final int CHALLENGE_BYTES = 16;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final String nodeId; // 다른 노드들의 chat.bus.tcp.peers 에 적힌 이 노드의 주소
+    private final String bindAddress; // 연결을 받을 주소 (내부망 인터페이스)
+    private final int port;
+    private final SecretKeySpec secret; // 노드끼리 공유하는 비밀 키
+    private final SecureRandom random = new SecureRandom();
+    private final Consumer<RoomBroadcast> receiver; // 다른 노드에서 온 메시지를 처리
+    private final int maxBatchSize;
+    private final List<PeerLink> links = new ArrayList<>();
+
+    private final Set<Long> subscribedRoomIds = ConcurrentHashMap.newKeySet(); // 이 노드가 구독 중인 채팅방
+    private final Map<String, Set<Long>> peerSubscriptions = new ConcurrentHashMap<>(); // 노드 ID -> 해당 노드가 구독 중인 채팅방
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+
+    private final Counter sentCounter;
+    private final Counter receivedCounter;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+    private final DistributionSummary batchSizeSummary;
+
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+
+    public TcpRoomBroadcastBus(String nodeId, String bindAddress, int port, List<String> peers, String secret,
+                               int maxBatchSize, int queueCapacity, Consumer<RoomBroadcast> receiver, MeterRegistry meterRegistry) {
+        if (secret == null || secret.length() < 16) {
+            throw new IllegalArgumentException("chat.bus.tcp.secret 에 모든 노드가 같은 16 자 이상의 비밀 키를 설정해야 합니다.");
+        }
+        this.nodeId = nodeId;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        this.maxBatchSize = maxBatchSize;
+        this.receiver = receiver;
+        for (String peer : peers) {
+            if (!peer.isBlank() && !peer.trim().equals(nodeId)) {
+                links.add(new PeerLink(peer.trim(), queueCapacity));
+            }
+        }
+        this.sentCounter = Counter.builder("chat.bus.messages").tag("direction", "sent")
+                .description("다른 노드에 보낸 메시지 수").register(meterRegistry);
+        this.receivedCounter = Counter.builder("chat.bus.messages").tag("direction", "received")
+                .description("다른 노드에서 받은 메시지 수").register(meterRegistry);
+        this.droppedCounter = Counter.builder("chat.bus.dropped")
+                .description("대기열 초과나 연결 끊김으로 다른 노드에 보내지 못한 메시지 수").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("chat.bus.rejected")
+                .description("허용되지 않은 호스트, 인증 실패, 프로토콜 버전이 달라 끊은 연결과, 형식이 잘못되어 버린 메시지 수").register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("chat.bus.batch.size")
+                .description("프레임 하나에 묶어 보낸 메시지 수").register(meterRegistry);
+    }
+
+    @Override
+    public void publish(RoomBroadcast broadcast) {
+        for (PeerLink link : links) {
+            Set<Long> roomIds = peerSubscriptions.get(link.nodeId);
+            if (roomIds != null && roomIds.contains(broadcast.getRoomId()) && !link.queue.offer(broadcast)) {
+                droppedCounter.increment();
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Long roomId) {
+        if (subscribedRoomIds.add(roomId)) {
+            links.forEach(link -> link.sendControl(SUBSCRIBE, roomId));
+        }
+    }
+
+    @Override
+    public void unsubscribe(Long roomId) {
+        if (subscribedRoomIds.remove(roomId)) {
+            links.forEach(link -> link.sendControl(UNSUBSCRIBE, roomId));
+        }
+    }
+
+    // 연결을 받을 포트 (port 를 0 으로 설정한 경우 실제로 열린 포트)
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void start() {
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port));
+        } catch (IOException e) {
+            throw new IllegalStateException("메시지 버스 포트를 열 수 없습니다 : " + bindAddress + ":" + port, e);
+        }
+        running = true;
+        newThread(this::acceptLoop, "chat-bus-accept").start();
+        for (PeerLink link : links) {
+            link.thread = newThread(link::writeLoop, "chat-bus-out-" + link.nodeId);
+            link.thread.start();
+        }
+        log.info("메시지 버스 시작 : {} ({}:{}, 연결할 노드 {})", nodeId, bindAddress, getLocalPort(), links.size());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        closeQuietly(serverSocket);
+        inboundSockets.forEach(TcpRoomBroadcastBus::closeQuietly);
+        for (PeerLink link : links) {
+            if (link.thread != null) {
+                link.thread.interrupt();
+            }
+            link.disconnect();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // 웹 서버가 종료된 뒤, 이벤트 처리 스레드(RoomEventDispatcher)보다 먼저 종료
+    @Override
+    public int getPhase() {
+        return RoomEventDispatcher.PHASE + 2048;
+    }
+
+    // 다른 노드의 연결을 받아 노드마다 수신 스레드를 실행 (peers 에 없는 호스트의 연결은 바로 끊는다)
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (!isPeerAddress(socket.getInetAddress())) {
+                    rejectedCounter.increment();
+                    log.warn("허용되지 않은 호스트의 메시지 버스 연결 거부 : {}", socket.getRemoteSocketAddress());
+                    closeQuietly(socket);
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                inboundSockets.add(socket);
+                newThread(() -> readLoop(socket), "chat-bus-in-" + socket.getRemoteSocketAddress()).start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("메시지 버스 연결 수락 실패 : {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // 연결한 주소가 peers 에 적힌 호스트 중 하나인지 (호스트 이름은 연결을 받을 때마다 다시 조회)
+    private boolean isPeerAddress(InetAddress remote) {
+        for (PeerLink link : links) {
+            try {
+                for (InetAddress address : InetAddress.getAllByName(link.address.getHostString())) {
+                    if (address.equals(remote)) {
+                        return true;
+                    }
+                }
+            } catch (UnknownHostException e) {
+                log.debug("메시지 버스 노드 주소 조회 실패 : {}", link.nodeId);
+            }
+        }
+        return false;
+    }
+
+    // 수신 스레드 : challenge 를 보내고 HELLO 를 확인한 뒤, 다른 노드의 구독 변경과 메시지를 읽는다.
+    private void readLoop(Socket socket) {
+        String peerId = null;
+        Set<Long> roomIds = ConcurrentHashMap.newKeySet();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            byte[] challenge = new byte[CHALLENGE_BYTES];
+            random.nextBytes(challenge);
+            socket.getOutputStream().write(challenge);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            if (in.readByte() != HELLO) {
+                throw new IOException("HELLO 프레임이 아닙니다.");
+            }
+            byte version = in.readByte();
+            if (version != PROTOCOL_VERSION) {
+                rejectedCounter.increment();
+                log.error("프로토콜 버전이 다른 메시지 버스 연결 거부 : {} (버전 {}, 이 노드 {})",
+                        socket.getRemoteSocketAddress(), version, PROTOCOL_VERSION);
+                return;
+            }
+            String helloId = readString(in);
+            byte[] signature = new byte[32];
+            in.readFully(signature);
+            if (helloId == null || !MessageDigest.isEqual(signature, sign(challenge, version, helloId))) {
+                rejectedCounter.increment();
+                log.error("인증에 실패한 메시지 버스 연결 거부 : {} ({})", socket.getRemoteSocketAddress(), helloId);
+                return;
+            }
+            socket.setSoTimeout(0);
+            peerId = helloId;
+            peerSubscriptions.put(peerId, roomIds); // 다시 연결된 경우 이전 구독 목록을 교체
+            log.info("메시지 버스 노드 연결 : {}", peerId);
+            while (running) {
+                byte kind = in.readByte();
+                if (kind == SUBSCRIBE) {
+                    roomIds.add(in.readLong());
+                } else if (kind == UNSUBSCRIBE) {
+                    roomIds.remove(in.readLong());
+                } else if (kind == BATCH) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        RoomBroadcast broadcast = readBroadcast(in);
+                        if (broadcast != null) {
+                            receive(broadcast);
+                        } else {
+                            rejectedCounter.increment();
+                            log.error("알 수 없는 메시지 종류가 담긴 다른 노드의 메시지를 버림 : {}", peerId);
+                        }
+                    }
+                } else {
+                    throw new IOException("알 수 없는 프레임 : " + kind);
+                }
+            }
+        } catch (EOFException e) {
+            log.info("메시지 버스 노드 연결 종료 : {}", peerId);
+        } catch (IOException e) {
+            if (running) {
+                log.warn("메시지 버스 수신 실패 : {} ({})", peerId, e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            // 예상하지 못한 오류도 연결을 끊고 기록한다. (상대 노드가 다시 연결하면서 구독 목록을 다시 보낸다)
+            log.error("메시지 버스 수신 처리 실패, 연결을 끊음 : {}", peerId, e);
+        } finally {
+            if (peerId != null) {
+                peerSubscriptions.remove(peerId, roomIds); // 그 사이 다시 연결되어 교체된 목록은 지우지 않는다.
+            }
+            inboundSockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void receive(RoomBroadcast broadcast) {
+        receivedCounter.increment();
+        try {
+            receiver.accept(broadcast);
+        } catch (RuntimeException e) {
+            log.error("다른 노드의 메시지 처리 실패 (room {})", broadcast.getRoomId(), e);
+        }
+    }
+
+    // 묶어 보낼 메시지 중 coalesceKey 가 같은 메시지는 마지막 것만 남긴다. (순서는 유지)
+    static List<RoomBroadcast> coalesce(List<RoomBroadcast> batch) {
+        Set<String> seen = null;
+        List<RoomBroadcast> result = new ArrayList<>(batch.size());
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            RoomBroadcast broadcast = batch.get(i);
+            String key = broadcast.getCoalesceKey();
+            if (key != null) {
+                if (seen == null) {
+                    seen = new HashSet<>();
+                }
+                if (!seen.add(key)) {
+                    continue;
+                }
+            }
+            result.add(broadcast);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    static void writeBroadcast(DataOutputStream out, RoomBroadcast broadcast) throws IOException {
+        ChatMessageDto message = broadcast.getMessage();
+        out.writeLong(broadcast.getRoomId());
+        out.writeLong(broadcast.getMemberId());
+        out.writeByte(message.getType().getCode());
+        writeString(out, message.getSender());
+        writeString(out, message.getMessage());
+        writeString(out, broadcast.getCoalesceKey());
+        ChatMessageHistoryDto history = broadcast.getHistory();
+        out.writeBoolean(history != null);
+        if (history != null) {
+            out.writeLong(history.getId());
+            out.writeLong(history.getSeq());
+            out.writeByte(history.getType().getCode());
+            writeString(out, history.getText());
+            writeString(out, history.getSenderEmail());
+            writeString(out, history.getSenderName());
+            out.writeLong(history.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(history.getTimestamp().getNano());
+        }
+    }
+
+    // 메시지 하나를 끝까지 읽는다. 메시지 종류를 알 수 없으면 (더 새로운 노드가 보낸 종류 등) null
+    static RoomBroadcast readBroadcast(DataInputStream in) throws IOException {
+        Long roomId = in.readLong();
+        long memberId = in.readLong();
+        ChatMessageDto.MessageType type = messageType(in.readUnsignedByte());
+        ChatMessageDto message = new ChatMessageDto(type, String.valueOf(roomId), readString(in), readString(in));
+        String coalesceKey = readString(in);
+        ChatMessageHistoryDto history = null;
+        boolean known = type != null;
+        if (in.readBoolean()) {
+            long id = in.readLong();
+            long seq = in.readLong();
+            ChatMessage.MessageType historyType = historyType(in.readUnsignedByte());
+            known &= historyType != null;
+            history = new ChatMessageHistoryDto(id, seq, historyType, readString(in),
+                    memberId != 0 ? memberId : null, readString(in), readString(in),
+                    LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+            message.setSeq(history.getSeq()); // 채팅 기록 메시지의 순번은 기록과 같다.
+        }
+        return known ? new RoomBroadcast(roomId, message, memberId, history, coalesceKey) : null;
+    }
+
+    private static ChatMessageDto.MessageType messageType(int code) {
+        try {
+            return ChatMessageDto.MessageType.fromCode(code);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ChatMessage.MessageType historyType(int code) {
+        try {
+            return ChatMessage.MessageType.fromCode(code);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // HELLO 의 서명 : 받는 쪽이 보낸 challenge, 버전, 노드 ID 의 HMAC-SHA256
+    private byte[] sign(byte[] challenge, byte version, String helloId) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secret);
+            mac.update(challenge);
+            mac.update(version);
+            return mac.doFinal(helloId.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 문자열은 [UTF-8 바이트 수][UTF-8 바이트], null 은 길이 -1 (writeUTF 는 64KB 까지만 쓸 수 있어 사용하지 않는다)
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_BYTES) {
+            throw new IOException("문자열이 너무 깁니다 : " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // 다른 노드 하나로 보내는 연결과 전송 대기열
+    private final class PeerLink {
+        private final String nodeId;
+        private final InetSocketAddress address;
+        private final BlockingQueue<RoomBroadcast> queue;
+        // 구독 변경은 메시지보다 먼저, 빠짐없이 보내야 하므로 별도의 대기열을 사용 (연결되어 있을 때만 쌓인다)
+        private final BlockingQueue<long[]> controls = new ArrayBlockingQueue<>(4096);
+        private volatile Thread thread;
+        private volatile Socket socket;
+        private volatile boolean connected;
+
+        private PeerLink(String nodeId, int queueCapacity) {
+            int separator = nodeId.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("chat.bus.tcp.peers 는 host:port 형식이어야 합니다 : " + nodeId);
+            }
+            this.nodeId = nodeId;
+            this.address = InetSocketAddress.createUnresolved(nodeId.substring(0, separator),
+                    Integer.parseInt(nodeId.substring(separator + 1)));
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        // 연결되어 있지 않으면 다시 연결할 때 전체 목록을 보내므로 쌓지 않는다.
+        // 구독 변경이 너무 많이 밀린 경우에는 연결을 끊어서 다시 연결할 때 전체 목록을 다시 보내게 한다.
+        private void sendControl(byte kind, Long roomId) {
+            if (connected && !controls.offer(new long[]{kind, roomId})) {
+                log.warn("구독 변경 대기열 초과, 노드 연결을 다시 맺음 : {}", nodeId);
+                disconnect();
+            }
+        }
+
+        // 전송 스레드 : 연결을 유지하면서 구독 변경과 메시지를 보낸다.
+        private void writeLoop() {
+            List<RoomBroadcast> batch = new ArrayList<>(maxBatchSize);
+            while (running) {
+                DataOutputStream out;
+                try {
+                    out = connect();
+                } catch (IOException e) {
+                    log.debug("메시지 버스 노드 연결 실패 : {} ({})", nodeId, e.getMessage());
+                    disconnect();
+                    if (!sleep(RECONNECT_DELAY_MS)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    while (running && connected) {
+                        RoomBroadcast first = queue.poll(100, TimeUnit.MILLISECONDS);
+                        writeControls(out);
+                        if (first != null) {
+                            batch.add(first);
+                            queue.drainTo(batch, maxBatchSize - 1);
+                            writeBatch(out, coalesce(batch));
+                            batch.clear();
+                        }
+                        out.flush(); // 대기열에 쌓여 있던 구독 변경과 메시지를 한 번에 전송
+                    }
+                } catch (IOException e) {
+                    log.warn("메시지 버스 전송 실패 : {} ({})", nodeId, e.getMessage());
+                    droppedCounter.increment(batch.size());
+                    batch.clear();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    disconnect();
+                }
+            }
+        }
+
+        // 연결 후 받은 challenge 에 서명한 HELLO 와 현재 구독 목록 전체를 보낸다.
+        private DataOutputStream connect() throws IOException {
+            Socket newSocket = new Socket();
+            socket = newSocket;
+            newSocket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), 1000);
+            newSocket.setTcpNoDelay(true);
+            byte[] challenge = new byte[CHALLENGE_BYTES];
+            newSocket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            new DataInputStream(newSocket.getInputStream()).readFully(challenge);
+            newSocket.setSoTimeout(0);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream(), 64 * 1024));
+            out.writeByte(HELLO);
+            out.writeByte(PROTOCOL_VERSION);
+            writeString(out, TcpRoomBroadcastBus.this.nodeId);
+            out.write(sign(challenge, PROTOCOL_VERSION, TcpRoomBroadcastBus.this.nodeId));
+            // 목록을 읽기 전에 connected 를 설정하므로, 그 사이에 바뀐 구독은 목록이나 controls 중 적어도 한 곳에 포함된다.
+            connected = true;
+            for (Long roomId : subscribedRoomIds) {
+                out.writeByte(SUBSCRIBE);
+                out.writeLong(roomId);
+            }
+            out.flush();
+            log.info("메시지 버스 노드에 연결 : {}", nodeId);
+            return out;
+        }
+
+        private void writeControls(DataOutputStream out) throws IOException {
+            long[] control;
+            while ((control = controls.poll()) != null) {
+                out.writeByte((byte) control[0]);
+                out.writeLong(control[1]);
+            }
+        }
+
+        private void writeBatch(DataOutputStream out, List<RoomBroadcast> broadcasts) throws IOException {
+            out.writeByte(BATCH);
+            out.writeInt(broadcasts.size());
+            for (RoomBroadcast broadcast : broadcasts) {
+                writeBroadcast(out, broadcast);
+            }
+            sentCounter.increment(broadcasts.size());
+            batchSizeSummary.record(broadcasts.size());
+        }
+
+        // 연결을 끊고 보내지 못한 메시지를 버린다. (다시 연결되면 상대 노드가 구독 목록을 다시 받은 뒤부터 전달)
+        private void disconnect() {
+            connected = false;
+            closeQuietly(socket);
+            controls.clear();
+            int dropped = queue.size();
+            queue.clear();
+            if (dropped > 0) {
+                droppedCounter.increment(dropped);
+            }
+        }
+
+        private boolean sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
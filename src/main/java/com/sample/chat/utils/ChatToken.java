@@ -0,0 +1,67 @@
+package com.sample.chat.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/*
+웹소켓 연결에 사용하는 서명된 토큰이다. 로그인에 성공한 회원에게 발급하고, 핸드셰이크에서 검증한다. (MemberHandshakeInterceptor)
+형식은 "회원 ID.만료 시각(ms).서명" 이며, 서명은 앞의 두 값을 비밀 키로 계산한 HMAC-SHA256 (base64url) 이다.
+서버에 상태를 저장하지 않으므로 같은 비밀 키를 사용하는 서버라면 어느 서버에서 발급한 토큰이든 검증할 수 있다.
+*/
+public final class ChatToken {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    public ChatToken(byte[] secret) {
+        if (secret.length < 16) {
+            throw new IllegalArgumentException("비밀 키는 16 바이트 이상이어야 합니다.");
+        }
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    // 회원에게 expiresAt(ms) 까지 유효한 토큰을 발급
+    public String issue(long memberId, long expiresAt) {
+        String payload = memberId + "." + expiresAt;
+        return payload + "." + sign(payload);
+    }
+
+    // 서명이 맞고 만료되지 않은 토큰이면 회원 ID, 아니면 null
+    public Long verify(String token, long now) {
+        if (token == null) {
+            return null;
+        }
+        int second = token.lastIndexOf('.');
+        int first = second > 0 ? token.lastIndexOf('.', second - 1) : -1;
+        if (first <= 0) {
+            return null;
+        }
+        String payload = token.substring(0, second);
+        byte[] expected = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, token.substring(second + 1).getBytes(StandardCharsets.US_ASCII))) {
+            return null; // 서명 비교는 일치하는 길이에 따라 시간이 달라지지 않도록 MessageDigest.isEqual 을 사용
+        }
+        try {
+            long memberId = Long.parseLong(token.substring(0, first));
+            long expiresAt = Long.parseLong(token.substring(first + 1, second));
+            return expiresAt > now ? memberId : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM); // Mac 은 스레드에 안전하지 않으므로 호출마다 생성
+            mac.init(key);
+            byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
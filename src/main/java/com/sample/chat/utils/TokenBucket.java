@@ -0,0 +1,42 @@
+package com.sample.chat.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+초당 rate 개의 토큰이 채워지고 최대 burst 개까지 모아둘 수 있는 토큰 버킷이다.
+토큰 수를 직접 세는 대신 GCRA(Generic Cell Rate Algorithm) 방식으로 "다음 요청이 허용되는 이론적 시각(TAT)" 하나만 AtomicLong 에 저장한다.
+요청마다 TAT 를 한 간격(1/rate)씩 미루고, TAT 가 현재 시각보다 burst 간격 이상 앞서 있으면 거절한다.
+따라서 검사할 때 객체를 만들지 않고(할당 없음), 락 없이 CAS 한 번으로 여러 스레드가 함께 사용할 수 있다.
+*/
+public final class TokenBucket {
+    private final long intervalNanos; // 토큰 하나가 채워지는 간격
+    private final long toleranceNanos; // TAT 가 현재 시각보다 앞설 수 있는 최대 시간 (burst - 1 개의 간격)
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE); // 처음에는 burst 개가 가득 찬 상태
+
+    public TokenBucket(double rate, int burst) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate 는 0 보다 크고 burst 는 1 이상이어야 합니다 : " + rate + ", " + burst);
+        }
+        this.intervalNanos = (long) (1_000_000_000L / rate);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    // 토큰 하나를 사용, 남은 토큰이 없으면 false (now 는 System.nanoTime())
+    public boolean tryAcquire(long now) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long base = Math.max(tat, now);
+            if (base - now > toleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(tat, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    // 토큰이 가득 찬 상태인지 (오래 사용하지 않은 버킷을 정리할 때 사용)
+    public boolean isFull(long now) {
+        return theoreticalArrival.get() <= now;
+    }
+}
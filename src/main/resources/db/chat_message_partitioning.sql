@@ -0,0 +1,34 @@
+-- chat_message 테이블을 메시지 ID 범위로 나눈 월별 파티션 테이블로 바꾸는 스크립트 (MySQL 8, 한 번만 실행)
+-- 메시지 ID 는 발급 시각 순서로 증가하므로(MessageIdGenerator), 한 달의 메시지는 연속된 ID 범위 하나에 들어간다.
+-- 파티션 이름은 p{yyyyMM}, 범위는 VALUES LESS THAN (다음 달 1일 0시에 발급되는 최소 ID) 이며,
+-- 이후의 달 파티션은 보관 작업(ChatMessageArchiver)이 pmax 에서 나누어 만들고, 세그먼트 파일로 옮긴 달의 파티션은 DROP 한다.
+--
+-- 주의
+-- 1. 테이블 전체를 다시 쓰므로 메시지가 많으면 오래 걸린다. 서버를 멈춘 상태에서 실행한다.
+-- 2. 파티션 테이블은 외래 키를 지원하지 않으므로 chat_message 의 외래 키를 먼저 삭제한다. (엔티티도 외래 키를 만들지 않도록 설정되어 있음)
+-- 3. 이미 있는 메시지는 모두 이번 달 파티션에 들어가며, 보관 작업이 오래된 달을 옮긴 뒤 DELETE 로 나누어 지운다.
+-- 4. 시각은 세션의 시간대(time_zone)로 계산하므로 서버(JVM)와 같은 시간대에서 실행한다.
+--    1704067200000 은 MessageIdGenerator.EPOCH, 22 는 노드 ID 와 순번의 비트 수이다.
+
+SELECT CONCAT('ALTER TABLE chat_message ', GROUP_CONCAT(CONCAT('DROP FOREIGN KEY ', CONSTRAINT_NAME) SEPARATOR ', '))
+  INTO @drop_foreign_keys
+  FROM information_schema.TABLE_CONSTRAINTS
+ WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_message' AND CONSTRAINT_TYPE = 'FOREIGN KEY';
+SET @drop_foreign_keys = IFNULL(@drop_foreign_keys, 'DO 0');
+PREPARE statement FROM @drop_foreign_keys;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @current_month_end = (UNIX_TIMESTAMP(DATE_FORMAT(NOW() + INTERVAL 1 MONTH, '%Y-%m-01')) * 1000 - 1704067200000) << 22;
+SET @partition_table = CONCAT('ALTER TABLE chat_message PARTITION BY RANGE (message_id) (',
+    'PARTITION p', DATE_FORMAT(NOW(), '%Y%m'), ' VALUES LESS THAN (', @current_month_end, '), ',
+    'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+PREPARE statement FROM @partition_table;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+-- 확인 : 파티션 이름과 범위, 파티션별 행 수(추정값)
+SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS
+  FROM information_schema.PARTITIONS
+ WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_message'
+ ORDER BY PARTITION_ORDINAL_POSITION;
@@ -0,0 +1,63 @@
+package com.sample.chat.config;
+
+import com.sample.chat.dto.ChatMessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChatBinaryCodecTest {
+
+    @Test
+    void messageTypeCodesAreFixed() {
+        // code 는 클라이언트와 다른 버전의 서버가 함께 사용하는 값이므로 바뀌면 안 된다.
+        ChatMessageDto.MessageType[] types = {
+                ChatMessageDto.MessageType.ENTER, ChatMessageDto.MessageType.TALK, ChatMessageDto.MessageType.CLOSE,
+                ChatMessageDto.MessageType.THROTTLED, ChatMessageDto.MessageType.TYPING, ChatMessageDto.MessageType.PRESENCE,
+                ChatMessageDto.MessageType.ACTIVITY, ChatMessageDto.MessageType.ACK, ChatMessageDto.MessageType.RESUME};
+        assertEquals(types.length, ChatMessageDto.MessageType.values().length); // 새 상수를 추가하면 이 목록에도 code 를 추가
+        for (int code = 0; code < types.length; code++) {
+            assertEquals(code, types[code].getCode());
+            assertEquals(types[code], ChatMessageDto.MessageType.fromCode(code));
+            byte[] frame = ChatBinaryCodec.encode(new ChatMessageDto(types[code], "100", null, "hi"), 7L);
+            assertEquals(code, frame[0]);
+            assertEquals(types[code], ChatBinaryCodec.decode(ByteBuffer.wrap(frame)).getType());
+        }
+        assertThrows(IllegalArgumentException.class, () -> ChatMessageDto.MessageType.fromCode(types.length));
+    }
+
+    @Test
+    void roundTripsRoomMessageAndSeq() {
+        // 2, 3, 4 바이트 UTF-8 문자와 짝이 맞지 않는 서로게이트, 2 바이트 메시지 길이(128 이상)
+        String text = "é한😀".repeat(20) + "\uD800";
+        byte[] frame = ChatBinaryCodec.encode(new ChatMessageDto(ChatMessageDto.MessageType.TALK, "9007199254740993", null, text, 300L), 42L);
+        assertEquals(42L, ByteBuffer.wrap(frame, 9, 8).getLong()); // 보낸 회원의 ID
+
+        ChatMessageDto decoded = ChatBinaryCodec.decode(ByteBuffer.wrap(frame));
+        assertEquals(ChatMessageDto.MessageType.TALK, decoded.getType());
+        assertEquals("9007199254740993", decoded.getRoomId());
+        assertEquals("é한😀".repeat(20) + "?", decoded.getMessage());
+        assertEquals(300L, decoded.getSeq());
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, frame.length - 17 - 2 - 2); // 헤더, 길이, 순번을 뺀 나머지가 메시지
+
+        ChatMessageDto withoutSeq = ChatBinaryCodec.decode(ByteBuffer.wrap(
+                ChatBinaryCodec.encode(new ChatMessageDto(ChatMessageDto.MessageType.ENTER, "1", null, null), 1L)));
+        assertEquals("", withoutSeq.getMessage());
+        assertNull(withoutSeq.getSeq());
+    }
+
+    @Test
+    void rejectsMalformedFrames() {
+        byte[] frame = ChatBinaryCodec.encode(new ChatMessageDto(ChatMessageDto.MessageType.TALK, "100", null, "hello"), 1L);
+        assertThrows(IllegalArgumentException.class, () -> ChatBinaryCodec.decode(ByteBuffer.wrap(Arrays.copyOf(frame, 10))));
+        assertThrows(IllegalArgumentException.class, () -> ChatBinaryCodec.decode(ByteBuffer.wrap(Arrays.copyOf(frame, frame.length - 1))));
+        byte[] unknownType = frame.clone();
+        unknownType[0] = (byte) 200;
+        assertThrows(IllegalArgumentException.class, () -> ChatBinaryCodec.decode(ByteBuffer.wrap(unknownType)));
+    }
+}
@@ -0,0 +1,90 @@
+package com.sample.chat.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.sample.chat.dto.ChatMessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChatMessageReaderTest {
+    private static final String JSON = "{\"type\":\"TALK\",\"roomId\":\"100\",\"sender\":\"Alice\",\"extra\":{\"a\":[1]},\"message\":\"안녕하세요\"}";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    void readsTextMessagesSplitAcrossFrames() throws Exception {
+        ChatMessageReader reader = new ChatMessageReader(jsonFactory, 1000);
+        assertTalk(reader.read(JSON, true));
+
+        assertNull(reader.read(JSON.substring(0, 10), false));
+        assertNull(reader.read(JSON.substring(10, 60), false));
+        assertTalk(reader.read(JSON.substring(60), true));
+        assertTalk(reader.read(JSON, true)); // 다음 메시지는 이전 조각과 섞이지 않는다.
+    }
+
+    @Test
+    void readsBinaryJsonSplitInsideAMultiByteCharacter() throws Exception {
+        ChatMessageReader reader = new ChatMessageReader(jsonFactory, 1000);
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        int split = bytes.length - 5; // 마지막 한글 문자의 중간
+        assertNull(reader.read(ByteBuffer.wrap(bytes, 0, split), false));
+        assertTalk(reader.read(ByteBuffer.wrap(bytes, split, bytes.length - split), true));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip(); // 배열이 없는 버퍼
+        assertTalk(reader.read(direct, true));
+    }
+
+    @Test
+    void readsBinaryProtocolFramesSplitAcrossChunks() throws Exception {
+        ChatMessageReader reader = new ChatMessageReader(jsonFactory, 1000, true);
+        byte[] frame = ChatBinaryCodec.encode(new ChatMessageDto(ChatMessageDto.MessageType.TALK, "100", null, "안녕하세요"), 1L);
+        assertEquals("안녕하세요", reader.read(ByteBuffer.wrap(frame), true).getMessage());
+
+        assertNull(reader.read(ByteBuffer.wrap(Arrays.copyOfRange(frame, 0, 5)), false));
+        assertNull(reader.read(ByteBuffer.wrap(Arrays.copyOfRange(frame, 5, 20)), false));
+        ChatMessageDto message = reader.read(ByteBuffer.wrap(Arrays.copyOfRange(frame, 20, frame.length)), true);
+        assertEquals(ChatMessageDto.MessageType.TALK, message.getType());
+        assertEquals("100", message.getRoomId());
+        assertEquals("안녕하세요", message.getMessage());
+    }
+
+    @Test
+    void rejectsMessagesOverTheSizeLimitAsSoonAsAChunkArrives() throws Exception {
+        ChatMessageReader reader = new ChatMessageReader(jsonFactory, 50);
+        assertThrows(ChatMessageReader.MessageTooLargeException.class, () -> reader.read(JSON, true));
+
+        assertNull(reader.read(JSON.substring(0, 30), false));
+        assertThrows(ChatMessageReader.MessageTooLargeException.class, () -> reader.read(JSON.substring(30, 60), false));
+        // 초과한 메시지의 조각은 버려지고, 다음 메시지는 처음부터 다시 센다.
+        ChatMessageDto small = reader.read("{\"type\":\"ENTER\",\"roomId\":\"1\"}", true);
+        assertEquals(ChatMessageDto.MessageType.ENTER, small.getType());
+
+        ChatMessageReader binary = new ChatMessageReader(jsonFactory, 20, true);
+        assertNull(binary.read(ByteBuffer.wrap(new byte[15]), false));
+        assertThrows(ChatMessageReader.MessageTooLargeException.class, () -> binary.read(ByteBuffer.wrap(new byte[6]), true));
+    }
+
+    @Test
+    void rejectsInvalidJsonOnTheFirstChunk() throws Exception {
+        ChatMessageReader reader = new ChatMessageReader(jsonFactory, 1000);
+        assertThrows(JsonParseException.class, () -> reader.read("  [1, 2", false));
+        assertThrows(JsonParseException.class, () -> reader.read(ByteBuffer.wrap("\"text".getBytes(StandardCharsets.UTF_8)), false));
+        assertThrows(JsonParseException.class, () -> reader.read("{\"type\":\"UNKNOWN\"}", true));
+        assertThrows(JsonParseException.class, () -> reader.read("{\"message\":[\"a\"]}", true));
+        assertTalk(reader.read(JSON, true));
+    }
+
+    private static void assertTalk(ChatMessageDto message) {
+        assertEquals(ChatMessageDto.MessageType.TALK, message.getType());
+        assertEquals("100", message.getRoomId());
+        assertEquals("Alice", message.getSender());
+        assertEquals("안녕하세요", message.getMessage());
+    }
+}
@@ -0,0 +1,122 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.entity.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMessageArchiveTest {
+    private static final Long ROOM_ID = 100L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void pagesBackwardsAcrossBlocksAndSegments() throws Exception {
+        ChatMessageArchive archive = archiveWithTwoMonths(); // 1 ~ 1000 번 메시지, 블록 여러 개와 세그먼트 두 개
+
+        List<Long> seqs = new ArrayList<>();
+        long before = Long.MAX_VALUE;
+        while (true) {
+            List<ChatMessageHistoryDto> page = archive.findBefore(ROOM_ID, before, 300);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(message -> seqs.add(message.getSeq()));
+            before = page.get(page.size() - 1).getId();
+        }
+
+        assertEquals(1000, seqs.size());
+        for (int i = 0; i < seqs.size(); i++) {
+            assertEquals(1000L - i, seqs.get(i)); // 최신순, 빠지거나 겹치는 메시지 없음
+        }
+    }
+
+    @Test
+    void restoresMessageFieldsAndFindsByIdAndSeq() throws Exception {
+        ChatMessageArchive archive = archiveWithTwoMonths();
+
+        List<ChatMessageHistoryDto> found = archive.findByIds(ROOM_ID, List.of(id(1), id(700), id(1000), id(5000)));
+        assertEquals(List.of(1L, 700L, 1000L), found.stream().map(ChatMessageHistoryDto::getSeq).sorted().collect(Collectors.toList()));
+        ChatMessageHistoryDto message = found.stream().filter(m -> m.getSeq() == 700L).findFirst().orElseThrow();
+        assertEquals("메시지 700 입니다", message.getText());
+        assertEquals(ChatMessage.MessageType.TALK, message.getType());
+        assertEquals("Alice", message.getSenderName());
+        assertEquals(7L, message.getSenderId());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 12, 0).plusSeconds(700), message.getTimestamp());
+
+        List<ChatMessageHistoryDto> afterSeq = archive.findAfterSeq(ROOM_ID, 990, 100);
+        assertEquals(10, afterSeq.size());
+        assertEquals(1000L, afterSeq.get(0).getSeq());
+        assertEquals(1000L, archive.findMaxSeq(ROOM_ID));
+        assertTrue(archive.findBefore(200L, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    void keepsWatermarkAcrossRestartsAndRemovesRoomDirectory() throws Exception {
+        ChatMessageArchive archive = archiveWithTwoMonths();
+        archive.advanceWatermark(id(1001));
+
+        ChatMessageArchive reopened = newArchive();
+        assertEquals(id(1001), reopened.watermark());
+
+        reopened.removeRoom(ROOM_ID);
+        assertTrue(reopened.findBefore(ROOM_ID, Long.MAX_VALUE, 10).isEmpty());
+        assertNull(reopened.findMaxSeq(ROOM_ID));
+        assertFalse(Files.exists(directory.resolve("room-" + ROOM_ID)));
+    }
+
+    @Test
+    void seesWatermarkAndSegmentsWrittenByAnotherServer() throws Exception {
+        ChatMessageArchive reader = newArchive(); // 보관 작업을 실행하지 않는 서버
+        assertEquals(Long.MIN_VALUE, reader.watermark());
+        assertNull(reader.findMaxSeq(ROOM_ID)); // 세그먼트가 없는 채팅방 (빈 목록이 캐시된다)
+
+        ChatMessageArchive archiver = archiveWithTwoMonths();
+        archiver.advanceWatermark(id(1001));
+
+        assertEquals(id(1001), reader.watermark());
+        assertEquals(1000L, reader.findMaxSeq(ROOM_ID));
+        assertEquals(1000, reader.findBefore(ROOM_ID, Long.MAX_VALUE, 2000).size());
+    }
+
+    private ChatMessageArchive newArchive() {
+        return new ChatMessageArchive(new SimpleMeterRegistry(), directory.toString(), 10, 0);
+    }
+
+    private ChatMessageArchive archiveWithTwoMonths() throws Exception {
+        ChatMessageArchive archive = newArchive();
+        writeSegment(archive, YearMonth.of(2025, 1), 1, 600);
+        writeSegment(archive, YearMonth.of(2025, 2), 601, 1000);
+        return archive;
+    }
+
+    private static void writeSegment(ChatMessageArchive archive, YearMonth month, int fromSeq, int toSeq) throws Exception {
+        try (MessageSegment.Writer writer = archive.newSegment(ROOM_ID, month)) {
+            for (int seq = fromSeq; seq <= toSeq; seq++) {
+                writer.add(new ChatMessageHistoryDto(id(seq), (long) seq, ChatMessage.MessageType.TALK, "메시지 " + seq + " 입니다",
+                        7L, "a@x.com", "Alice", LocalDateTime.of(2025, 1, 1, 12, 0).plusSeconds(seq)));
+            }
+            assertTrue(writer.commit());
+        }
+        archive.segmentWritten(ROOM_ID);
+    }
+
+    private static long id(int seq) {
+        return 1_000_000L + seq * 10L;
+    }
+}
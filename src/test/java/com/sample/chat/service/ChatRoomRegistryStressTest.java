@@ -0,0 +1,139 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.RoomBroadcast;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+// 여러 스레드가 같은 샤드, 같은 채팅방에 동시에 입장/퇴장하고 방송 경로가 동시에 읽어도 회원 목록과 버스 구독이 어긋나지 않는지 확인
+class ChatRoomRegistryStressTest {
+    private static final int WRITERS = 8;
+    private static final int READERS = 2;
+    private static final int ROOMS = 32;
+    private static final int SESSIONS_PER_WRITER = 50;
+    private static final int OPERATIONS_PER_WRITER = 20_000;
+
+    @Test
+    void concurrentJoinAndLeaveKeepMembersAndSubscriptionsConsistent() throws Exception {
+        CountingBus bus = new CountingBus();
+        ChatRoomRegistry registry = new ChatRoomRegistry(bus, 4); // 샤드를 적게 두어 같은 락을 두고 경쟁하게 한다.
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger readerErrors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<WebSocketSession, Set<Long>>>> writers = new ArrayList<>();
+        try {
+            for (int w = 0; w < WRITERS; w++) {
+                writers.add(executor.submit(() -> {
+                    // 스레드마다 자신의 세션만 입장/퇴장시키고, 마지막에 각 세션이 입장해 있는 채팅방을 반환
+                    Map<WebSocketSession, Set<Long>> joined = new IdentityHashMap<>();
+                    List<WebSocketSession> sessions = new ArrayList<>();
+                    for (int i = 0; i < SESSIONS_PER_WRITER; i++) {
+                        WebSocketSession session = mock(WebSocketSession.class);
+                        sessions.add(session);
+                        joined.put(session, new HashSet<>());
+                    }
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int op = 0; op < OPERATIONS_PER_WRITER; op++) {
+                        WebSocketSession session = sessions.get(random.nextInt(sessions.size()));
+                        Long roomId = (long) random.nextInt(ROOMS);
+                        if (random.nextBoolean()) {
+                            registry.join(roomId, session);
+                            joined.get(session).add(roomId);
+                        } else {
+                            assertEquals(joined.get(session).remove(roomId), registry.leave(roomId, session));
+                        }
+                    }
+                    return joined;
+                }));
+            }
+            for (int r = 0; r < READERS; r++) {
+                executor.submit(() -> {
+                    start.await();
+                    // 방송 경로와 같이 락 없이 읽은 배열에는 null 이나 중복이 없어야 한다.
+                    while (writing.get()) {
+                        for (long roomId = 0; roomId < ROOMS; roomId++) {
+                            WebSocketSession[] members = registry.members(roomId);
+                            Set<WebSocketSession> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+                            for (WebSocketSession member : members) {
+                                if (member == null || !distinct.add(member)) {
+                                    readerErrors.incrementAndGet();
+                                }
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+
+            Map<Long, Integer> expected = new ConcurrentHashMap<>();
+            for (Future<Map<WebSocketSession, Set<Long>>> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS).forEach((session, rooms) -> {
+                    for (Long roomId : rooms) {
+                        expected.merge(roomId, 1, Integer::sum);
+                        assertTrue(registry.contains(roomId, session));
+                    }
+                });
+            }
+            writing.set(false);
+
+            assertEquals(0, readerErrors.get());
+            assertEquals(0, bus.violations.get()); // 구독 중인 채팅방을 다시 구독하거나, 구독하지 않은 채팅방을 해지하지 않았다.
+            for (long roomId = 0; roomId < ROOMS; roomId++) {
+                int members = expected.getOrDefault(roomId, 0);
+                assertEquals(members, registry.members(roomId).length);
+                assertEquals(members > 0, bus.subscribed.contains(roomId)); // 회원이 남은 채팅방만 구독 중
+            }
+            assertEquals(expected.size(), registry.getRoomCount());
+        } finally {
+            writing.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    // 구독 상태를 기록하는 메시지 버스, 이미 구독 중인데 다시 구독하거나 구독하지 않은 채팅방을 해지하면 위반으로 센다.
+    private static final class CountingBus implements RoomBroadcastBus {
+        private final Set<Long> subscribed = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger violations = new AtomicInteger();
+
+        @Override
+        public void publish(RoomBroadcast broadcast) {
+        }
+
+        @Override
+        public void subscribe(Long roomId) {
+            if (!subscribed.add(roomId)) {
+                violations.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void unsubscribe(Long roomId) {
+            if (!subscribed.remove(roomId)) {
+                violations.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.entity.ChatMessage;
+import com.sample.chat.entity.ChatRoom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class MessageSearchIndexTest {
+    private static final Long ROOM_ID = 100L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void indexesMessagesThatArriveOutOfIdOrderOnce() {
+        MessageSearchIndex index = newIndex();
+        assertEquals(1, index.add(List.of(talk(10, "회의 시작"))));
+        // 다른 서버가 저장했거나 저장을 재시도한 메시지는 ID 가 더 작아도 색인된다.
+        assertEquals(2, index.add(List.of(talk(5, "회의 시작"), talk(7, "회의 시작"))));
+        assertEquals(0, index.add(List.of(talk(7, "회의 시작"), talk(10, "회의 시작")))); // 이미 색인한 메시지
+
+        MessageSearchIndex.Hits hits = index.search(ROOM_ID, "회의", 0, 10);
+        assertEquals(3, hits.getTotal());
+        assertArrayEquals(new long[]{10, 7, 5}, hits.getMessageIds()); // 점수가 같으면 색인된 순서가 아닌 최신순
+    }
+
+    @Test
+    void ranksByBm25AndPagesNewestFirstOnTies() {
+        MessageSearchIndex index = newIndex();
+        index.add(List.of(talk(1, "회의 회의 회의"), talk(2, "회의 자료 공유"), talk(3, "점심 메뉴")));
+        for (int id = 11; id <= 35; id++) {
+            index.add(List.of(talk(id, "공지 사항")));
+        }
+
+        MessageSearchIndex.Hits meeting = index.search(ROOM_ID, "회의", 0, 10);
+        assertEquals(2, meeting.getTotal());
+        assertArrayEquals(new long[]{1, 2}, meeting.getMessageIds()); // 색인어가 더 많이 나온 메시지가 먼저
+        assertTrue(meeting.getScores()[0] > meeting.getScores()[1]);
+        assertArrayEquals(new long[]{2}, index.search(ROOM_ID, "자료 회의", 0, 10).getMessageIds()); // 모든 색인어가 있어야 한다.
+        assertEquals(0, index.search(ROOM_ID, "회의 메뉴", 0, 10).getTotal());
+        assertEquals(0, index.search(ROOM_ID, "!!", 0, 10).getTotal());
+        assertEquals(0, index.search(200L, "회의", 0, 10).getTotal());
+
+        MessageSearchIndex.Hits second = index.search(ROOM_ID, "공지", 10, 10);
+        assertEquals(25, second.getTotal());
+        assertArrayEquals(new long[]{25, 24, 23, 22, 21, 20, 19, 18, 17, 16}, second.getMessageIds());
+        assertArrayEquals(new long[]{15, 14, 13, 12, 11}, index.search(ROOM_ID, "공지", 20, 10).getMessageIds());
+        MessageSearchIndex.Hits beyond = index.search(ROOM_ID, "공지", 30, 10);
+        assertEquals(25, beyond.getTotal());
+        assertEquals(0, beyond.getMessageIds().length);
+    }
+
+    @Test
+    void reloadsTheIndexFromFilesAndDropsATornRecord() throws Exception {
+        MessageSearchIndex index = newIndex();
+        index.start(); // 처음 실행 : 테이블(mock)은 비어 있다.
+        index.add(List.of(talk(1, "배포 일정 공유"), talk(2, "배포 완료"), enter(3)));
+        index.add(List.of(talk(4, "회의 자료")));
+        index.stop();
+        Path roomFile = directory.resolve("room-" + ROOM_ID + ".idx");
+        long length = Files.size(roomFile);
+        Files.write(roomFile, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND); // 기록 중에 종료된 마지막 기록
+
+        MessageSearchIndex reopened = newIndex();
+        reopened.start();
+        assertArrayEquals(new long[]{2, 1}, reopened.search(ROOM_ID, "배포", 0, 10).getMessageIds());
+        assertArrayEquals(new long[]{4}, reopened.search(ROOM_ID, "자료", 0, 10).getMessageIds());
+        assertEquals(length, Files.size(roomFile));
+        assertEquals(0, reopened.add(List.of(talk(2, "배포 완료")))); // 파일에서 읽은 메시지는 다시 색인하지 않는다.
+        assertEquals("4", new String(Files.readAllBytes(directory.resolve("checkpoint")), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void removesTheRoomsPostingsAndFile() {
+        MessageSearchIndex index = newIndex();
+        index.add(List.of(talk(1, "회의 자료")));
+        Path roomFile = directory.resolve("room-" + ROOM_ID + ".idx");
+        assertTrue(Files.exists(roomFile));
+
+        index.removeRoom(ROOM_ID);
+        assertEquals(0, index.search(ROOM_ID, "회의", 0, 10).getTotal());
+        assertFalse(Files.exists(roomFile));
+    }
+
+    @Test
+    void indexesTalkMessagesReceivedFromOtherNodes() {
+        MessageSearchIndex index = newIndex();
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(1, index.add(ROOM_ID, new ChatMessageHistoryDto(5L, 3L, ChatMessage.MessageType.TALK, "배포 일정", 2L, "b@x.com", "Bob", now)));
+        assertEquals(0, index.add(ROOM_ID, new ChatMessageHistoryDto(6L, 4L, ChatMessage.MessageType.CLOSE, "Bob 님이 퇴장했습니다.", 2L, "b@x.com", "Bob", now)));
+        // 같은 메시지를 저장한 서버의 테이블에서 다시 읽어도 한 번만 색인된다.
+        assertEquals(0, index.add(List.of(talk(5, "배포 일정"))));
+        assertArrayEquals(new long[]{5}, index.search(ROOM_ID, "배포", 0, 10).getMessageIds());
+        assertEquals(0, index.search(ROOM_ID, "퇴장", 0, 10).getTotal());
+    }
+
+    private MessageSearchIndex newIndex() {
+        return new MessageSearchIndex(mock(JdbcTemplate.class), new SimpleMeterRegistry(), directory.toString(), 1000, "in-process");
+    }
+
+    private static ChatMessage enter(long id) {
+        ChatMessage message = talk(id, "Alice 님이 입장했습니다.");
+        message.setType(ChatMessage.MessageType.ENTER);
+        return message;
+    }
+
+    private static ChatMessage talk(long id, String text) {
+        ChatRoom room = new ChatRoom();
+        room.setId(ROOM_ID);
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setChatRoom(room);
+        message.setType(ChatMessage.MessageType.TALK);
+        message.setMessage(text);
+        return message;
+    }
+}
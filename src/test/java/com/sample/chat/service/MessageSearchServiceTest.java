@@ -0,0 +1,44 @@
+package com.sample.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageSearchServiceTest {
+
+    @Test
+    void mergesOverlappingBigramRanges() {
+        assertEquals(List.of("0-3"), highlights("회의록 작성", "회의록")); // "회의", "의록" -> "회의록"
+        assertEquals(List.of("0-2", "10-12"), highlights("회의는 내일 다시 회의", "회의"));
+        assertEquals(List.of("0-2", "3-5"), highlights("배포 일정 공유", "배포 일정")); // 공백으로 떨어진 구간은 따로
+    }
+
+    @Test
+    void highlightsWholeWordsOnlyIgnoringCase() {
+        assertEquals(List.of("11-14"), highlights("concat the Cat", "cat")); // 다른 단어의 일부는 표시하지 않는다.
+        assertEquals(List.of("0-4", "5-9"), highlights("Java java", "JAVA"));
+        assertEquals(List.of("4-6"), highlights("Java회의", "회의"));
+    }
+
+    @Test
+    void highlightsTheIndexedPrefixOfLongWords() {
+        String url = "https" + "x".repeat(100);
+        assertEquals(List.of("0-" + SearchTokenizer.MAX_TERM_LENGTH), highlights(url, url));
+    }
+
+    @Test
+    void skipsTextWhoseLengthChangesWhenLowerCased() {
+        assertTrue(MessageSearchService.highlights("İstanbul 회의", SearchTokenizer.queryTerms("회의")).isEmpty());
+        assertTrue(MessageSearchService.highlights(null, SearchTokenizer.queryTerms("회의")).isEmpty());
+    }
+
+    private static List<String> highlights(String text, String query) {
+        return MessageSearchService.highlights(text, SearchTokenizer.queryTerms(query)).stream()
+                .map(range -> range[0] + "-" + range[1])
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,226 @@
+package com.sample.chat.service;
+
+import com.sample.chat.dto.ChatMessageDto;
+import com.sample.chat.dto.ChatMessageHistoryDto;
+import com.sample.chat.dto.RoomBroadcast;
+import com.sample.chat.entity.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomBroadcastBusTest {
+    private static final String SECRET = "bus-secret-for-tests";
+
+    @Test
+    void inProcessBusDeliversOnlyToOtherNodesSubscribedToTheRoom() {
+        InProcessRoomBroadcastBus.Hub hub = new InProcessRoomBroadcastBus.Hub();
+        BlockingQueue<RoomBroadcast> receivedByA = new LinkedBlockingQueue<>();
+        BlockingQueue<RoomBroadcast> receivedByB = new LinkedBlockingQueue<>();
+        InProcessRoomBroadcastBus a = new InProcessRoomBroadcastBus(hub, receivedByA::add);
+        InProcessRoomBroadcastBus b = new InProcessRoomBroadcastBus(hub, receivedByB::add);
+        a.subscribe(1L);
+        b.subscribe(1L);
+
+        a.publish(talk(1L, "to room 1"));
+        a.publish(talk(2L, "to room 2"));
+
+        assertEquals(List.of("to room 1"), texts(receivedByB));
+        assertTrue(receivedByA.isEmpty()); // 발행한 노드 자신에게는 전달하지 않는다.
+
+        b.unsubscribe(1L);
+        a.publish(talk(1L, "after unsubscribe"));
+        assertTrue(receivedByB.isEmpty());
+    }
+
+    @Test
+    void tcpBusForwardsMessagesForSubscribedRoomsBetweenNodes() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        BlockingQueue<RoomBroadcast> receivedByA = new LinkedBlockingQueue<>();
+        BlockingQueue<RoomBroadcast> receivedByB = new LinkedBlockingQueue<>();
+        TcpRoomBroadcastBus a = tcpBus(portA, portB, receivedByA);
+        TcpRoomBroadcastBus b = tcpBus(portB, portA, receivedByB);
+        a.start();
+        b.start();
+        try {
+            b.subscribe(1L);
+            awaitDelivery(a, 1L, receivedByB);
+
+            a.publish(talk(2L, "to room 2")); // B 는 구독하지 않은 채팅방
+            a.publish(talk(1L, "안녕하세요"));
+            RoomBroadcast received = receivedByB.poll(5, TimeUnit.SECONDS);
+            assertNotNull(received);
+            assertEquals(1L, received.getRoomId());
+            assertEquals("안녕하세요", received.getMessage().getMessage());
+            assertEquals(7L, received.getMemberId());
+            assertNull(receivedByB.poll(200, TimeUnit.MILLISECONDS));
+            assertTrue(receivedByA.isEmpty());
+
+            b.unsubscribe(1L);
+            Thread.sleep(300); // 구독 해지가 A 에 전달될 때까지 대기
+            a.publish(talk(1L, "after unsubscribe"));
+            assertNull(receivedByB.poll(300, TimeUnit.MILLISECONDS));
+        } finally {
+            a.stop();
+            b.stop();
+        }
+    }
+
+    @Test
+    void coalesceKeepsOnlyTheLatestMessagePerKeyInOrder() {
+        RoomBroadcast typing1 = keyed("typing 1", "typing:1:7");
+        RoomBroadcast talk = talk(1L, "talk");
+        RoomBroadcast typing2 = keyed("typing 2", "typing:1:7");
+        RoomBroadcast other = keyed("other", "typing:1:8");
+
+        List<RoomBroadcast> coalesced = TcpRoomBroadcastBus.coalesce(List.of(typing1, talk, other, typing2));
+
+        assertEquals(List.of(talk, other, typing2), coalesced);
+    }
+
+    @Test
+    void broadcastSurvivesTheWireFormat() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123456000);
+        RoomBroadcast broadcast = new RoomBroadcast(3L, new ChatMessageDto(ChatMessageDto.MessageType.CLOSE, "3", null, "퇴장"),
+                9L, new ChatMessageHistoryDto(42L, 5L, ChatMessage.MessageType.CLOSE, "퇴장", 9L, "b@x.com", "Bob", timestamp), "key");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TcpRoomBroadcastBus.writeBroadcast(new DataOutputStream(bytes), broadcast);
+        RoomBroadcast read = TcpRoomBroadcastBus.readBroadcast(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(3L, read.getRoomId());
+        assertEquals(9L, read.getMemberId());
+        assertEquals("key", read.getCoalesceKey());
+        assertEquals(ChatMessageDto.MessageType.CLOSE, read.getMessage().getType());
+        assertNull(read.getMessage().getSender());
+        assertEquals("퇴장", read.getMessage().getMessage());
+        assertEquals(42L, read.getHistory().getId());
+        assertEquals(5L, read.getHistory().getSeq());
+        assertEquals(5L, read.getMessage().getSeq());
+        assertEquals("b@x.com", read.getHistory().getSenderEmail());
+        assertEquals("Bob", read.getHistory().getSenderName());
+        assertEquals(timestamp, read.getHistory().getTimestamp());
+    }
+
+    @Test
+    void unknownMessageTypeIsDroppedWithoutBreakingTheStream() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        TcpRoomBroadcastBus.writeBroadcast(out, talk(1L, "first"));
+        int typeOffset = bytes.size() + 16; // 다음 메시지의 [채팅방 ID][회원 ID] 뒤가 메시지 종류
+        TcpRoomBroadcastBus.writeBroadcast(out, talk(1L, "from a newer node"));
+        TcpRoomBroadcastBus.writeBroadcast(out, talk(1L, "last"));
+        byte[] frame = bytes.toByteArray();
+        frame[typeOffset] = (byte) 200; // 이 노드가 모르는 메시지 종류
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        assertEquals("first", TcpRoomBroadcastBus.readBroadcast(in).getMessage().getMessage());
+        assertNull(TcpRoomBroadcastBus.readBroadcast(in));
+        assertEquals("last", TcpRoomBroadcastBus.readBroadcast(in).getMessage().getMessage());
+    }
+
+    @Test
+    void tcpBusRejectsNodesWithADifferentSecret() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        BlockingQueue<RoomBroadcast> receivedByB = new LinkedBlockingQueue<>();
+        TcpRoomBroadcastBus a = new TcpRoomBroadcastBus("localhost:" + portA, "localhost", portA, List.of("localhost:" + portB),
+                "some-other-secret-value", 256, 1000, new LinkedBlockingQueue<RoomBroadcast>()::add, new SimpleMeterRegistry());
+        TcpRoomBroadcastBus b = tcpBus(portB, portA, receivedByB);
+        a.start();
+        b.start();
+        try {
+            b.subscribe(1L);
+            Thread.sleep(500); // B 의 구독은 A 에 전달되지만, A 가 B 에 맺는 연결은 인증에 실패한다.
+            for (int i = 0; i < 5; i++) {
+                a.publish(talk(1L, "forged"));
+                Thread.sleep(50);
+            }
+            assertNull(receivedByB.poll(300, TimeUnit.MILLISECONDS));
+        } finally {
+            a.stop();
+            b.stop();
+        }
+    }
+
+    @Test
+    void tcpBusRejectsHelloWithADifferentProtocolVersion() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TcpRoomBroadcastBus b = new TcpRoomBroadcastBus("localhost:" + portB, "localhost", portB, List.of("localhost:" + portA),
+                SECRET, 256, 1000, new LinkedBlockingQueue<RoomBroadcast>()::add, registry);
+        b.start();
+        try (Socket socket = new Socket("localhost", portB)) {
+            socket.setSoTimeout(5000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            in.readFully(new byte[16]); // challenge
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte('H');
+            out.writeByte(TcpRoomBroadcastBus.PROTOCOL_VERSION - 1); // 이전 버전의 노드
+            out.flush();
+            assertEquals(-1, in.read()); // 나머지를 읽지 않고 연결을 끊는다.
+            assertEquals(1.0, registry.counter("chat.bus.rejected").count());
+        } finally {
+            b.stop();
+        }
+    }
+
+    // 구독이 상대 노드에 전달될 때까지 확인용 메시지를 반복해서 발행
+    private static void awaitDelivery(TcpRoomBroadcastBus publisher, Long roomId, BlockingQueue<RoomBroadcast> received) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            publisher.publish(talk(roomId, "ping"));
+            if (received.poll(100, TimeUnit.MILLISECONDS) != null) {
+                Thread.sleep(100);
+                received.clear();
+                return;
+            }
+        }
+        throw new AssertionError("구독이 전달되지 않았습니다.");
+    }
+
+    private static TcpRoomBroadcastBus tcpBus(int port, int peerPort, BlockingQueue<RoomBroadcast> received) {
+        return new TcpRoomBroadcastBus("localhost:" + port, "localhost", port, List.of("localhost:" + peerPort), SECRET, 256, 1000,
+                received::add, new SimpleMeterRegistry());
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static RoomBroadcast talk(Long roomId, String text) {
+        return RoomBroadcast.of(roomId, new ChatMessageDto(ChatMessageDto.MessageType.TALK, String.valueOf(roomId), "a@x.com", text), 7L);
+    }
+
+    private static RoomBroadcast keyed(String text, String coalesceKey) {
+        return new RoomBroadcast(1L, new ChatMessageDto(ChatMessageDto.MessageType.TALK, "1", "a@x.com", text), 7L, null, coalesceKey);
+    }
+
+    private static List<String> texts(BlockingQueue<RoomBroadcast> received) {
+        List<String> texts = new ArrayList<>();
+        RoomBroadcast broadcast;
+        while ((broadcast = received.poll()) != null) {
+            texts.add(broadcast.getMessage().getMessage());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,38 @@
+package com.sample.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchTokenizerTest {
+
+    @Test
+    void splitsKoreanIntoBigrams() {
+        assertEquals(Map.of("회의", 1, "의는", 1), SearchTokenizer.termFrequencies("회의는"));
+        assertEquals(Map.of("회의", 2, "의를", 1), SearchTokenizer.termFrequencies("회의 회의를"));
+        assertEquals(Map.of("안", 1), SearchTokenizer.termFrequencies("안")); // 한 글자 단어는 그대로
+        assertEquals(Set.of("회의"), SearchTokenizer.queryTerms("회의 회의"));
+    }
+
+    @Test
+    void splitsMixedScriptsAtScriptBoundaries() {
+        assertEquals(List.of("spring", "부트", "2", "7", "회의", "東京", "カタ", "タカ", "カナ"),
+                List.copyOf(SearchTokenizer.termFrequencies("Spring부트2.7 회의, 東京 カタカナ").keySet()));
+        assertEquals(Set.of("hello", "world"), SearchTokenizer.queryTerms("HELLO, World!"));
+        assertTrue(SearchTokenizer.queryTerms("!! ...").isEmpty());
+        assertTrue(SearchTokenizer.termFrequencies(null).isEmpty());
+    }
+
+    @Test
+    void truncatesLongWordsToMaxTermLength() {
+        String url = "https" + "x".repeat(100);
+        Set<String> terms = SearchTokenizer.queryTerms(url);
+        assertEquals(Set.of(url.substring(0, SearchTokenizer.MAX_TERM_LENGTH)), terms);
+        assertEquals(terms, SearchTokenizer.queryTerms(url + "yyy")); // 앞부분이 같으면 같은 색인어
+    }
+}
@@ -0,0 +1,67 @@
+package com.sample.chat.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChatTokenTest {
+    private static final long NOW = 1_700_000_000_000L;
+    private static final byte[] SECRET = "token-secret-for-tests".getBytes(StandardCharsets.UTF_8);
+    private final ChatToken chatToken = new ChatToken(SECRET);
+
+    @Test
+    void verifiesATokenUntilItExpires() {
+        String token = chatToken.issue(42L, NOW + 1000);
+        assertEquals(42L, chatToken.verify(token, NOW));
+        assertEquals(42L, chatToken.verify(token, NOW + 999));
+        assertNull(chatToken.verify(token, NOW + 1000)); // 만료 시각부터는 사용할 수 없다.
+    }
+
+    @Test
+    void rejectsTamperedPayloadAndSignature() {
+        String token = chatToken.issue(42L, NOW + 1000);
+        int second = token.lastIndexOf('.');
+        String signature = token.substring(second + 1);
+
+        assertNull(chatToken.verify(token.replaceFirst("^42\\.", "43."), NOW)); // 다른 회원
+        assertNull(chatToken.verify("42." + (NOW + 999_999) + "." + signature, NOW)); // 만료 시각 연장
+        char last = signature.charAt(signature.length() - 1);
+        assertNull(chatToken.verify(token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A'), NOW));
+        assertNull(chatToken.verify(token.substring(0, second + 1), NOW)); // 서명 없음
+        ChatToken other = new ChatToken("another-secret-value".getBytes(StandardCharsets.UTF_8));
+        assertNull(other.verify(token, NOW)); // 다른 비밀 키로 발급된 토큰
+    }
+
+    @Test
+    void rejectsMalformedTokens() throws Exception {
+        assertNull(chatToken.verify(null, NOW));
+        assertNull(chatToken.verify("", NOW));
+        assertNull(chatToken.verify("42", NOW));
+        assertNull(chatToken.verify("42.signature", NOW)); // 점이 하나
+        assertNull(chatToken.verify(".42.signature", NOW));
+        // 서명은 맞지만 숫자가 아닌 필드
+        assertNull(chatToken.verify(signed("abc." + (NOW + 1000)), NOW));
+        assertNull(chatToken.verify(signed("42.tomorrow"), NOW));
+        assertNull(chatToken.verify(signed("4.2." + (NOW + 1000)), NOW));
+    }
+
+    @Test
+    void requiresASecretOfAtLeast16Bytes() {
+        assertThrows(IllegalArgumentException.class, () -> new ChatToken(new byte[15]));
+    }
+
+    // 발급 API 로는 만들 수 없는 payload 에 같은 비밀 키로 계산한 올바른 서명을 붙인다.
+    private static String signed(String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+        byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+}